@@ -2,13 +2,11 @@ package com.robbix.mp5;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.Iterator;
 import javax.swing.Timer;
 
 import com.robbix.mp5.map.Entity;
 import com.robbix.mp5.map.LayeredMap;
 import com.robbix.mp5.ui.DisplayPanel;
-import com.robbix.mp5.ui.ani.AmbientAnimation;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.RIterator;
 
@@ -148,29 +146,21 @@ public class Engine
 					else
 						game.removeEntity(entity);
 				
+				game.stepProjectiles();
+				
 				/*
 				 * Animation
 				 */
-				synchronized (panel.getAnimations())
-				{
-					Iterator<AmbientAnimation> animationItr =
-						panel.getAnimations().iterator();
-					
-					while (animationItr.hasNext())
-					{
-						AmbientAnimation animation = animationItr.next();
-						animation.step();
-						
-						if (animation.isDone())
-							animationItr.remove();
-					}
-				}
+				for (DisplayPanel panel : game.getDisplays())
+					panel.stepAnimations();
 				
 				for (Runnable doRun : game.getAndClearDoLaters())
 					doRun.run();
 				
+				game.applySplashDamage();
+				
 				for (DisplayPanel panel : game.getDisplays())
-					panel.repaint();
+					panel.repaintDamage();
 				
 				frame++;
 			}
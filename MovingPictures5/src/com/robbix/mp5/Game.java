@@ -2,13 +2,18 @@ package com.robbix.mp5;
 
 import static com.robbix.mp5.unit.Activity.BUILD;
 
+import java.awt.geom.Point2D;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
@@ -18,6 +23,7 @@ import com.robbix.mp5.ai.AStar;
 import com.robbix.mp5.ai.task.AttackTask;
 import com.robbix.mp5.ai.task.BuildTask;
 import com.robbix.mp5.ai.task.EarthworkerConstructTask;
+import com.robbix.mp5.ai.task.MineRoute;
 import com.robbix.mp5.ai.task.PathTask;
 import com.robbix.mp5.ai.task.RotateTask;
 import com.robbix.mp5.ai.task.SteerTask;
@@ -40,8 +46,10 @@ import com.robbix.mp5.ui.obj.MeteorDisplayObject;
 import com.robbix.mp5.ui.obj.UnitDeathDisplayObject;
 import com.robbix.mp5.unit.HealthBracket;
 import com.robbix.mp5.unit.Meteor;
+import com.robbix.mp5.unit.ProjectileSet;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.mp5.unit.UnitFactory;
+import com.robbix.mp5.unit.WeaponKind;
 import com.robbix.utils.CostMap;
 import com.robbix.utils.Direction;
 import com.robbix.utils.Position;
@@ -54,6 +62,53 @@ public class Game
 {
 	public static Game game;
 	
+	private static final Map<WeaponKind, WeaponAnimation.Factory> weaponAnimations =
+		new EnumMap<WeaponKind, WeaponAnimation.Factory>(WeaponKind.class);
+	
+	static
+	{
+		weaponAnimations.put(WeaponKind.LASER, new WeaponAnimation.Factory()
+		{
+			public WeaponAnimation newAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
+			{
+				return new LaserAnimation(lib, projectiles, projectile);
+			}
+		});
+		weaponAnimations.put(WeaponKind.MICROWAVE, new WeaponAnimation.Factory()
+		{
+			public WeaponAnimation newAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
+			{
+				return new MicrowaveAnimation(lib, projectiles, projectile);
+			}
+		});
+		weaponAnimations.put(WeaponKind.RAIL_GUN, new WeaponAnimation.Factory()
+		{
+			public WeaponAnimation newAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
+			{
+				return new RailGunAnimation(lib, projectiles, projectile);
+			}
+		});
+		weaponAnimations.put(WeaponKind.RPG, new WeaponAnimation.Factory()
+		{
+			public WeaponAnimation newAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
+			{
+				return new RPGAnimation(lib, projectiles, projectile);
+			}
+		});
+		weaponAnimations.put(WeaponKind.ACID_CLOUD, new WeaponAnimation.Factory()
+		{
+			public WeaponAnimation newAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
+			{
+				return new AcidCloudAnimation(lib, projectiles, projectile);
+			}
+		});
+	}
+	
+	/**
+	 * Loads everything the game needs from the given resource directory
+	 * and waits for it all to finish. Use a GameLoader directly to show
+	 * the game before sprites and sounds are done.
+	 */
 	public static Game load(
 		File root,
 		String mapName,
@@ -62,17 +117,9 @@ public class Game
 		boolean lazySounds)
 	throws IOException
 	{
-		Game game = new Game();
-		
-		game.factory = UnitFactory.load(new File(root, "units"));
-		game.tileSet = TileSet.load(new File(root, "tileset"), tileSetName);
-		game.map = LayeredMap.load(new File(root, "terrain"), mapName, game.tileSet);
-		game.spriteLib = SpriteLibrary.load(new File(root, "sprites"), lazySprites);
-		game.sounds = SoundBank.load(new File(root, "sounds"), lazySounds);
-		game.cursorSet = CursorSet.load(new File(root, "cursors"));
-		game.addDisplay(new DisplayPanel(game));
-		
-		return game;
+		GameLoader loader = new GameLoader(root, mapName, tileSetName, lazySprites, lazySounds);
+		loader.start();
+		return loader.await();
 	}
 	
 	public static Game of(Object... stuff)
@@ -97,6 +144,9 @@ public class Game
 	private CursorSet cursorSet;
 	private Set<Trigger> triggers;
 	private List<Runnable> pendingDoLaters;
+	private List<Splash> pendingSplashes;
+	private Map<List<Unit>, MineRoute> mineRoutes;
+	private ProjectileSet projectiles;
 	
 	private Collection<Entity> entities;
 	
@@ -114,6 +164,9 @@ public class Game
 		players.put(0, defaultPlayer);
 		triggers = Collections.synchronizedSet(new HashSet<Trigger>());
 		pendingDoLaters = new ArrayList<Runnable>();
+		pendingSplashes = new ArrayList<Splash>();
+		mineRoutes = new HashMap<List<Unit>, MineRoute>();
+		projectiles = new ProjectileSet();
 		entities = new ArrayList<Entity>();
 		Game.game = this;
 	}
@@ -122,7 +175,7 @@ public class Game
 	{
 		for (Object thing : stuff)
 		{
-			if      (thing instanceof SpriteLibrary)spriteLib = (SpriteLibrary) thing;
+			if      (thing instanceof SpriteLibrary)setSpriteLibrary((SpriteLibrary) thing);
 			else if (thing instanceof SoundBank)    sounds = (SoundBank) thing;
 			else if (thing instanceof UnitFactory)  factory = (UnitFactory) thing;
 			else if (thing instanceof TileSet)      tileSet = (TileSet) thing;
@@ -132,6 +185,19 @@ public class Game
 		}
 	}
 	
+	/**
+	 * Uses the given sprite library and has it bake sprites for every
+	 * player, present and future.
+	 */
+	private void setSpriteLibrary(SpriteLibrary spriteLib)
+	{
+		this.spriteLib = spriteLib;
+		addGameListener(spriteLib);
+		
+		for (Player player : players.values())
+			spriteLib.playerAdded(player);
+	}
+	
 	public void setFrame(int frame)
 	{
 		this.frame = frame;
@@ -158,15 +224,9 @@ public class Game
 		});
 	}
 	
-	public void doSplashDamageLater(final Position pos, final double d, final int r)
+	public void doSplashDamageLater(Position pos, double d, int r)
 	{
-		doLater(new Runnable()
-		{
-			public void run()
-			{
-				doSplashDamage(pos, d, r);
-			}
-		});
+		doSplashDamage(pos, d, r);
 	}
 	
 	public RIterator<Runnable> getAndClearDoLaters()
@@ -340,9 +400,40 @@ public class Game
 		return players.get(id);
 	}
 	
+	/**
+	 * Gets the route shared by all trucks running between the given mine
+	 * and smelter.
+	 */
+	public MineRoute getMineRoute(Unit mine, Unit smelter)
+	{
+		List<Unit> key = Arrays.asList(mine, smelter);
+		MineRoute route = mineRoutes.get(key);
+		
+		if (route == null)
+		{
+			route = new MineRoute(mine, smelter);
+			mineRoutes.put(key, route);
+		}
+		
+		return route;
+	}
+	
+	/**
+	 * Moves every shot in flight along and resolves the ones that land.
+	 * Called by the Engine once per frame.
+	 */
+	public void stepProjectiles()
+	{
+		projectiles.step(this);
+	}
+	
 	public void doAttack(Unit attacker, Unit target)
 	{
-		if (attacker.getCharge() < attacker.getType().getWeaponChargeCost())
+		WeaponKind kind = attacker.getType().getWeaponKind();
+		
+		if (!ProjectileSet.isFired(kind))
+			return;
+		else if (attacker.getCharge() < attacker.getType().getWeaponChargeCost())
 			return;
 		else if (attacker.getPosition().getDistance(target.getPosition())
 				> attacker.getType().getAttackRange())
@@ -350,32 +441,24 @@ public class Game
 		
 		attacker.discharge();
 		
-		WeaponAnimation fireAnimation = null;
+		// Fired from the middle of the attacker's footprint, so the flight
+		// doesn't depend on sprites. Animations draw it from the muzzle
+		Point2D attackerPoint = attacker.getAbsPoint();
+		Point2D origin = new Point2D.Double(
+			attackerPoint.getX() + attacker.getWidth() / 2.0,
+			attackerPoint.getY() + attacker.getHeight() / 2.0
+		);
 		
-		if (attacker.is("Laser"))
-		{
-			fireAnimation = new LaserAnimation(spriteLib, attacker, target);
-		}
-		else if (attacker.is("Microwave"))
-		{
-			fireAnimation = new MicrowaveAnimation(spriteLib, attacker, target);
-		}
-		else if (attacker.is("RailGun"))
-		{
-			fireAnimation = new RailGunAnimation(spriteLib, attacker, target);
-		}
-		else if (attacker.is("RPG"))
-		{
-			fireAnimation = new RPGAnimation(spriteLib, attacker, target);
-		}
-		else if (attacker.is("AcidCloud"))
-		{
-			fireAnimation = new AcidCloudAnimation(spriteLib, attacker, target);
-		}
+		long projectile = projectiles.fire(this, attacker, target, origin);
+		attacker.assignNow(new AttackTask(target, projectiles, projectile));
 		
-		attacker.assignNow(new AttackTask(target, fireAnimation));
+		WeaponAnimation.Factory animationFactory = weaponAnimations.get(kind);
 		
-		getDisplay().cueAnimation(fireAnimation);
+		if (animationFactory != null)
+		{
+			for (DisplayPanel panel : getDisplays())
+				panel.cueAnimation(animationFactory.newAnimation(spriteLib, projectiles, projectile));
+		}
 	}
 	
 	public void doDamage(Unit attacker, Unit target, double amount)
@@ -421,71 +504,112 @@ public class Game
 		}
 	}
 	
+	private static class Splash
+	{
+		public final Position pos;
+		public final double amount;
+		public final double range;
+		
+		public Splash(Position pos, double amount, double range)
+		{
+			this.pos = pos;
+			this.amount = amount;
+			this.range = range;
+		}
+	}
+	
+	/**
+	 * Queues splash damage to be applied with the rest of this frame's
+	 * explosions by applySplashDamage().
+	 */
 	public void doSplashDamage(Position pos, double amount, double range)
 	{
 		if (range <= 0 || amount <= 0)
 			return;
 		
-		int spotSize = map.getSpotSize();
-		
-		int absX = pos.x * spotSize;
-		int absY = pos.y * spotSize;
-		
-		int rangeInt = (int)Math.ceil(range);
+		pendingSplashes.add(new Splash(pos, amount, range));
+	}
+	
+	/**
+	 * Applies all queued splash damage. Units are looked up through the
+	 * map's occupancy grid, and fixture damage is accumulated and handed
+	 * to the map in one batch so connections are reassessed once and only
+	 * the affected region is refreshed. Splashes queued by units killed
+	 * along the way are applied in the same pass.
+	 */
+	public void applySplashDamage()
+	{
+		if (pendingSplashes.isEmpty())
+			return;
 		
-		int xMin = Math.max(pos.x - rangeInt, 0);
-		int yMin = Math.max(pos.y - rangeInt, 0);
-		int xMax = Math.min(pos.x + rangeInt, map.getWidth() - 1);
-		int yMax = Math.min(pos.y + rangeInt, map.getHeight() - 1);
+		int spotSize = map.getSpotSize();
+		int w = map.getWidth();
+		int h = map.getHeight();
 		
+		Map<Position, Integer> fixtureDamage = new HashMap<Position, Integer>();
 		Set<Unit> affectedUnits = new HashSet<Unit>();
 		
-		for (int x = xMin; x <= xMax; ++x)
-		for (int y = yMin; y <= yMax; ++y)
+		while (!pendingSplashes.isEmpty())
 		{
-			Position current = new Position(x, y);
-			Unit unit = map.getUnit(current);
+			Splash[] splashes = pendingSplashes.toArray(new Splash[0]);
+			pendingSplashes.clear();
 			
-			if (unit != null)
+			for (Splash splash : splashes)
 			{
-				int unitAbsX = unit.getX() * spotSize + unit.getXOffset();
-				int unitAbsY = unit.getY() * spotSize + unit.getYOffset();
+				Position pos = splash.pos;
+				double range = splash.range;
+				double rangeSq = range * range;
+				double absRange = range * spotSize;
 				
-				double absDist = Math.hypot(unitAbsX - absX, unitAbsY - absY);
+				int absX = pos.x * spotSize;
+				int absY = pos.y * spotSize;
 				
-				if (absDist <= (range * spotSize))
-				{
-					affectedUnits.add(unit);
-				}
-			}
-			
-			double absDist = current.getDistance(pos);
-			
-			if (absDist <= (range * spotSize))
-			{
-				if (map.hasWall(current) || map.hasTube(current))
+				int rangeInt = (int)Math.ceil(range);
+				
+				int xMin = Math.max(pos.x - rangeInt, 0);
+				int yMin = Math.max(pos.y - rangeInt, 0);
+				int xMax = Math.min(pos.x + rangeInt, w - 1);
+				int yMax = Math.min(pos.y + rangeInt, h - 1);
+				
+				affectedUnits.clear();
+				
+				for (int x = xMin; x <= xMax; ++x)
+				for (int y = yMin; y <= yMax; ++y)
 				{
-					int fixtureHP = map.getFixtureHP(current);
-					fixtureHP -= (int) amount;
+					Unit unit = map.getUnit(x, y);
 					
-					if (fixtureHP <= 0)
+					if (unit != null && !affectedUnits.contains(unit))
 					{
-						map.bulldoze(current);
+						int unitAbsX = unit.getX() * spotSize + unit.getXOffset();
+						int unitAbsY = unit.getY() * spotSize + unit.getYOffset();
+						
+						if (Math.hypot(unitAbsX - absX, unitAbsY - absY) <= absRange)
+							affectedUnits.add(unit);
 					}
-					else
+					
+					int dx = x - pos.x;
+					int dy = y - pos.y;
+					
+					if (dx * dx + dy * dy <= rangeSq)
 					{
-						map.setFixtureHP(current, fixtureHP);
+						Position current = new Position(x, y);
+						
+						if (map.hasWall(current) || map.hasTube(current))
+						{
+							Integer prev = fixtureDamage.get(current);
+							int total = (prev == null ? 0 : prev) + (int) splash.amount;
+							fixtureDamage.put(current, total);
+						}
 					}
 				}
+				
+				for (Unit unit : affectedUnits.toArray(new Unit[0]))
+					doDamage(null, unit, splash.amount);
 			}
 		}
 		
-		for (Unit unit : affectedUnits)
-		{
-			doDamage(null, unit, amount);
-		}
-		
-		getDisplay().refresh();
+		if (!fixtureDamage.isEmpty())
+			map.damageFixtures(fixtureDamage);
 	}
 	
 	public void doEarthworkerBuildRow(Unit unit, List<Position> row, Fixture fixture)
@@ -520,13 +644,18 @@ public class Game
 	{
 		doMove(unit, pos, interrupt, 0);
 	}
-
+	
 	public void doMove(Unit unit, Position pos, double distance)
 	{
 		doMove(unit, pos, true, distance);
 	}
 	
 	public void doMove(Unit unit, Position pos, boolean interrupt, double distance)
+	{
+		doMove(unit, pos, interrupt, distance, 0);
+	}
+	
+	private void doMove(Unit unit, Position pos, boolean interrupt, double distance, int priority)
 	{
 		if (unit.isStructure() || unit.getType().isGuardPostType() || unit.isDead())
 			return;
@@ -541,7 +670,7 @@ public class Game
 		if (path == null)
 			return;
 		
-		PathTask task = new PathTask(path);
+		PathTask task = new PathTask(path, priority);
 		
 		if (interrupt) unit.assignNow(task);
 		          else unit.assignNext(task);
@@ -575,12 +704,30 @@ public class Game
 		}
 	}
 	
-	public void doGroupMove(Set<Unit> units, Position pos)
+	/**
+	 * Moves each of the units to the given position. Units closer to the
+	 * destination get higher priority so the rest of the group plans
+	 * around them instead of jamming.
+	 */
+	public void doGroupMove(Set<Unit> units, final Position pos)
 	{
-		for (Unit unit : units)
+		List<Unit> ordered = new ArrayList<Unit>(units);
+		
+		Collections.sort(ordered, new Comparator<Unit>()
 		{
-			doMove(unit, pos);
-		}
+			public int compare(Unit a, Unit b)
+			{
+				return Double.compare(
+					a.getPosition().getDistance(pos),
+					b.getPosition().getDistance(pos)
+				);
+			}
+		});
+		
+		int priority = ordered.size();
+		
+		for (Unit unit : ordered)
+			doMove(unit, pos, true, 0, priority--);
 	}
 	
 	public void doBuild(Unit unit, Position pos)
@@ -599,6 +746,15 @@ public class Game
 		getDisplay().addDisplayObject(new UnitDeathDisplayObject(unit, frame));
 		map.remove(unit);
 		
+		if (unit.isMine() || unit.isSmelter())
+		{
+			Iterator<List<Unit>> routeItr = mineRoutes.keySet().iterator();
+			
+			while (routeItr.hasNext())
+				if (routeItr.next().contains(unit))
+					routeItr.remove();
+		}
+		
 		if (unit.getType().isGuardPostType())
 		{
 			Game.game.playSound("structureExplosion", pos);
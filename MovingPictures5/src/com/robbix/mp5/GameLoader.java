@@ -0,0 +1,438 @@
+package com.robbix.mp5;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.robbix.mp5.map.LayeredMap;
+import com.robbix.mp5.map.TileSet;
+import com.robbix.mp5.ui.CursorSet;
+import com.robbix.mp5.ui.DisplayPanel;
+import com.robbix.mp5.ui.SoundBank;
+import com.robbix.mp5.ui.SpriteLibrary;
+import com.robbix.mp5.unit.UnitFactory;
+import com.robbix.utils.AssetArchive;
+import com.robbix.utils.MetadataCache;
+
+/**
+ * Loads the parts of a Game in stages that run side by side on a shared
+ * pool of threads. Each stage starts as soon as the stages it depends on
+ * are done, and how long each one took is kept.
+ *
+ * The sprite library and sound bank are made empty and given to the game
+ * up front, so the display can be shown once the map is ready. With
+ * preloading on, their modules go on loading in the background. Anything
+ * drawn or played before it's loaded is loaded on demand, just as when
+ * loading lazily.
+ */
+public class GameLoader
+{
+	public static enum Stage
+	{
+		UNITS,
+		TILESET,
+		MAP     (TILESET),
+		CURSORS,
+		SPRITES (UNITS),
+		SOUNDS,
+		DISPLAY (UNITS, MAP, CURSORS);
+		
+		private final Stage[] dependencies;
+		
+		private Stage(Stage... dependencies)
+		{
+			this.dependencies = dependencies;
+		}
+		
+		public Set<Stage> getDependencies()
+		{
+			Set<Stage> stages = EnumSet.noneOf(Stage.class);
+			
+			for (Stage stage : dependencies)
+				stages.add(stage);
+			
+			return stages;
+		}
+	}
+	
+	public interface Listener
+	{
+		public void stageStarted(GameLoader loader, Stage stage);
+		public void stageFinished(GameLoader loader, Stage stage);
+		public void stageFailed(GameLoader loader, Stage stage, Exception exc);
+	}
+	
+	private static final AtomicInteger nextSerial = new AtomicInteger();
+	
+	private File root;
+	private String mapName;
+	private String tileSetName;
+	private boolean lazySprites;
+	private boolean lazySounds;
+	
+	private Game game;
+	private ExecutorService workers;
+	private List<Listener> listeners;
+	
+	private Map<Stage, AtomicInteger> waitingOn;
+	private Map<Stage, CountDownLatch> done;
+	private Map<Stage, Exception> errors;
+	private long[] startTimes;
+	private long[] endTimes;
+	private AtomicInteger stagesLeft;
+	
+	public GameLoader(
+		File root,
+		String mapName,
+		String tileSetName,
+		boolean lazySprites,
+		boolean lazySounds)
+	{
+		this.root = root;
+		this.mapName = mapName;
+		this.tileSetName = tileSetName;
+		this.lazySprites = lazySprites;
+		this.lazySounds = lazySounds;
+		this.listeners = new CopyOnWriteArrayList<Listener>();
+		
+		Stage[] stages = Stage.values();
+		waitingOn = new EnumMap<Stage, AtomicInteger>(Stage.class);
+		done = new EnumMap<Stage, CountDownLatch>(Stage.class);
+		errors = new EnumMap<Stage, Exception>(Stage.class);
+		startTimes = new long[stages.length];
+		endTimes = new long[stages.length];
+		stagesLeft = new AtomicInteger(stages.length);
+		
+		for (Stage stage : stages)
+		{
+			waitingOn.put(stage, new AtomicInteger(stage.dependencies.length));
+			done.put(stage, new CountDownLatch(1));
+		}
+	}
+	
+	public void addListener(Listener listener)
+	{
+		listeners.add(listener);
+	}
+	
+	public void removeListener(Listener listener)
+	{
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Makes the game, then starts every stage that doesn't depend on
+	 * another. Can only be called once.
+	 */
+	public synchronized Game start() throws IOException
+	{
+		if (game != null)
+			throw new IllegalStateException("already started");
+		
+		AssetArchive.mount(root);
+		MetadataCache.open(root);
+		
+		final int serial = nextSerial.getAndIncrement();
+		
+		// A thread per stage, so the ones the display waits on are never
+		// queued behind sprites or sounds
+		workers = Executors.newFixedThreadPool(
+			Stage.values().length,
+			new ThreadFactory()
+			{
+				private int count = 0;
+				
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r);
+					thread.setDaemon(true);
+					thread.setName("MP5-GameLoader-" + serial + "-" + (count++));
+					return thread;
+				}
+			}
+		);
+		
+		game = Game.of(
+			lazySprites
+				? SpriteLibrary.loadLazy(new File(root, "sprites"))
+				: new SpriteLibrary(new File(root, "sprites")),
+			SoundBank.loadLazy(new File(root, "sounds"))
+		);
+		
+		for (Stage stage : Stage.values())
+			if (stage.dependencies.length == 0)
+				submit(stage);
+		
+		return game;
+	}
+	
+	public Game getGame()
+	{
+		return game;
+	}
+	
+	/**
+	 * Waits for the given stage to finish and returns the game, rethrowing
+	 * whatever stopped the stage or one it depends on.
+	 */
+	public Game await(Stage stage) throws IOException
+	{
+		try
+		{
+			done.get(stage).await();
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		
+		Exception exc;
+		
+		synchronized (errors)
+		{
+			exc = errors.get(stage);
+		}
+		
+		if (exc instanceof IOException)
+			throw (IOException) exc;
+		
+		if (exc instanceof RuntimeException)
+			throw (RuntimeException) exc;
+		
+		if (exc != null)
+			throw new IOException(exc);
+		
+		return game;
+	}
+	
+	/**
+	 * Waits for the game to be ready to show - its units, map and display
+	 * loaded - while sprites and sounds may still be loading.
+	 */
+	public Game awaitDisplay() throws IOException
+	{
+		return await(Stage.DISPLAY);
+	}
+	
+	/**
+	 * Waits for every stage to finish.
+	 */
+	public Game await() throws IOException
+	{
+		for (Stage stage : Stage.values())
+			await(stage);
+		
+		return game;
+	}
+	
+	public boolean isDone(Stage stage)
+	{
+		return done.get(stage).getCount() == 0;
+	}
+	
+	public boolean isDone()
+	{
+		return stagesLeft.get() == 0;
+	}
+	
+	/**
+	 * Gets the time the stage took in milliseconds, or -1 if it hasn't
+	 * finished.
+	 */
+	public synchronized long getTime(Stage stage)
+	{
+		int i = stage.ordinal();
+		return endTimes[i] == 0 ? -1 : (endTimes[i] - startTimes[i]) / 1000000;
+	}
+	
+	/**
+	 * Gets the time from the first stage starting to the last one
+	 * finishing in milliseconds, or -1 if they haven't all ended.
+	 */
+	public synchronized long getTotalTime()
+	{
+		if (!isDone())
+			return -1;
+		
+		long start = Long.MAX_VALUE;
+		long end = 0;
+		
+		for (int i = 0; i < startTimes.length; ++i)
+		{
+			if (endTimes[i] == 0)
+				continue;
+			
+			start = Math.min(start, startTimes[i]);
+			end = Math.max(end, endTimes[i]);
+		}
+		
+		if (end == 0)
+			return -1;
+		
+		return (end - start) / 1000000;
+	}
+	
+	public synchronized String toString()
+	{
+		StringBuilder builder = new StringBuilder("GameLoader[");
+		
+		for (Stage stage : Stage.values())
+		{
+			long time = getTime(stage);
+			builder.append(stage.name().toLowerCase()).append(' ');
+			builder.append(time < 0 ? "-" : time + " ms").append(", ");
+		}
+		
+		long total = getTotalTime();
+		builder.append("total ").append(total < 0 ? "-" : total + " ms").append(']');
+		return builder.toString();
+	}
+	
+	private void submit(final Stage stage)
+	{
+		workers.execute(new Runnable()
+		{
+			public void run()
+			{
+				runStage(stage);
+			}
+		});
+	}
+	
+	private void runStage(Stage stage)
+	{
+		synchronized (this)
+		{
+			startTimes[stage.ordinal()] = System.nanoTime();
+		}
+		
+		for (Listener listener : listeners)
+			listener.stageStarted(this, stage);
+		
+		try
+		{
+			load(stage);
+		}
+		catch (Exception exc)
+		{
+			fail(stage, exc);
+			return;
+		}
+		catch (Throwable t)
+		{
+			// Errors too, or whoever awaits the stage waits forever
+			fail(stage, new ExecutionException(t));
+			return;
+		}
+		
+		synchronized (this)
+		{
+			endTimes[stage.ordinal()] = System.nanoTime();
+		}
+		
+		done.get(stage).countDown();
+		
+		for (Listener listener : listeners)
+			listener.stageFinished(this, stage);
+		
+		for (Stage dependent : Stage.values())
+			if (dependent.getDependencies().contains(stage)
+			 && waitingOn.get(dependent).decrementAndGet() == 0)
+				submit(dependent);
+		
+		stageEnded();
+	}
+	
+	private void load(Stage stage) throws IOException
+	{
+		switch (stage)
+		{
+		case UNITS:
+			game.add(UnitFactory.load(new File(root, "units")));
+			break;
+		case TILESET:
+			game.add(TileSet.load(new File(root, "tileset"), tileSetName));
+			break;
+		case MAP:
+			game.add(LayeredMap.load(new File(root, "terrain"), mapName, game.getTileSet()));
+			break;
+		case CURSORS:
+			game.add(CursorSet.load(new File(root, "cursors")));
+			break;
+		case SPRITES:
+			if (!lazySprites)
+				game.getSpriteLibrary().loadAllModules();
+			break;
+		case SOUNDS:
+			if (!lazySounds)
+				game.getSoundBank().loadAllModules();
+			break;
+		case DISPLAY:
+			game.addDisplay(new DisplayPanel(game));
+			
+			// Sprites loaded before the map couldn't be trimmed
+			game.getSpriteLibrary().getMemoryBudget().trim();
+			break;
+		}
+	}
+	
+	/**
+	 * Fails the stage and every stage that depends on it, since they'll
+	 * never start.
+	 */
+	private void fail(Stage stage, Exception exc)
+	{
+		synchronized (errors)
+		{
+			if (errors.containsKey(stage))
+				return;
+			
+			errors.put(stage, exc);
+		}
+		
+		done.get(stage).countDown();
+		
+		for (Listener listener : listeners)
+			listener.stageFailed(this, stage, exc);
+		
+		for (Stage dependent : Stage.values())
+			if (dependent.getDependencies().contains(stage))
+				fail(dependent, exc);
+		
+		stageEnded();
+	}
+	
+	/**
+	 * Saves the metadata cache and lets the pool's threads go once the
+	 * last stage ends.
+	 */
+	private void stageEnded()
+	{
+		if (stagesLeft.decrementAndGet() > 0)
+			return;
+		
+		workers.shutdown();
+		
+		try
+		{
+			MetadataCache.getOpened().save();
+		}
+		catch (IOException ioe)
+		{
+			System.err.println("metadata cache not saved: " + ioe.getMessage());
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package com.robbix.mp5;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps the modules loaded by a Modular within a memory budget.
+ *
+ * The owner reports modules as they're loaded, unloaded and used. When
+ * the modules' total size goes over budget, the least recently used ones
+ * are unloaded until it fits again, skipping any that are pinned. An
+ * evicted module is loaded again the next time it's asked for, just like
+ * one that was never loaded.
+ *
+ * Sizes are measured when trimming, as a module can grow after it's
+ * loaded, so subclasses only say how to measure and what to pin.
+ */
+public abstract class ModuleBudget
+{
+	public static final long UNLIMITED = Long.MAX_VALUE;
+	
+	private Modular modular;
+	private long budget;
+	
+	/**
+	 * Loaded modules, least recently used first.
+	 */
+	private LinkedHashMap<String, Boolean> modules;
+	private Set<String> evicted;
+	
+	private long usedBytes;
+	private long evictions;
+	private long reloads;
+	
+	public ModuleBudget(Modular modular, long budget)
+	{
+		if (budget <= 0)
+			throw new IllegalArgumentException("budget must be positive");
+		
+		this.modular = modular;
+		this.budget = budget;
+		this.modules = new LinkedHashMap<String, Boolean>(64, 0.75f, true);
+		this.evicted = new HashSet<String>();
+	}
+	
+	/**
+	 * Gets the number of bytes the loaded module takes up, including
+	 * anything derived from it.
+	 */
+	protected abstract long getByteSize(String module);
+	
+	/**
+	 * Gets the modules that can't be evicted right now. None by default,
+	 * or null if it can't be told yet, in which case none are evicted.
+	 */
+	protected Set<String> getPinnedModules()
+	{
+		return Collections.emptySet();
+	}
+	
+	/**
+	 * Notes that the module was loaded, then evicts others if it put the
+	 * modules over budget. The module itself is never evicted, as whoever
+	 * loaded it is about to use it.
+	 */
+	public void loaded(String module)
+	{
+		synchronized (this)
+		{
+			modules.put(module, Boolean.TRUE);
+			
+			if (evicted.remove(module))
+				reloads++;
+		}
+		
+		trim(module);
+	}
+	
+	public synchronized void unloaded(String module)
+	{
+		modules.remove(module);
+	}
+	
+	/**
+	 * Marks the module as just used. Called every time it's drawn or
+	 * played, so this is kept cheap.
+	 */
+	public synchronized void used(String module)
+	{
+		modules.get(module);
+	}
+	
+	/**
+	 * Evicts least recently used modules that aren't pinned until the
+	 * rest fit in the budget. Modules are measured without holding this
+	 * budget's lock, so the owner may call in here while holding its own.
+	 */
+	public void trim()
+	{
+		trim(null);
+	}
+	
+	/**
+	 * Trims the modules other than the given one, which may be null.
+	 */
+	public void trim(String kept)
+	{
+		List<String> order;
+		long limit;
+		
+		synchronized (this)
+		{
+			order = new ArrayList<String>(modules.keySet());
+			limit = budget;
+		}
+		
+		long[] sizes = new long[order.size()];
+		long bytes = 0;
+		
+		for (int i = 0; i < sizes.length; ++i)
+			bytes += sizes[i] = getByteSize(order.get(i));
+		
+		synchronized (this)
+		{
+			usedBytes = bytes;
+		}
+		
+		if (bytes <= limit)
+			return;
+		
+		Set<String> pinned = getPinnedModules();
+		
+		if (pinned == null)
+			return;
+		
+		for (int i = 0; i < sizes.length && bytes > limit; ++i)
+		{
+			String module = order.get(i);
+			
+			if (module.equals(kept)
+			 || pinned.contains(module)
+			 || !modular.unloadModule(module))
+				continue;
+			
+			bytes -= sizes[i];
+			
+			synchronized (this)
+			{
+				usedBytes -= sizes[i];
+				modules.remove(module);
+				evicted.add(module);
+				evictions++;
+			}
+		}
+	}
+	
+	public synchronized void setBudget(long budget)
+	{
+		if (budget <= 0)
+			throw new IllegalArgumentException("budget must be positive");
+		
+		this.budget = budget;
+	}
+	
+	public synchronized long getBudget()
+	{
+		return budget;
+	}
+	
+	/**
+	 * Gets the size of the loaded modules as of the last trim.
+	 */
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+	
+	public synchronized int getModuleCount()
+	{
+		return modules.size();
+	}
+	
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+	
+	/**
+	 * Gets the number of times an evicted module was loaded again.
+	 */
+	public synchronized long getReloads()
+	{
+		return reloads;
+	}
+	
+	public synchronized String toString()
+	{
+		return String.format(
+			"ModuleBudget[%d modules, %d/%d KB, %d evictions, %d reloads]",
+			modules.size(), usedBytes >> 10, budget >> 10, evictions, reloads
+		);
+	}
+}
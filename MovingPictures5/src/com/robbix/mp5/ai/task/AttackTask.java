@@ -1,21 +1,26 @@
 package com.robbix.mp5.ai.task;
 
-import com.robbix.mp5.ui.ani.WeaponAnimation;
+import com.robbix.mp5.unit.ProjectileSet;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Direction;
 
 public class AttackTask extends Task
 {
 	private Unit target;
-	private WeaponAnimation animation;
+	private ProjectileSet projectiles;
+	private long projectile;
 	
 	private boolean directionSet = false;
 	
-	public AttackTask(Unit target, WeaponAnimation animation)
+	/**
+	 * Keeps the unit aimed at the target until the given shot lands.
+	 */
+	public AttackTask(Unit target, ProjectileSet projectiles, long projectile)
 	{
 		super(true, Task.TURRET_ONLY);
 		this.target = target;
-		this.animation = animation;
+		this.projectiles = projectiles;
+		this.projectile = projectile;
 	}
 	
 	public void step(Unit unit)
@@ -27,7 +32,7 @@ public class AttackTask extends Task
 			directionSet = true;
 		}
 		
-		if (animation.atHotPoint())
+		if (!projectiles.isInFlight(projectile))
 		{
 			unit.completeTask(this);
 		}
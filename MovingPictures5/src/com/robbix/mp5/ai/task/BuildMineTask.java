@@ -4,6 +4,7 @@ import com.robbix.mp5.Game;
 import com.robbix.mp5.map.LayeredMap;
 import com.robbix.mp5.ui.SpriteLibrary;
 import com.robbix.mp5.unit.Activity;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Filter;
 import com.robbix.utils.Position;
@@ -18,7 +19,7 @@ public class BuildMineTask extends Task
 		{
 			public boolean accept(Unit unit)
 			{
-				return unit != null && unit.getType().getName().endsWith("Miner");
+				return unit != null && unit.has(Capability.MINER);
 			}
 		});
 		
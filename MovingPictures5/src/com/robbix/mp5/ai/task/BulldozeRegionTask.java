@@ -5,6 +5,7 @@ import static com.robbix.mp5.unit.Activity.MOVE;
 import java.util.List;
 
 import com.robbix.mp5.Game;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Filter;
 import com.robbix.utils.Position;
@@ -20,7 +21,7 @@ public class BulldozeRegionTask extends Task
 		{
 			public boolean accept(Unit unit)
 			{
-				return unit.is("Dozer");
+				return unit.has(Capability.DOZER);
 			}
 		});
 		
@@ -1,6 +1,7 @@
 package com.robbix.mp5.ai.task;
 
 import static com.robbix.mp5.unit.Activity.*;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Filter;
 
@@ -14,7 +15,7 @@ public class BulldozeTask extends Task
 		{
 			public boolean accept(Unit unit)
 			{
-				return unit.getType().getName().contains("Dozer");
+				return unit.has(Capability.DOZER);
 			}
 		});
 		
@@ -6,6 +6,7 @@ import static com.robbix.mp5.unit.Activity.MOVE;
 
 import com.robbix.mp5.Game;
 import com.robbix.mp5.ui.SpriteLibrary;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Cargo;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Direction;
@@ -23,7 +24,7 @@ public class ConVecConstructTask extends Task
 		{
 			public boolean accept(Unit unit)
 			{
-				return unit.getType().getName().contains("ConVec");
+				return unit.has(Capability.CONVEC);
 			}
 		});
 		
@@ -3,6 +3,7 @@ package com.robbix.mp5.ai.task;
 import static com.robbix.mp5.unit.Activity.*;
 
 import com.robbix.mp5.map.Fixture;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Filter;
 import com.robbix.utils.Position;
@@ -20,7 +21,7 @@ public class EarthworkerConstructTask extends Task
 		{
 			public boolean accept(Unit unit)
 			{
-				return unit.getType().getName().contains("Earthworker");
+				return unit.has(Capability.EARTHWORKER);
 			}
 		});
 		
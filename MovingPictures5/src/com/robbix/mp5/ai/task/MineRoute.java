@@ -0,0 +1,160 @@
+package com.robbix.mp5.ai.task;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.robbix.mp5.ai.AStar;
+import com.robbix.mp5.unit.Capability;
+import com.robbix.mp5.unit.Unit;
+import com.robbix.utils.CostMap;
+import com.robbix.utils.Position;
+
+/**
+ * The round trip between a mine and a smelter, shared by every truck
+ * working the pair. Paths are computed once and only checked again when
+ * the cost map has changed since they were last used.
+ */
+public class MineRoute
+{
+	/**
+	 * Minimum number of frames between two trucks leaving the same dock,
+	 * so they don't arrive at the other end bumper to bumper.
+	 */
+	private static final int DEPARTURE_INTERVAL = 16;
+	
+	private Unit mine;
+	private Unit smelter;
+	
+	private Position mineDock;
+	private Position smelterDock;
+	
+	private Leg toSmelter;
+	private Leg toMine;
+	
+	public MineRoute(Unit mine, Unit smelter)
+	{
+		if (!mine.isMine())
+			throw new IllegalArgumentException("1st arg not a mine");
+		if (!smelter.isSmelter())
+			throw new IllegalArgumentException("2nd arg not a smelter");
+		
+		if (mine.has(Capability.COMMON_ORE) != smelter.has(Capability.COMMON_ORE))
+			throw new IllegalArgumentException("Mine and smelter not same type");
+		
+		this.mine = mine;
+		this.smelter = smelter;
+		
+		mineDock = mine.getPosition();
+		smelterDock = smelter.getPosition().shift(3, 2);
+		
+		toSmelter = new Leg(mineDock, smelterDock);
+		toMine = new Leg(smelterDock, mineDock);
+	}
+	
+	public Unit getMine()
+	{
+		return mine;
+	}
+	
+	public Unit getSmelter()
+	{
+		return smelter;
+	}
+	
+	public Position getMineDock()
+	{
+		return mineDock;
+	}
+	
+	public Position getSmelterDock()
+	{
+		return smelterDock;
+	}
+	
+	/**
+	 * Gets the path from the mine dock to the smelter dock,
+	 * or null if there isn't one.
+	 */
+	public List<Position> getPathToSmelter(CostMap costMap)
+	{
+		return toSmelter.getPath(costMap);
+	}
+	
+	/**
+	 * Gets the path from the smelter dock to the mine dock,
+	 * or null if there isn't one.
+	 */
+	public List<Position> getPathToMine(CostMap costMap)
+	{
+		return toMine.getPath(costMap);
+	}
+	
+	/**
+	 * Returns true and records the departure if a truck may leave the mine
+	 * dock on the given frame.
+	 */
+	public boolean departMine(int frame)
+	{
+		return toSmelter.depart(frame);
+	}
+	
+	/**
+	 * Returns true and records the departure if a truck may leave the
+	 * smelter dock on the given frame.
+	 */
+	public boolean departSmelter(int frame)
+	{
+		return toMine.depart(frame);
+	}
+	
+	private static class Leg
+	{
+		private Position start;
+		private Position end;
+		private List<Position> path;
+		private int modCount = -1;
+		private int lastDeparture = Integer.MIN_VALUE / 2;
+		
+		public Leg(Position start, Position end)
+		{
+			this.start = start;
+			this.end = end;
+		}
+		
+		public List<Position> getPath(CostMap costMap)
+		{
+			if (costMap.getModCount() != modCount)
+			{
+				if (path == null || !isClear(costMap))
+				{
+					path = new AStar().getPath(costMap, start, end);
+					
+					if (path != null)
+						path = Collections.unmodifiableList(path);
+				}
+				
+				modCount = costMap.getModCount();
+			}
+			
+			return path;
+		}
+		
+		public boolean depart(int frame)
+		{
+			if (frame - lastDeparture < DEPARTURE_INTERVAL)
+				return false;
+			
+			lastDeparture = frame;
+			return true;
+		}
+		
+		private boolean isClear(CostMap costMap)
+		{
+			for (Position pos : path)
+				if (costMap.isInfinite(pos))
+					return false;
+			
+			return true;
+		}
+	}
+}
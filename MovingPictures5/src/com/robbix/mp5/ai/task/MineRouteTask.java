@@ -1,5 +1,7 @@
 package com.robbix.mp5.ai.task;
 
+import java.util.List;
+
 import com.robbix.mp5.Game;
 import com.robbix.mp5.map.LayeredMap;
 import com.robbix.mp5.map.Ore;
@@ -9,6 +11,8 @@ import com.robbix.utils.Position;
 
 public class MineRouteTask extends Task
 {
+	private MineRoute route;
+	
 	private Position mineDock;
 	private Position smelterDock;
 	
@@ -21,17 +25,11 @@ public class MineRouteTask extends Task
 	{
 		super(true, Task.TRUCK_ONLY);
 		
-		if (!mine.isMine())
-			throw new IllegalArgumentException("1st arg not a mine");
-		if (!smelter.isSmelter())
-			throw new IllegalArgumentException("2nd arg not a smelter");
-		
-		if (mine.is("Common") != smelter.is("Common"))
-			throw new IllegalArgumentException("Mine and smelter not same type");
+		route = Game.game.getMineRoute(mine, smelter);
 		
-		mineDock = mine.getPosition();
+		mineDock = route.getMineDock();
 		resPosition = mineDock.shift(1, 0);
-		smelterDock = smelter.getPosition().shift(3, 2);
+		smelterDock = route.getSmelterDock();
 		
 		this.mine = mine;
 		this.smelter = smelter;
@@ -59,6 +57,11 @@ public class MineRouteTask extends Task
 					unit.assignNext(new MineTask(deposit.getLoad()));
 				}
 			}
+			else if (unit.isAt(smelterDock))
+			{
+				if (route.departSmelter(Game.game.getFrame()))
+					followRoute(unit, route.getPathToMine(unit.getMap().getTerrainCostMap()));
+			}
 			else
 			{
 				Game.game.doMove(unit, mineDock, false);
@@ -79,10 +82,26 @@ public class MineRouteTask extends Task
 					unit.assignNext(new DockTask(smelter, Cargo.EMPTY));
 				}
 			}
+			else if (unit.isAt(mineDock))
+			{
+				if (route.departMine(Game.game.getFrame()))
+					followRoute(unit, route.getPathToSmelter(unit.getMap().getTerrainCostMap()));
+			}
 			else
 			{
 				Game.game.doMove(unit, smelterDock, false);
 			}
 		}
 	}
+	
+	/**
+	 * Sends the truck down the route's cached path. A blocked route stays
+	 * cached as null until the cost map changes, so nothing is searched
+	 * again in the meantime.
+	 */
+	private void followRoute(Unit unit, List<Position> path)
+	{
+		if (path != null)
+			unit.assignNext(new PathTask(path));
+	}
 }
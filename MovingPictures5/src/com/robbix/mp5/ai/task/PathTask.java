@@ -2,21 +2,47 @@ package com.robbix.mp5.ai.task;
 
 import java.util.List;
 
+import com.robbix.mp5.Game;
+import com.robbix.mp5.map.LayeredMap;
+import com.robbix.mp5.map.ReservationTable;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Direction;
 import com.robbix.utils.Position;
 
 public class PathTask extends Task
 {
+	/**
+	 * Number of steps along the path claimed ahead of the unit.
+	 */
+	private static final int LOOKAHEAD = 3;
+	
+	/**
+	 * Frames to wait for a higher-priority unit to pass before falling
+	 * back on steering around it.
+	 */
+	private static final int MAX_WAIT = 2 * ReservationTable.FRAMES_PER_WINDOW;
+	
 	private List<Position> path;
+	private int waitFrames = 0;
 	private int pathIndex;
 	private Position destination;
+	private int priority;
 	
 	public PathTask(List<Position> path)
+	{
+		this(path, 0);
+	}
+	
+	/**
+	 * Follows the path, claiming cells ahead with the given priority.
+	 * The unit only keeps the priority while it's on this path.
+	 */
+	public PathTask(List<Position> path, int priority)
 	{
 		super(true, Task.VEHICLE_ONLY);
 		this.path = path;
 		this.destination = path.get(path.size() - 1);
+		this.priority = priority;
 		
 		this.pathIndex = 1; // Skip the first pos, it is current pos
 	}
@@ -25,11 +51,22 @@ public class PathTask extends Task
 	{
 		if (unit.getPosition().equals(destination))
 		{
+			unit.setPriority(0);
 			unit.resetAnimationFrame();
 			unit.completeTask(this);
 			return;
 		}
 		
+		unit.setPriority(priority);
+		
+		if (!claimAhead(unit) && waitFrames < MAX_WAIT)
+		{
+			waitFrames++;
+			return;
+		}
+		
+		waitFrames = 0;
+		
 		Position next = path.get(pathIndex++);
 		Position current = unit.getPosition();
 		Direction dir = Direction.getMoveDirection(current, next);
@@ -55,4 +92,45 @@ public class PathTask extends Task
 			unit.step();
 		}
 	}
+	
+	/**
+	 * Claims the unit's current cell and the next few cells along the path
+	 * in the map's reservation table, for the frames the unit is expected
+	 * to be in each of them. Returns false if a unit of higher priority
+	 * has already claimed the next cell for that time.
+	 */
+	private boolean claimAhead(Unit unit)
+	{
+		LayeredMap map = unit.getMap();
+		ReservationTable table = map.getReservationTable();
+		
+		int frame = Game.game.getFrame();
+		int lastFrame = (ReservationTable.getWindow(frame) + ReservationTable.getHorizon() + 1)
+					  * ReservationTable.FRAMES_PER_WINDOW - 1;
+		
+		double speed = Math.max(unit.getSpeed(), 0.1);
+		int framesPerCell = (int) Math.ceil(map.getSpotSize() / speed);
+		
+		Position current = unit.getPosition();
+		table.claim(current.x, current.y, frame, frame + framesPerCell / 2, unit);
+		
+		int end = Math.min(pathIndex + LOOKAHEAD, path.size());
+		
+		for (int i = pathIndex; i < end; ++i)
+		{
+			int step = i - pathIndex;
+			int enter = frame + step * framesPerCell;
+			
+			if (enter > lastFrame)
+				break;
+			
+			int leave = Math.min(enter + framesPerCell, lastFrame);
+			Position pos = path.get(i);
+			
+			if (!table.claim(pos.x, pos.y, enter, leave, unit))
+				return step > 0;
+		}
+		
+		return true;
+	}
 }
@@ -1,5 +1,6 @@
 package com.robbix.mp5.ai.task;
 
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Filter;
 
@@ -56,9 +57,7 @@ public abstract class Task
 			if (unit == null)
 				return false;
 			
-			String typeName = unit.getType().getName();
-			
-			return typeName.contains("Truck") || typeName.contains("ConVec");
+			return unit.has(Capability.DOCKABLE);
 		}
 	};
 	
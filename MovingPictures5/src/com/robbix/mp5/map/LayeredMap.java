@@ -8,8 +8,10 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import com.robbix.mp5.ui.DisplayPanel;
@@ -49,6 +51,7 @@ public class LayeredMap
 		map.units = new HashSet<Unit>();
 		map.deposits = new HashSet<Ore>();
 		map.bounds = new Region(0, 0, w, h);
+		map.timeTable = new ReservationTable(w, h);
 		
 		for (int x = 0; x < w; ++x)
 		for (int y = 0; y < h; ++y)
@@ -115,8 +118,14 @@ public class LayeredMap
 	private CostMap costMap;
 	private TileSet tileSet;
 	private Region bounds;
+	private ReservationTable timeTable;
 	
 	private List<DisplayPanel> panels;
+	private MapListener.Helper listenerHelper = new MapListener.Helper();
+	
+	private int updateDepth = 0;
+	private boolean pendingAssessment = false;
+	private Set<Region> pendingRefresh = new LinkedHashSet<Region>();
 	
 	private LayeredMap()
 	{
@@ -131,6 +140,16 @@ public class LayeredMap
 		}
 	}
 	
+	public void addMapListener(MapListener listener)
+	{
+		listenerHelper.add(listener);
+	}
+	
+	public void removeMapListener(MapListener listener)
+	{
+		listenerHelper.remove(listener);
+	}
+	
 	public DisplayPanel getDisplayPanel()
 	{
 		return getDisplayPanel(0);
@@ -196,6 +215,30 @@ public class LayeredMap
 			&& grid.get(pos).fixture == null;
 	}
 	
+	/**
+	 * Checks whether the fixture can be placed on every cell in the region,
+	 * a row at a time.
+	 */
+	public boolean canPlaceFixture(Fixture fixture, Region region)
+	{
+		if (!bounds.contains(region))
+			return false;
+		
+		for (int y = region.y; y < region.y + region.h; ++y)
+		for (int x = region.x; x < region.x + region.w; ++x)
+		{
+			Spot spot = grid.get(x, y);
+			
+			if (spot.fixture != null)
+				return false;
+			
+			if (!fixture.passable && !canPlaceUnit(spot, x, y))
+				return false;
+		}
+		
+		return true;
+	}
+	
 	public Set<Ore> getOres()
 	{
 		return deposits;
@@ -227,6 +270,7 @@ public class LayeredMap
 		deposits.remove(deposit);
 		deposit.setPosition(null);
 		grid.get(pos).deposit = null;
+		refreshPanel(new Region(pos));
 	}
 	
 	public Ore getOre(Position pos)
@@ -394,6 +438,12 @@ public class LayeredMap
 	
 	private void assessConnections()
 	{
+		if (updateDepth > 0)
+		{
+			pendingAssessment = true;
+			return;
+		}
+		
 		for (int x = 0; x < getWidth(); ++x)
 		for (int y = 0; y < getHeight(); ++y)
 		{
@@ -455,6 +505,80 @@ public class LayeredMap
 		refreshPanel(new Region(pos).stretch(1));
 	}
 	
+	/**
+	 * Applies the given amount of damage to each wall or tube in the map,
+	 * bulldozing the ones that are destroyed. Connections are reassessed
+	 * once and each spot that changed is refreshed once, at the end.
+	 */
+	public void damageFixtures(Map<Position, Integer> damage)
+	{
+		List<Position> destroyed = new ArrayList<Position>();
+		
+		beginUpdate();
+		
+		try
+		{
+			for (Map.Entry<Position, Integer> entry : damage.entrySet())
+			{
+				Position pos = entry.getKey();
+				
+				if (!hasWall(pos) && !hasTube(pos))
+					continue;
+				
+				int hp = grid.get(pos).fixtureHP - entry.getValue();
+				
+				if (hp <= 0)
+				{
+					destroyed.add(pos);
+				}
+				else
+				{
+					setFixtureHP(pos, hp);
+					refreshPanel(new Region(pos));
+				}
+			}
+			
+			for (Position pos : destroyed)
+				bulldoze(pos);
+		}
+		finally
+		{
+			endUpdate();
+		}
+	}
+	
+	/**
+	 * Defers connection assessment and panel refreshes until the
+	 * matching call to endUpdate(). Each region refreshed in between is
+	 * sent on its own, not as their union, so listeners only redraw what
+	 * changed.
+	 */
+	private void beginUpdate()
+	{
+		updateDepth++;
+	}
+	
+	private void endUpdate()
+	{
+		if (--updateDepth > 0)
+			return;
+		
+		if (pendingAssessment)
+		{
+			pendingAssessment = false;
+			assessConnections();
+		}
+		
+		if (!pendingRefresh.isEmpty())
+		{
+			List<Region> regions = new ArrayList<Region>(pendingRefresh);
+			pendingRefresh.clear();
+			
+			for (Region region : regions)
+				refreshPanel(region);
+		}
+	}
+	
 	public void clearFixture(Position pos)
 	{
 		if (!bounds.contains(pos))
@@ -677,23 +801,35 @@ public class LayeredMap
 	
 	public boolean canPlaceUnit(Position pos)
 	{
-		if (!bounds.contains(pos))
+		return canPlaceUnit(pos.x, pos.y);
+	}
+	
+	public boolean canPlaceUnit(int x, int y)
+	{
+		if (!bounds.contains(x, y))
 			return false;
 		
-		Spot spot = grid.get(pos);
-		
-		return !costMap.isInfinite(pos)
+		return canPlaceUnit(grid.get(x, y), x, y);
+	}
+	
+	private boolean canPlaceUnit(Spot spot, int x, int y)
+	{
+		return !costMap.isInfinite(x, y)
 			&& spot.occupant == null
 			&& spot.reservant == null;
 	}
 	
 	public boolean canPlaceUnit(Position pos, Footprint fp)
 	{
-		if (!bounds.contains(fp.getInnerRegion().move(pos)))
+		Region inner = fp.getInnerRegion();
+		
+		if (!bounds.contains(pos.x, pos.y)
+		 || !bounds.contains(pos.x + inner.w - 1, pos.y + inner.h - 1))
 			return false;
 		
-		for (Position occupied : fp.getInnerRegion().iterator(pos))
-			if (!canPlaceUnit(occupied))
+		for (int y = pos.y; y < pos.y + inner.h; ++y)
+		for (int x = pos.x; x < pos.x + inner.w; ++x)
+			if (!canPlaceUnit(grid.get(x, y), x, y))
 				return false;
 		
 		return true;
@@ -715,18 +851,15 @@ public class LayeredMap
 	
 	public boolean willConnect(Position pos, Footprint fp)
 	{
-		if (!bounds.contains(fp.getInnerRegion().move(pos)))
-			return false;
+		Region inner = fp.getInnerRegion();
 		
-		for (Position occupied : fp.iterator(pos))
-			for (Position neighbor : occupied.get4Neighbors())
-				if (bounds.contains(neighbor) && isAlive(neighbor))
-					return true;
+		if (!bounds.contains(pos.x, pos.y)
+		 || !bounds.contains(pos.x + inner.w - 1, pos.y + inner.h - 1))
+			return false;
 		
-		for (Position relativeTubePos : fp.getTubePositions())
-			for (Position neighbor : relativeTubePos.shift(pos.x, pos.y).get4Neighbors())
-				if (bounds.contains(neighbor) && isAlive(neighbor))
-					return true;
+		for (int offset : fp.getConnectionOffsets())
+			if (isAlive(pos.x + Footprint.getDX(offset), pos.y + Footprint.getDY(offset)))
+				return true;
 		
 		return false;
 	}
@@ -742,17 +875,22 @@ public class LayeredMap
 		unit.setPosition(pos);
 		unit.setContainer(this);
 		
-		for (Position occupied : unit.getFootprint().iterator(pos))
+		Footprint fp = unit.getFootprint();
+		
+		for (int offset : fp.getInnerOffsets())
 		{
-			Spot spot = grid.get(occupied);
+			int x = pos.x + Footprint.getDX(offset);
+			int y = pos.y + Footprint.getDY(offset);
+			
+			Spot spot = grid.get(x, y);
 			spot.occupant = unit;
 			
-			if (unit.getFootprint() != Footprint.VEHICLE)
+			if (fp != Footprint.VEHICLE)
 			{
 				spot.alive = false;
 				
 				if (unit.isConnectionSource())
-					sources.add(occupied);
+					sources.add(new Position(x, y));
 			}
 		}
 		
@@ -760,26 +898,22 @@ public class LayeredMap
 		
 		if (unit.isStructure() || unit.getType().isGuardPostType())
 		{
-			Region outer = unit.getFootprint()
-							   .getInnerRegion()
-							   .move(pos)
-							   .stretch(1);
+			for (int offset : fp.getInnerOffsets())
+				bulldozeUnlessFixture(pos, offset);
 			
-			for (Position bullPos : outer)
-			{
-				boolean contained = bounds.contains(bullPos);
-				
-				if (contained && !hasFixture(bullPos))
-					bulldoze(bullPos);
-			}
+			for (int offset : fp.getBorderOffsets())
+				bulldozeUnlessFixture(pos, offset);
 			
-			for (Position tubePos0 : unit.getFootprint().getTubePositions())
+			for (int offset : fp.getTubeOffsets())
 			{
-				Position tubePos = tubePos0.shift(pos.x, pos.y);
+				int x = pos.x + Footprint.getDX(offset);
+				int y = pos.y + Footprint.getDY(offset);
 				
-				if (!bounds.contains(tubePos))
+				if (!bounds.contains(x, y))
 					continue;
 				
+				Position tubePos = new Position(x, y);
+				
 				boolean occupied = isOccupied(tubePos)
 					&& (grid.get(tubePos).occupant.isStructure()
 				|| grid.get(tubePos).occupant.getType().isGuardPostType());
@@ -790,6 +924,7 @@ public class LayeredMap
 		}
 		
 		assessConnections();
+		listenerHelper.fireUnitAdded(unit);
 		boolean mine = unit.isMine();
 		
 		for (DisplayPanel panel : panels)
@@ -802,6 +937,15 @@ public class LayeredMap
 		}
 	}
 	
+	private void bulldozeUnlessFixture(Position origin, int offset)
+	{
+		int x = origin.x + Footprint.getDX(offset);
+		int y = origin.y + Footprint.getDY(offset);
+		
+		if (bounds.contains(x, y) && grid.get(x, y).fixture == null)
+			bulldoze(new Position(x, y));
+	}
+	
 	public boolean isOccupied(Position pos)
 	{
 		return grid.get(pos).occupant != null;
@@ -859,11 +1003,19 @@ public class LayeredMap
 			clearFixture(pos);
 		}
 		
-		for (Position fpPos : unit.getFootprint().iterator(pos))
+		boolean source = unit.getType().isConnectionSource();
+		
+		for (int offset : unit.getFootprint().getInnerOffsets())
 		{
-			grid.get(fpPos).occupant = null;
-			grid.get(fpPos).alive = false;
-			sources.remove(fpPos);
+			int x = pos.x + Footprint.getDX(offset);
+			int y = pos.y + Footprint.getDY(offset);
+			
+			Spot spot = grid.get(x, y);
+			spot.occupant = null;
+			spot.alive = false;
+			
+			if (source)
+				sources.remove(new Position(x, y));
 		}
 		
 		for (Position rPos : unit.getReservations())
@@ -877,6 +1029,7 @@ public class LayeredMap
 		
 		units.remove(unit);
 		assessConnections();
+		listenerHelper.fireUnitRemoved(unit, pos);
 		
 		if (unit.isStructure())
 		{
@@ -953,15 +1106,20 @@ public class LayeredMap
 		if (holder != null && !holder.equals(unit))
 			throw new IllegalStateException(pos + " reserved");
 		
-		Footprint fp = unit.getFootprint();
+		Position from = unit.getPosition();
+		int[] offsets = unit.getFootprint().getInnerOffsets();
 		
-		for (Position occupied : fp.iterator(unit.getPosition()))
-			grid.get(occupied).occupant = null;
+		for (int offset : offsets)
+			grid.get(from.x + Footprint.getDX(offset),
+					 from.y + Footprint.getDY(offset)).occupant = null;
 		
 		unit.setPosition(pos);
 		
-		for (Position occupied : fp.iterator(unit.getPosition()))
-			grid.get(occupied).occupant = unit;
+		for (int offset : offsets)
+			grid.get(pos.x + Footprint.getDX(offset),
+					 pos.y + Footprint.getDY(offset)).occupant = unit;
+		
+		listenerHelper.fireUnitMoved(unit, from, pos);
 	}
 	
 	public void shift(Unit unit, int dx, int dy)
@@ -969,6 +1127,15 @@ public class LayeredMap
 		move(unit, unit.getPosition().shift(dx, dy));
 	}
 	
+	/**
+	 * Tells listeners the unit's offsets changed. Called by the unit, as
+	 * offsets are set on it directly.
+	 */
+	public void offsetChanged(Unit unit)
+	{
+		listenerHelper.fireUnitShifted(unit);
+	}
+	
 	public Unit findClosest(
 		Unit unit,
 		final Filter<Unit> unitFilter,
@@ -1032,6 +1199,15 @@ public class LayeredMap
 		holder.getReservations().remove(pos);
 	}
 	
+	/**
+	 * Gets the space-time reservations that moving units use to plan
+	 * around each other a few steps ahead.
+	 */
+	public ReservationTable getReservationTable()
+	{
+		return timeTable;
+	}
+	
 	public Collection<Position> getReservations(Unit unit)
 	{
 		return unit.getReservations();
@@ -1055,10 +1231,23 @@ public class LayeredMap
 	
 	private void refreshPanel(Region region)
 	{
+		if (updateDepth > 0)
+		{
+			pendingRefresh.add(region);
+			return;
+		}
+		
+		region = region.getIntersection(bounds);
+		
+		if (region.isEmpty())
+			return;
+		
 		synchronized (panels)
 		{
 			for (DisplayPanel panel : panels)
 				panel.refresh(region);
 		}
+		
+		listenerHelper.fireCellsChanged(region);
 	}
 }
@@ -0,0 +1,94 @@
+package com.robbix.mp5.map;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.robbix.mp5.unit.Unit;
+import com.robbix.utils.Position;
+import com.robbix.utils.Region;
+
+/**
+ * Listener for changes to a LayeredMap. Events are fired on whichever
+ * thread changed the map, normally the Engine's.
+ */
+public interface MapListener
+{
+	/**
+	 * Terrain or fixtures in the region changed.
+	 */
+	public void cellsChanged(Region region);
+	
+	public void unitAdded(Unit unit);
+	
+	/**
+	 * The unit was taken off the map from the given position.
+	 */
+	public void unitRemoved(Unit unit, Position pos);
+	
+	public void unitMoved(Unit unit, Position from, Position to);
+	
+	/**
+	 * The unit's offsets changed, as it moves between positions.
+	 */
+	public void unitShifted(Unit unit);
+	
+	public static class Helper
+	{
+		private Set<MapListener> listeners;
+		
+		public Helper()
+		{
+			listeners = new HashSet<MapListener>();
+		}
+		
+		public boolean add(MapListener listener)
+		{
+			return listeners.add(listener);
+		}
+		
+		public boolean remove(MapListener listener)
+		{
+			return listeners.remove(listener);
+		}
+		
+		public Set<MapListener> getAll()
+		{
+			return new HashSet<MapListener>(listeners);
+		}
+		
+		public int size()
+		{
+			return listeners.size();
+		}
+		
+		public void fireCellsChanged(Region region)
+		{
+			for (MapListener listener : listeners)
+				listener.cellsChanged(region);
+		}
+		
+		public void fireUnitAdded(Unit unit)
+		{
+			for (MapListener listener : listeners)
+				listener.unitAdded(unit);
+		}
+		
+		public void fireUnitRemoved(Unit unit, Position pos)
+		{
+			for (MapListener listener : listeners)
+				listener.unitRemoved(unit, pos);
+		}
+		
+		public void fireUnitMoved(Unit unit, Position from, Position to)
+		{
+			for (MapListener listener : listeners)
+				listener.unitMoved(unit, from, to);
+		}
+		
+		public void fireUnitShifted(Unit unit)
+		{
+			for (MapListener listener : listeners)
+				listener.unitShifted(unit);
+		}
+	}
+}
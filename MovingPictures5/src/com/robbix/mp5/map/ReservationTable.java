@@ -0,0 +1,297 @@
+package com.robbix.mp5.map;
+
+import java.util.Arrays;
+
+import com.robbix.mp5.unit.Unit;
+
+/**
+ * Space-time reservations for cooperative path following. Each entry
+ * claims one cell for one window of frames, so units can plan a few
+ * steps ahead around each other instead of only reserving the next cell.
+ *
+ * Only cells that are actually claimed take up space. Entries are kept
+ * in an open-addressed hash keyed on the window (high 32 bits) and the
+ * cell's index (low 32 bits), each holding the owner's priority (8 bits)
+ * and serial (24 bits). Claims are only made up to getHorizon() windows
+ * ahead, so claims more than that far behind the latest one are expired
+ * and are dropped whenever the table would otherwise grow.
+ */
+public class ReservationTable
+{
+	public static final int FRAMES_PER_WINDOW = 16;
+	
+	private static final int WINDOWS = 16;
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	private static final long EMPTY = -1L;
+	
+	private final int w;
+	private final int h;
+	
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int latestWindow;
+	
+	public ReservationTable(int w, int h)
+	{
+		this.w = w;
+		this.h = h;
+		
+		clear();
+	}
+	
+	/**
+	 * Gets the window that contains the given frame.
+	 */
+	public static int getWindow(int frame)
+	{
+		return frame / FRAMES_PER_WINDOW;
+	}
+	
+	/**
+	 * Gets the number of windows ahead of the current one that can be
+	 * claimed.
+	 */
+	public static int getHorizon()
+	{
+		return WINDOWS - 1;
+	}
+	
+	/**
+	 * Returns true if the given unit could claim the cell at (x, y) for
+	 * the given window: the cell is free, already the unit's, or claimed
+	 * by a unit of lower priority.
+	 */
+	public boolean isClaimable(int x, int y, int window, Unit unit)
+	{
+		if (x < 0 || y < 0 || x >= w || y >= h)
+			return false;
+		
+		int slot = find(getKey(x, y, window));
+		return slot < 0 || canOverride(values[slot], unit);
+	}
+	
+	/**
+	 * Claims the cell at (x, y) for the given window if possible.
+	 * Returns true if the unit holds the claim afterwards.
+	 * 
+	 * The window must not be more than getHorizon() windows ahead of the
+	 * current one, or claims that are still live may be dropped as
+	 * expired.
+	 */
+	public boolean claim(int x, int y, int window, Unit unit)
+	{
+		if (x < 0 || y < 0 || x >= w || y >= h)
+			return false;
+		
+		long key = getKey(x, y, window);
+		int slot = find(key);
+		
+		if (slot >= 0)
+		{
+			if (!canOverride(values[slot], unit))
+				return false;
+			
+			values[slot] = pack(unit);
+			return true;
+		}
+		
+		latestWindow = Math.max(latestWindow, window);
+		
+		if ((size + 1) * 2 > keys.length)
+			rehash();
+		
+		insert(key, pack(unit));
+		return true;
+	}
+	
+	/**
+	 * Claims the cell at (x, y) for every window from the one containing
+	 * startFrame through the one containing endFrame. Stops at the first
+	 * window that can't be claimed and returns false in that case.
+	 */
+	public boolean claim(int x, int y, int startFrame, int endFrame, Unit unit)
+	{
+		int first = getWindow(startFrame);
+		int last = getWindow(endFrame);
+		
+		for (int window = first; window <= last; ++window)
+			if (!claim(x, y, window, unit))
+				return false;
+		
+		return true;
+	}
+	
+	/**
+	 * Removes the unit's claim on the cell at (x, y) for the given window,
+	 * if it has one.
+	 */
+	public void release(int x, int y, int window, Unit unit)
+	{
+		if (x < 0 || y < 0 || x >= w || y >= h)
+			return;
+		
+		int slot = find(getKey(x, y, window));
+		
+		if (slot >= 0 && getSerial(values[slot]) == (unit.getSerial() & 0xffffff))
+			remove(slot);
+	}
+	
+	/**
+	 * Clears all claims.
+	 */
+	public void clear()
+	{
+		keys = new long[INITIAL_CAPACITY];
+		values = new int[INITIAL_CAPACITY];
+		size = 0;
+		latestWindow = 0;
+		
+		Arrays.fill(keys, EMPTY);
+	}
+	
+	/**
+	 * Gets the number of claims held, including expired ones that haven't
+	 * been dropped yet.
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	private long getKey(int x, int y, int window)
+	{
+		return ((long) window << 32) | (y * w + x);
+	}
+	
+	/**
+	 * Gets the slot holding the key, or -1 if it's not in the table.
+	 */
+	private int find(long key)
+	{
+		int mask = keys.length - 1;
+		
+		for (int slot = hash(key) & mask; keys[slot] != EMPTY; slot = (slot + 1) & mask)
+			if (keys[slot] == key)
+				return slot;
+		
+		return -1;
+	}
+	
+	private void insert(long key, int value)
+	{
+		int mask = keys.length - 1;
+		int slot = hash(key) & mask;
+		
+		while (keys[slot] != EMPTY)
+			slot = (slot + 1) & mask;
+		
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+	
+	/**
+	 * Empties the slot, shifting back any later entries in its run that
+	 * would otherwise no longer be found.
+	 */
+	private void remove(int slot)
+	{
+		int mask = keys.length - 1;
+		int next = slot;
+		
+		while (true)
+		{
+			next = (next + 1) & mask;
+			
+			if (keys[next] == EMPTY)
+				break;
+			
+			int home = hash(keys[next]) & mask;
+			
+			// Move the entry back unless its home lies after the gap
+			if (((next - home) & mask) >= ((next - slot) & mask))
+			{
+				keys[slot] = keys[next];
+				values[slot] = values[next];
+				slot = next;
+			}
+		}
+		
+		keys[slot] = EMPTY;
+		size--;
+	}
+	
+	/**
+	 * Drops expired claims, then resizes the table so the live ones fill
+	 * no more than a quarter of it.
+	 */
+	private void rehash()
+	{
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		int oldestLive = latestWindow - getHorizon();
+		int live = 0;
+		
+		for (int i = 0; i < oldKeys.length; ++i)
+			if (oldKeys[i] != EMPTY && getStamp(oldKeys[i]) >= oldestLive)
+				live++;
+		
+		int capacity = INITIAL_CAPACITY;
+		
+		while (capacity < live * 4)
+			capacity *= 2;
+		
+		keys = new long[capacity];
+		values = new int[capacity];
+		size = 0;
+		
+		Arrays.fill(keys, EMPTY);
+		
+		for (int i = 0; i < oldKeys.length; ++i)
+			if (oldKeys[i] != EMPTY && getStamp(oldKeys[i]) >= oldestLive)
+				insert(oldKeys[i], oldValues[i]);
+	}
+	
+	private static int hash(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+	
+	private static boolean canOverride(int entry, Unit unit)
+	{
+		if (getSerial(entry) == (unit.getSerial() & 0xffffff))
+			return true;
+		
+		return getPriority(entry) < clampPriority(unit.getPriority());
+	}
+	
+	private static int pack(Unit unit)
+	{
+		return (clampPriority(unit.getPriority()) << 24)
+			 | (unit.getSerial() & 0xffffff);
+	}
+	
+	private static int clampPriority(int priority)
+	{
+		return Math.min(Math.max(priority, 0), 0xff);
+	}
+	
+	private static int getStamp(long key)
+	{
+		return (int) (key >>> 32);
+	}
+	
+	private static int getPriority(int entry)
+	{
+		return (entry >>> 24) & 0xff;
+	}
+	
+	private static int getSerial(int entry)
+	{
+		return entry & 0xffffff;
+	}
+}
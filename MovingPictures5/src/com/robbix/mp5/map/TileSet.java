@@ -7,10 +7,10 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
 
-import javax.imageio.ImageIO;
-
 import com.robbix.mp5.unit.HealthBracket;
+import com.robbix.utils.AssetArchive;
 import com.robbix.utils.Neighbors;
+import com.robbix.utils.RImage;
 import com.robbix.utils.Utils;
 
 public class TileSet
@@ -24,20 +24,20 @@ public class TileSet
 		
 		TileSet set = new TileSet();
 		
-		File[] plains = new File(rootDir, "plain").listFiles(Utils.BMP);
+		File[] plains = AssetArchive.listFiles(new File(rootDir, "plain"), ".bmp");
 		
 		for (int x = 0; x < plains.length; ++x)
 		{
-			Tile pTile = new Tile(ImageIO.read(plains[x]));
+			Tile pTile = new Tile(RImage.read(plains[x]));
 			set.tiles.put("plain/" + x, pTile);
 			set.plainCount++;
 		}
 		
-		File[] bulldozed = new File(rootDir, "bulldozed").listFiles(Utils.BMP);
+		File[] bulldozed = AssetArchive.listFiles(new File(rootDir, "bulldozed"), ".bmp");
 		
 		for (int x = 0; x < bulldozed.length; ++x)
 		{
-			Tile bTile = new Tile(ImageIO.read(bulldozed[x]));
+			Tile bTile = new Tile(RImage.read(bulldozed[x]));
 			set.tiles.put("bulldozed/" + x, bTile);
 			set.bulldozedCount++;
 		}
@@ -62,10 +62,10 @@ public class TileSet
 			Neighbors.NONE
 		};
 		
-		File[] wallsG = new File(rootDir, "wall/greenhealth").listFiles(Utils.BMP);
-		File[] wallsY = new File(rootDir, "wall/yellowhealth").listFiles(Utils.BMP);
-		File[] wallsR = new File(rootDir, "wall/redhealth").listFiles(Utils.BMP);
-		File[] tubes  = new File(rootDir, "tube").listFiles(Utils.BMP);
+		File[] wallsG = AssetArchive.listFiles(new File(rootDir, "wall/greenhealth"), ".bmp");
+		File[] wallsY = AssetArchive.listFiles(new File(rootDir, "wall/yellowhealth"), ".bmp");
+		File[] wallsR = AssetArchive.listFiles(new File(rootDir, "wall/redhealth"), ".bmp");
+		File[] tubes  = AssetArchive.listFiles(new File(rootDir, "tube"), ".bmp");
 		
 		Arrays.sort(wallsG, Utils.FILENAME);
 		Arrays.sort(wallsY, Utils.FILENAME);
@@ -74,10 +74,10 @@ public class TileSet
 		
 		for (int x = 0; x < tileOrder2.length; ++x)
 		{
-			Tile wgTile = new Tile(ImageIO.read(wallsG[x]));
-			Tile wyTile = new Tile(ImageIO.read(wallsY[x]));
-			Tile wrTile = new Tile(ImageIO.read(wallsR[x]));
-			Tile tuTile = new Tile(ImageIO.read(tubes[x]));
+			Tile wgTile = new Tile(RImage.read(wallsG[x]));
+			Tile wyTile = new Tile(RImage.read(wallsY[x]));
+			Tile wrTile = new Tile(RImage.read(wallsR[x]));
+			Tile tuTile = new Tile(RImage.read(tubes[x]));
 			
 			set.tiles.put("wall/green/"  + tileOrder2[x], wgTile);
 			set.tiles.put("wall/yellow/" + tileOrder2[x], wyTile);
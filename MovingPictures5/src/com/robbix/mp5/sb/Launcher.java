@@ -7,14 +7,20 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
 
+import com.robbix.mp5.GameLoader;
 import com.robbix.mp5.sb.demo.Demo;
 
 public class Launcher
@@ -59,13 +65,15 @@ public class Launcher
 		
 		launchButton.requestFocusInWindow();
 		
-		dialog.addWindowListener(new WindowAdapter()
+		final WindowAdapter exitOnClose = new WindowAdapter()
 		{
 			public void windowClosing(WindowEvent e)
 			{
 				System.exit(0);
 			}
-		});
+		};
+		
+		dialog.addWindowListener(exitOnClose);
 		
 		launchButton.addActionListener(new ActionListener()
 		{
@@ -97,18 +105,130 @@ public class Launcher
 				argsList.add("-" + mapComboBox.getSelectedItem());
 				argsList.add("-" + tileSetBox.getSelectedItem());
 				
-				try
+				final String[] sandboxArgs = argsList.toArray(new String[0]);
+				
+				// Closing the dialog from here on mustn't take the game with it
+				dialog.removeWindowListener(exitOnClose);
+				dialog.getContentPane().removeAll();
+				Sandbox.addLoadListener(new LoadProgress(dialog));
+				dialog.pack();
+				dialog.setLocationRelativeTo(null);
+				
+				Thread loadThread = new Thread("MP5-Launcher")
+				{
+					public void run()
+					{
+						try
+						{
+							Sandbox.main(sandboxArgs);
+						}
+						catch (IOException e1)
+						{
+							e1.printStackTrace();
+							System.exit(1);
+						}
+					}
+				};
+				
+				loadThread.start();
+			}
+		});
+	}
+	
+	/**
+	 * Shows each stage of loading the game in the launcher dialog with how
+	 * long it took, then closes the dialog once the display is up. Stages
+	 * still going in the background are reported on the console.
+	 */
+	private static class LoadProgress implements GameLoader.Listener
+	{
+		private JDialog dialog;
+		private JProgressBar progressBar;
+		private Map<GameLoader.Stage, JLabel> labels;
+		
+		public LoadProgress(JDialog dialog)
+		{
+			GameLoader.Stage[] stages = GameLoader.Stage.values();
+			
+			this.dialog = dialog;
+			this.progressBar = new JProgressBar(0, stages.length);
+			this.labels = new EnumMap<GameLoader.Stage, JLabel>(GameLoader.Stage.class);
+			
+			dialog.setLayout(new GridLayout(stages.length + 1, 1));
+			dialog.add(progressBar);
+			
+			for (GameLoader.Stage stage : stages)
+			{
+				JLabel label = new JLabel(getName(stage));
+				label.setEnabled(false);
+				labels.put(stage, label);
+				dialog.add(label);
+			}
+		}
+		
+		public void stageStarted(final GameLoader loader, final GameLoader.Stage stage)
+		{
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
 				{
-					dialog.setVisible(false);
-					Sandbox.main(argsList.toArray(new String[0]));
+					JLabel label = labels.get(stage);
+					label.setEnabled(true);
+					label.setText(getName(stage) + "...");
 				}
-				catch (IOException e1)
+			});
+		}
+		
+		public void stageFinished(final GameLoader loader, final GameLoader.Stage stage)
+		{
+			final long time = loader.getTime(stage);
+			
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
+				{
+					labels.get(stage).setText(getName(stage) + " - " + time + " ms");
+					stageEnded(stage);
+				}
+			});
+		}
+		
+		public void stageFailed(final GameLoader loader, final GameLoader.Stage stage, final Exception exc)
+		{
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
 				{
-					e1.printStackTrace();
-					System.exit(1);
+					JLabel label = labels.get(stage);
+					label.setEnabled(true);
+					label.setText(getName(stage) + " - failed: " + exc.getMessage());
+					stageEnded(stage);
 				}
+			});
+		}
+		
+		/**
+		 * Closes the dialog once the display stage has ended, as the game
+		 * is shown then.
+		 */
+		private void stageEnded(GameLoader.Stage stage)
+		{
+			if (!dialog.isDisplayable())
+			{
+				System.out.println(labels.get(stage).getText());
+				return;
 			}
-		});
+			
+			progressBar.setValue(progressBar.getValue() + 1);
+			
+			if (stage == GameLoader.Stage.DISPLAY)
+				dialog.dispose();
+		}
+		
+		private static String getName(GameLoader.Stage stage)
+		{
+			return "Loading " + stage.name().toLowerCase();
+		}
 	}
 	
 	private static String[] getMapAndDemoOptions()
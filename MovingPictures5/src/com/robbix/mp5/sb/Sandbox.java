@@ -64,6 +64,7 @@ import javax.swing.event.ChangeListener;
 import com.robbix.mp5.Engine;
 import com.robbix.mp5.Game;
 import com.robbix.mp5.GameListener;
+import com.robbix.mp5.GameLoader;
 import com.robbix.mp5.MeteorShowerTrigger;
 import com.robbix.mp5.map.Fixture;
 import com.robbix.mp5.map.Ore;
@@ -72,6 +73,7 @@ import com.robbix.mp5.sb.demo.Demo;
 import com.robbix.mp5.ui.DisplayPanel;
 import com.robbix.mp5.ui.DisplayPanelView;
 import com.robbix.mp5.ui.DisplayWindow;
+import com.robbix.mp5.ui.Minimap;
 import com.robbix.mp5.ui.obj.AcidCloudDisplayObject;
 import com.robbix.mp5.ui.overlay.PlaceBulldozeOverlay;
 import com.robbix.mp5.ui.overlay.PlaceFixtureOverlay;
@@ -126,6 +128,7 @@ public class Sandbox extends JApplet
 	}
 	
 	private static File resDir = new File("./res");
+	private static List<GameLoader.Listener> loadListeners = new ArrayList<GameLoader.Listener>();
 	
 	private static Player currentPlayer;
 	private static Game game;
@@ -167,6 +170,7 @@ public class Sandbox extends JApplet
 	private static JMenuItem frameRateMenuItem;
 	private static JMenuItem scrollSpeedMenuItem;
 	private static JMenuItem addWindowMenuItem;
+	private static JMenuItem minimapMenuItem;
 	private static JMenuItem addTabMenuItem;
 	private static JMenuItem splitDisplayMenuItem;
 	private static JMenuItem fullScreenMenuItem;
@@ -192,6 +196,18 @@ public class Sandbox extends JApplet
 	private static JMenuItem addPlayerMenuItem;
 	private static JMenuItem aboutMenuItem;
 	
+	/**
+	 * Has the listener told about the progress of the next game loaded
+	 * by main().
+	 */
+	public static void addLoadListener(GameLoader.Listener listener)
+	{
+		synchronized (loadListeners)
+		{
+			loadListeners.add(listener);
+		}
+	}
+	
 	public static void main(String[] args) throws IOException
 	{
 		/*-------------------------------------------------------------------------------------[*]
@@ -247,8 +263,22 @@ public class Sandbox extends JApplet
 		 * Create players
 		 * Create engine
 		 * Init Mediator
+		 * 
+		 * The display is built as soon as the map is loaded. Sprites and
+		 * sounds may still be loading in the background.
 		 */
-		game = Game.load(resDir, mapName, tileSetName, lazyLoadSprites, lazyLoadSounds);
+		GameLoader loader = new GameLoader(resDir, mapName, tileSetName, lazyLoadSprites, lazyLoadSounds);
+		
+		synchronized (loadListeners)
+		{
+			for (GameLoader.Listener listener : loadListeners)
+				loader.addListener(listener);
+			
+			loadListeners.clear();
+		}
+		
+		loader.start();
+		game = loader.awaitDisplay();
 		game.getSpriteLibrary().setAsyncModeEnabled(asyncLoadSprites);
 		engine = new Engine(game);
 		factory = game.getUnitFactory();
@@ -287,6 +317,7 @@ public class Sandbox extends JApplet
 		frameRateMenuItem      = new JMenuItem("Frame Rate");
 		scrollSpeedMenuItem    = new JMenuItem("Scroll Speed");
 		addWindowMenuItem      = new JMenuItem("Add Window");
+		minimapMenuItem        = new JMenuItem("Minimap");
 		addTabMenuItem         = new JMenuItem("Add Tab");
 		splitDisplayMenuItem   = new JMenuItem("Split Display");
 		fullScreenMenuItem     = new JMenuItem("Full Screen");
@@ -389,6 +420,7 @@ public class Sandbox extends JApplet
 		scrollBarsMenuItem    .addActionListener(listener);
 		frameRateMenuItem     .addActionListener(listener);
 		addWindowMenuItem     .addActionListener(listener);
+		minimapMenuItem       .addActionListener(listener);
 		addTabMenuItem        .addActionListener(listener);
 		splitDisplayMenuItem  .addActionListener(listener);
 		fullScreenMenuItem    .addActionListener(listener);
@@ -432,6 +464,7 @@ public class Sandbox extends JApplet
 		displayMenu.add(showGridMenuItem);
 		displayMenu.add(showShadowsMenuItem);
 		displayMenu.add(showCostMapMenuItem);
+		displayMenu.add(minimapMenuItem);
 //		displayMenu.add(scrollBarsMenuItem);
 //		displayMenu.add(frameRateMenuItem);
 //		displayMenu.add(scrollSpeedMenuItem);
@@ -737,6 +770,22 @@ public class Sandbox extends JApplet
 					}
 				});
 			}
+			else if (e.getSource() == minimapMenuItem)
+			{
+				JFrame frame2 = new JFrame("Minimap");
+				final Minimap minimap = new Minimap(panel);
+				frame2.add(minimap);
+				frame2.pack();
+				frame2.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
+				frame2.setVisible(true);
+				frame2.addWindowListener(new WindowAdapter()
+				{
+					public void windowClosed(WindowEvent e)
+					{
+						minimap.dispose();
+					}
+				});
+			}
 			else if (e.getSource() == addTabMenuItem)
 			{
 				Component centerComponent = frame.getContentPane().getComponent(1);
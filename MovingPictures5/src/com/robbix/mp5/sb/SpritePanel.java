@@ -187,7 +187,7 @@ public class SpritePanel extends JComponent
 		boolean centered = fpw == 0 && fph == 0;
 		int w = centered ? 0 : fpw * tileSize;
 		int h = centered ? 0 : fph * tileSize;
-		Image img = sprite.getImage(color, false);
+		Image img = sprite.getImage(color);
 		int x = (getWidth()  - w) / 2 + sprite.getXOffset();
 		int y = (getHeight() - h) / 2 + sprite.getYOffset();
 		g.drawImage(img, x, y, null);
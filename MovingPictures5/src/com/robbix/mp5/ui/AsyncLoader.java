@@ -2,9 +2,31 @@ package com.robbix.mp5.ui;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Loads sprite sets on a pool of worker threads, one per core.
+ *
+ * Each module is loaded in three steps: its info.xml is read to find its
+ * frames, the frames are decoded in parallel, and the set is built by
+ * whichever worker decodes the last frame. Work is taken highest priority
+ * first, then in the order it was queued, so a module that's needed right
+ * away can be moved ahead of the rest with prioritize().
+ *
+ * Workers exit when there's nothing left to load.
+ */
 public class AsyncLoader
 {
 	public interface Callback
@@ -13,72 +35,333 @@ public class AsyncLoader
 		public void loadFailed(File file, Exception exc);
 	}
 	
-	private static class Job
+	/**
+	 * Priority of modules loaded without one given.
+	 */
+	public static final int NORMAL_PRIORITY = 0;
+	
+	private static final AtomicInteger nextSerial = new AtomicInteger();
+	
+	/**
+	 * Gets a future that's already complete with the given set.
+	 */
+	public static Future<SpriteSet> completed(final SpriteSet set)
+	{
+		FutureTask<SpriteSet> future = new FutureTask<SpriteSet>(new Callable<SpriteSet>()
+		{
+			public SpriteSet call()
+			{
+				return set;
+			}
+		});
+		
+		future.run();
+		return future;
+	}
+	
+	private class Job implements Callable<SpriteSet>
 	{
 		public final File file;
 		public final Callback callback;
+		public final FutureTask<SpriteSet> future;
+		public volatile int priority;
 		
-		public Job(File file, Callback callback)
+		public SpriteSetXMLLoader xmlLoader;
+		public AtomicInteger framesLeft;
+		public volatile Exception error;
+		public SpriteSet set;
+		
+		public Job(File file, int priority, Callback callback)
 		{
 			this.file = file;
+			this.priority = priority;
 			this.callback = callback;
+			this.future = new FutureTask<SpriteSet>(this);
+		}
+		
+		/**
+		 * Run by the future once the job is done.
+		 */
+		public SpriteSet call() throws Exception
+		{
+			if (error != null)
+				throw error;
+			
+			return set;
 		}
 	}
 	
-	private static final AtomicInteger nextSerial = new AtomicInteger(); 
+	/**
+	 * A step of a job - reading the metadata if frame is negative,
+	 * otherwise decoding that frame.
+	 */
+	private class Task implements Runnable, Comparable<Task>
+	{
+		public final Job job;
+		public final int frame;
+		public final int priority;
+		public final long sequence;
+		
+		public Task(Job job, int frame, long sequence)
+		{
+			this.job = job;
+			this.frame = frame;
+			this.priority = job.priority;
+			this.sequence = sequence;
+		}
+		
+		public int compareTo(Task task)
+		{
+			if (priority != task.priority)
+				return priority > task.priority ? -1 : 1;
+			
+			return sequence < task.sequence ? -1 : sequence > task.sequence ? 1 : 0;
+		}
+		
+		public void run()
+		{
+			if (frame < 0)
+				plan(job);
+			else
+				decode(job, frame);
+		}
+	}
 	
-	private Thread thread;
-	private LinkedList<Job> jobs = new LinkedList<Job>();
+	private ThreadPoolExecutor workers;
+	private volatile boolean lazyDecoding = false;
+	private AtomicLong nextSequence = new AtomicLong();
+	private Map<File, Job> jobs = new HashMap<File, Job>();
+	
+	public AsyncLoader()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
 	
-	public void load(File file, Callback callback)
+	public AsyncLoader(int threads)
 	{
+		final int serial = nextSerial.getAndIncrement();
+		
+		workers = new ThreadPoolExecutor(
+			threads,
+			threads,
+			1, TimeUnit.SECONDS,
+			new PriorityBlockingQueue<Runnable>(),
+			new ThreadFactory()
+			{
+				private int count = 0;
+				
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r);
+					thread.setDaemon(true);
+					thread.setName("MP5-AsyncLoader-" + serial + "-" + (count++));
+					return thread;
+				}
+			}
+		);
+		
+		workers.allowCoreThreadTimeOut(true);
+	}
+	
+	public Future<SpriteSet> load(File file, Callback callback)
+	{
+		return load(file, NORMAL_PRIORITY, callback);
+	}
+	
+	/**
+	 * Queues the module for loading and returns a future that completes
+	 * after the callback has been notified. Until then, getFuture() will
+	 * return the same future. If the module is already
+	 * being loaded, the existing future is returned and the callback is
+	 * not used.
+	 */
+	public Future<SpriteSet> load(File file, int priority, Callback callback)
+	{
+		Job job;
+		
 		synchronized (jobs)
 		{
-			jobs.addLast(new Job(file, callback));
+			job = jobs.get(file);
 			
-			if (thread == null)
+			if (job != null)
 			{
-				thread = new Thread(new DoLoad());
-				thread.setDaemon(true);
-				thread.setName("MP5-AsyncLoader-" + nextSerial.getAndIncrement());
-				thread.start();
+				prioritize(job, priority);
+				return job.future;
 			}
+			
+			job = new Job(file, priority, callback);
+			jobs.put(file, job);
+		}
+		
+		workers.execute(new Task(job, -1, nextSequence.getAndIncrement()));
+		return job.future;
+	}
+	
+	/**
+	 * Raises the priority of the module being loaded from the given file,
+	 * moving its queued work ahead of any with a lower priority. Has no
+	 * effect if the module isn't being loaded or already has a priority
+	 * at least as high.
+	 */
+	public void prioritize(File file, int priority)
+	{
+		synchronized (jobs)
+		{
+			Job job = jobs.get(file);
+			
+			if (job != null)
+				prioritize(job, priority);
+		}
+	}
+	
+	public Future<SpriteSet> getFuture(File file)
+	{
+		synchronized (jobs)
+		{
+			Job job = jobs.get(file);
+			return job == null ? null : job.future;
 		}
 	}
 	
+	/**
+	 * Has unit sets loaded from now on decode each group's frames when
+	 * the group is first used, instead of up front.
+	 */
+	public void setLazyDecodingEnabled(boolean lazyDecoding)
+	{
+		this.lazyDecoding = lazyDecoding;
+	}
+	
+	public boolean isLazyDecodingEnabled()
+	{
+		return lazyDecoding;
+	}
+	
 	public boolean isBusy()
 	{
-		return ! jobs.isEmpty();
+		synchronized (jobs)
+		{
+			return ! jobs.isEmpty();
+		}
 	}
 	
-	private class DoLoad implements Runnable
+	private void prioritize(Job job, int priority)
 	{
-		public void run()
+		if (priority <= job.priority)
+			return;
+		
+		job.priority = priority;
+		
+		List<Task> requeued = new ArrayList<Task>();
+		
+		for (Runnable r : workers.getQueue())
+		{
+			Task task = (Task) r;
+			
+			if (task.job == job && workers.remove(task))
+				requeued.add(new Task(job, task.frame, task.sequence));
+		}
+		
+		for (Task task : requeued)
+			workers.execute(task);
+	}
+	
+	private void plan(Job job)
+	{
+		int frameCount;
+		
+		try
+		{
+			job.xmlLoader = new SpriteSetXMLLoader(job.file, lazyDecoding);
+			frameCount = job.xmlLoader.plan();
+		}
+		catch (Exception exc)
 		{
-			for(;;)
+			fail(job, exc);
+			return;
+		}
+		
+		if (frameCount == 0)
+		{
+			finish(job);
+			return;
+		}
+		
+		job.framesLeft = new AtomicInteger(frameCount);
+		
+		for (int i = 0; i < frameCount; ++i)
+			workers.execute(new Task(job, i, nextSequence.getAndIncrement()));
+	}
+	
+	private void decode(Job job, int frame)
+	{
+		if (job.error == null)
+		{
+			try
 			{
-				Job job = null;
-				
-				synchronized (jobs)
-				{
-					if (jobs.isEmpty())
-						break;
-					
-					job = jobs.removeFirst();
-				}
-				
-				try
-				{
-					SpriteSet set = new SpriteSetXMLLoader(job.file).load();
-					job.callback.loadComplete(set);
-				}
-				catch (IOException ioe)
-				{
-					job.callback.loadFailed(job.file, ioe);
-				}
+				job.xmlLoader.decodeFrame(frame);
+			}
+			catch (Exception exc)
+			{
+				job.error = exc;
+			}
+		}
+		
+		if (job.framesLeft.decrementAndGet() > 0)
+			return;
+		
+		if (job.error != null)
+			fail(job, job.error);
+		else
+			finish(job);
+	}
+	
+	private void finish(Job job)
+	{
+		try
+		{
+			job.set = job.xmlLoader.finish();
+		}
+		catch (IOException ioe)
+		{
+			fail(job, ioe);
+			return;
+		}
+		
+		job.xmlLoader = null;
+		
+		try
+		{
+			job.callback.loadComplete(job.set);
+		}
+		finally
+		{
+			synchronized (jobs)
+			{
+				jobs.remove(job.file);
+			}
+			
+			job.future.run();
+		}
+	}
+	
+	private void fail(Job job, Exception exc)
+	{
+		job.error = exc;
+		job.xmlLoader = null;
+		
+		try
+		{
+			job.callback.loadFailed(job.file, exc);
+		}
+		finally
+		{
+			synchronized (jobs)
+			{
+				jobs.remove(job.file);
 			}
 			
-			thread = null;
+			job.future.run();
 		}
 	}
 }
@@ -0,0 +1,163 @@
+package com.robbix.mp5.ui;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import com.robbix.utils.GridMetrics;
+import com.robbix.utils.RImage;
+import com.robbix.utils.Region;
+
+/**
+ * Renders per-tile passes over a region of the map in horizontal bands,
+ * each on its own thread, then composites the bands into one image.
+ *
+ * Passes read the map while they run, so whatever changes it has to wait
+ * until they are done - which it does as long as the map is only changed
+ * on the thread that calls render().
+ */
+public class BandRenderer
+{
+	/**
+	 * Fewest rows of tiles worth handing to another thread.
+	 */
+	private static final int MIN_BAND_ROWS = 4;
+	
+	/**
+	 * Draws one band. Called on a worker thread with a DisplayGraphics of
+	 * its own, so implementations must not change anything shared.
+	 */
+	public static interface Pass
+	{
+		public void render(DisplayGraphics g, Region band);
+	}
+	
+	private static ExecutorService workers;
+	private static int threads = Runtime.getRuntime().availableProcessors();
+	
+	private static synchronized ExecutorService getWorkers()
+	{
+		if (workers == null)
+		{
+			workers = Executors.newFixedThreadPool(threads, new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread thread = new Thread(r, "BandRenderer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		
+		return workers;
+	}
+	
+	/**
+	 * Renders the pass over the region at the given tile size and scale,
+	 * into an image with the region's top-left tile at (0, 0).
+	 */
+	public static BufferedImage render(
+		Region region,
+		int tileSize,
+		int scale,
+		boolean hasAlpha,
+		Pass pass)
+	{
+		RImage image = new RImage(region.w * tileSize, region.h * tileSize, hasAlpha);
+		int bandCount = Math.min(threads, region.h / MIN_BAND_ROWS);
+		
+		if (bandCount <= 1)
+		{
+			renderBand(image, region, tileSize, scale, pass);
+			return image;
+		}
+		
+		List<Future<BufferedImage>> bands = new ArrayList<Future<BufferedImage>>(bandCount);
+		List<Region> bandRegions = new ArrayList<Region>(bandCount);
+		
+		for (int b = 0; b < bandCount; ++b)
+		{
+			int y0 = region.y + region.h *  b      / bandCount;
+			int y1 = region.y + region.h * (b + 1) / bandCount;
+			final Region band = new Region(region.x, y0, region.w, y1 - y0);
+			final int fTileSize = tileSize;
+			final int fScale = scale;
+			final Pass fPass = pass;
+			final boolean fHasAlpha = hasAlpha;
+			
+			bandRegions.add(band);
+			bands.add(getWorkers().submit(new Callable<BufferedImage>()
+			{
+				public BufferedImage call()
+				{
+					RImage bandImage = new RImage(band.w * fTileSize, band.h * fTileSize, fHasAlpha);
+					renderBand(bandImage, band, fTileSize, fScale, fPass);
+					return bandImage;
+				}
+			}));
+		}
+		
+		Graphics2D g = image.createGraphics();
+		
+		try
+		{
+			for (int b = 0; b < bandCount; ++b)
+			{
+				int y = (bandRegions.get(b).y - region.y) * tileSize;
+				g.drawImage(bands.get(b).get(), 0, y, null);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			if (cause instanceof Error)            throw (Error) cause;
+			
+			throw new RuntimeException(cause);
+		}
+		finally
+		{
+			g.dispose();
+		}
+		
+		return image;
+	}
+	
+	private static void renderBand(
+		BufferedImage image,
+		Region band,
+		int tileSize,
+		int scale,
+		Pass pass)
+	{
+		DisplayGraphics g = new DisplayGraphics(image.createGraphics());
+		g.setGridMetrics(new GridMetrics(
+			-band.x * tileSize,
+			-band.y * tileSize,
+			tileSize,
+			scale
+		));
+		
+		try
+		{
+			pass.render(g, band);
+		}
+		finally
+		{
+			g.dispose();
+		}
+	}
+}
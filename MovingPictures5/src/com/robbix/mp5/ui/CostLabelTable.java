@@ -0,0 +1,67 @@
+package com.robbix.mp5.ui;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cost map labels rendered once and reused. A map has only a handful of
+ * distinct costs, so drawing the cost map at normal zoom is a blit per
+ * tile instead of formatting and laying out a string per tile.
+ */
+public class CostLabelTable
+{
+	private final Font font;
+	private final Map<Long, BufferedImage> labels = new HashMap<Long, BufferedImage>();
+	
+	public CostLabelTable(Font font)
+	{
+		this.font = font;
+	}
+	
+	/**
+	 * Gets the label for the given cost - "Inf" if infinite, otherwise
+	 * with two decimal places or as a whole number - drawn in black or
+	 * white on a clear background.
+	 */
+	public synchronized BufferedImage get(double cost, boolean infinite, boolean decimals, boolean white)
+	{
+		long value = infinite ? 0 : decimals ? Math.round(cost * 100) : (long) cost;
+		Long key = (value << 3) | (infinite ? 4 : 0) | (decimals ? 2 : 0) | (white ? 1 : 0);
+		BufferedImage label = labels.get(key);
+		
+		if (label == null)
+		{
+			String text = infinite ? "Inf"
+				: decimals ? String.format("%.2f", cost)
+				: String.valueOf((long) cost);
+			
+			label = render(text, white ? Color.WHITE : Color.BLACK);
+			labels.put(key, label);
+		}
+		
+		return label;
+	}
+	
+	private BufferedImage render(String text, Color color)
+	{
+		FontRenderContext frc = new FontRenderContext(null, false, false);
+		Rectangle2D bounds = font.getStringBounds(text, frc);
+		int w = Math.max(1, (int) Math.ceil(bounds.getWidth()));
+		int h = Math.max(1, (int) Math.ceil(bounds.getHeight()));
+		
+		BufferedImage label = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = label.createGraphics();
+		g.setFont(font);
+		g.setColor(color);
+		g.drawString(text, (float) -bounds.getX(), (float) -bounds.getY());
+		g.dispose();
+		
+		return label;
+	}
+}
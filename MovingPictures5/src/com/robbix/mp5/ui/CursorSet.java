@@ -11,6 +11,7 @@ import java.util.List;
 import java.util.Set;
 
 import com.robbix.utils.AnimatedCursor;
+import com.robbix.utils.AssetArchive;
 import com.robbix.utils.RImage;
 import com.robbix.utils.RNode;
 
@@ -20,11 +21,11 @@ public class CursorSet
 	{
 		CursorSet cursorSet = new CursorSet();
 		
-		for (File dir : rootDir.listFiles())
+		for (File dir : AssetArchive.listFiles(rootDir))
 		{
 			File xmlFile = new File(dir, dir.getName() + ".xml");
 			
-			if (xmlFile.exists())
+			if (AssetArchive.exists(xmlFile))
 				cursorSet.loadCursor(xmlFile);
 		}
 		
@@ -35,7 +36,7 @@ public class CursorSet
 	{
 		File parent;
 		
-		if (xmlFile.isDirectory())
+		if (AssetArchive.isDirectory(xmlFile))
 		{
 			parent = xmlFile;
 			xmlFile = new File(parent, parent.getName() + ".xml");
@@ -0,0 +1,109 @@
+package com.robbix.mp5.ui;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A set of pixel rectangles that need repainting. Overlapping rectangles
+ * are merged as they are added, and if too many pile up they collapse
+ * into their bounding box.
+ */
+public class DirtyRegion
+{
+	private static final int MAX_RECTS = 24;
+	
+	private List<Rectangle> rects = new ArrayList<Rectangle>();
+	
+	public synchronized void add(Rectangle rect)
+	{
+		if (rect.isEmpty())
+			return;
+		
+		merge(new Rectangle(rect));
+	}
+	
+	/**
+	 * Adds the given rectangle without making a copy of it if it's
+	 * already covered.
+	 */
+	public synchronized void add(int x, int y, int width, int height)
+	{
+		if (width <= 0 || height <= 0)
+			return;
+		
+		for (int i = 0; i < rects.size(); ++i)
+			if (rects.get(i).contains(x, y, width, height))
+				return;
+		
+		merge(new Rectangle(x, y, width, height));
+	}
+	
+	/**
+	 * Merges a rectangle of this region's own into it.
+	 */
+	private void merge(Rectangle rect)
+	{
+		for (int i = 0; i < rects.size(); )
+		{
+			Rectangle other = rects.get(i);
+			
+			if (other.intersects(rect))
+			{
+				rect.add(other);
+				rects.remove(i);
+				i = 0;
+			}
+			else
+			{
+				++i;
+			}
+		}
+		
+		rects.add(rect);
+		
+		if (rects.size() > MAX_RECTS)
+		{
+			Rectangle bounds = getBounds();
+			rects.clear();
+			rects.add(bounds);
+		}
+	}
+	
+	public synchronized boolean isEmpty()
+	{
+		return rects.isEmpty();
+	}
+	
+	/**
+	 * Gets the bounding box of all dirty rectangles, empty if there
+	 * are none.
+	 */
+	public synchronized Rectangle getBounds()
+	{
+		Rectangle bounds = null;
+		
+		for (Rectangle rect : rects)
+		{
+			if (bounds == null) bounds = new Rectangle(rect);
+						   else bounds.add(rect);
+		}
+		
+		return bounds == null ? new Rectangle() : bounds;
+	}
+	
+	/**
+	 * Returns the dirty rectangles and clears this region.
+	 */
+	public synchronized List<Rectangle> take()
+	{
+		List<Rectangle> taken = rects;
+		rects = new ArrayList<Rectangle>();
+		return taken;
+	}
+	
+	public synchronized void clear()
+	{
+		rects.clear();
+	}
+}
@@ -33,6 +33,7 @@ import java.awt.image.renderable.RenderableImage;
 import java.text.AttributedCharacterIterator;
 import java.util.Map;
 
+import com.robbix.mp5.player.Player;
 import com.robbix.utils.BorderRegion;
 import com.robbix.utils.Direction;
 import com.robbix.utils.GridMetrics;
@@ -40,7 +41,6 @@ import com.robbix.utils.LShapedRegion;
 import com.robbix.utils.Neighbors;
 import com.robbix.utils.Offset;
 import com.robbix.utils.Position;
-import com.robbix.utils.RColor;
 import com.robbix.utils.Region;
 
 /**
@@ -312,32 +312,64 @@ public class DisplayGraphics extends Graphics2D
 		drawImage(img, p, offset.dx, offset.dy);
 	}
 	
+	/*
+	 * Sprites are drawn from copies pre-scaled to the current zoom level,
+	 * without scaling here.
+	 */
+	
 	public void draw(Sprite sprite, Position pos)
 	{
-		int xOff = sprite.getXOffset(gm.scale);
-		int yOff = sprite.getYOffset(gm.scale);
-		drawImage(sprite.getImage(), pos, xOff, yOff);
+		draw(sprite, pos, (Player) null);
 	}
 	
-	public void draw(Sprite sprite, Position pos, Color color)
+	public void draw(Sprite sprite, Position pos, Player player)
 	{
-		int xOff = sprite.getXOffset(gm.scale);
-		int yOff = sprite.getYOffset(gm.scale);
-		drawImage(sprite.getImage(RColor.fromColor(color)), pos, xOff, yOff);
+		int x = pos.x * gm.tileSize + gm.xOffset + sprite.getXOffset(gm.scale);
+		int y = pos.y * gm.tileSize + gm.yOffset + sprite.getYOffset(gm.scale);
+		g.drawImage(sprite.getImage(player, gm.scale), x, y, null);
 	}
 	
 	public void draw(Sprite sprite, Point2D p)
 	{
-		int xOff = sprite.getXOffset(gm.scale);
-		int yOff = sprite.getYOffset(gm.scale);
-		drawImage(sprite.getImage(), p, xOff, yOff);
+		draw(sprite, p, (Player) null);
+	}
+	
+	public void draw(Sprite sprite, Point2D p, Player player)
+	{
+		draw(sprite, p.getX(), p.getY(), player);
 	}
 	
-	public void draw(Sprite sprite, Point2D p, Color color)
+	public void draw(Sprite sprite, double absX, double absY)
 	{
-		int xOff = sprite.getXOffset(gm.scale);
-		int yOff = sprite.getYOffset(gm.scale);
-		drawImage(sprite.getImage(RColor.fromColor(color)), p, xOff, yOff);
+		draw(sprite, absX, absY, (Player) null);
+	}
+	
+	public void draw(Sprite sprite, double absX, double absY, Player player)
+	{
+		int x = (int) (absX * gm.tileSize) + gm.xOffset + sprite.getXOffset(gm.scale);
+		int y = (int) (absY * gm.tileSize) + gm.yOffset + sprite.getYOffset(gm.scale);
+		g.drawImage(sprite.getImage(player, gm.scale), x, y, null);
+	}
+	
+	/**
+	 * Draws the sprite's shadow with its top-left corner at the given
+	 * point, not counting the sprite's offset.
+	 */
+	public void drawShadow(Sprite sprite, Point2D p)
+	{
+		int x = (int) (p.getX() * gm.tileSize) + gm.xOffset;
+		int y = (int) (p.getY() * gm.tileSize) + gm.yOffset;
+		g.drawImage(sprite.getShadow(gm.scale), x, y, null);
+	}
+	
+	/**
+	 * Draws the image centered on the given position.
+	 */
+	public void drawImageCentered(Image img, Position pos)
+	{
+		int x = pos.x * gm.tileSize + (gm.tileSize / 2) + gm.xOffset;
+		int y = pos.y * gm.tileSize + (gm.tileSize / 2) + gm.yOffset;
+		g.drawImage(img, x - img.getWidth(null) / 2, y - img.getHeight(null) / 2, null);
 	}
 	
 	public void drawString(String str, Position pos)
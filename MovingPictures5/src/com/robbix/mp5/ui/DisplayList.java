@@ -0,0 +1,292 @@
+package com.robbix.mp5.ui;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.robbix.mp5.ui.obj.DisplayObject;
+import com.robbix.mp5.unit.Unit;
+import com.robbix.utils.SpatialIndex;
+
+/**
+ * The display objects on one layer, along with their bounds and depth
+ * keys as of the last update. Objects are kept in a SpatialIndex so the
+ * ones in view can be found without visiting the rest.
+ * 
+ * Objects are only looked at again when invalidated, by unit or by area,
+ * as the map reports changes. Transient objects, which move or expire on
+ * their own, are looked at every update. Painting order is worked out for
+ * just the objects in view.
+ */
+public class DisplayList
+{
+	/**
+	 * Key resolution, in steps per tile.
+	 */
+	private static final int KEY_STEPS = 64;
+	
+	private static final long X_BIAS = 1L << 31;
+	
+	private final boolean depthSorted;
+	
+	private SpatialIndex<DisplayObject> index;
+	
+	/*
+	 * Indexed by id in the SpatialIndex.
+	 */
+	private Rectangle2D[] bounds = new Rectangle2D[16];
+	private long[] keys = new long[16];
+	private long[] seqs = new long[16];
+	private boolean[] dirty = new boolean[16];
+	
+	private long nextSeq;
+	
+	private int[] dirtyIds = new int[16];
+	private int dirtyCount;
+	
+	private int[] transientIds = new int[16];
+	private int transientCount;
+	
+	private Map<Unit, List<Integer>> unitIds = new IdentityHashMap<Unit, List<Integer>>();
+	
+	public DisplayList(int width, int height, boolean depthSorted)
+	{
+		this.depthSorted = depthSorted;
+		this.index = new SpatialIndex<DisplayObject>(width, height);
+	}
+	
+	public boolean isDepthSorted()
+	{
+		return depthSorted;
+	}
+	
+	public int size()
+	{
+		return index.size();
+	}
+	
+	public DisplayObject get(int id)
+	{
+		return index.get(id);
+	}
+	
+	/**
+	 * Gets the bounds of the object with the given id as of the last
+	 * call to update().
+	 */
+	public Rectangle2D getBounds(int id)
+	{
+		return bounds[id];
+	}
+	
+	/**
+	 * Adds an object, painted after others at the same depth.
+	 */
+	public void add(DisplayObject dObj)
+	{
+		Rectangle2D rect = dObj.getBounds();
+		int id = index.add(dObj, rect);
+		
+		if (id >= bounds.length)
+		{
+			int capacity = Math.max(id + 1, bounds.length * 2);
+			bounds = Arrays.copyOf(bounds, capacity);
+			keys   = Arrays.copyOf(keys,   capacity);
+			seqs   = Arrays.copyOf(seqs,   capacity);
+			dirty  = Arrays.copyOf(dirty,  capacity);
+		}
+		
+		bounds[id] = rect;
+		keys[id] = depthSorted ? getDepthKey(rect) : 0;
+		seqs[id] = nextSeq++;
+		dirty[id] = false;
+		
+		if (dObj.isTransient())
+		{
+			if (transientCount == transientIds.length)
+				transientIds = Arrays.copyOf(transientIds, transientCount * 2);
+			
+			transientIds[transientCount++] = id;
+		}
+		
+		Unit unit = dObj.getUnit();
+		
+		if (unit != null)
+		{
+			List<Integer> ids = unitIds.get(unit);
+			
+			if (ids == null)
+			{
+				ids = new ArrayList<Integer>(2);
+				unitIds.put(unit, ids);
+			}
+			
+			ids.add(id);
+		}
+	}
+	
+	/**
+	 * Marks the objects belonging to the given unit to be looked at on
+	 * the next update.
+	 */
+	public void invalidate(Unit unit)
+	{
+		List<Integer> ids = unitIds.get(unit);
+		
+		if (ids == null)
+			return;
+		
+		for (int i = 0; i < ids.size(); ++i)
+			invalidate(ids.get(i));
+	}
+	
+	/**
+	 * Marks the objects that may overlap the given rectangle to be looked
+	 * at on the next update.
+	 */
+	public void invalidate(Rectangle2D absRect)
+	{
+		for (int id : index.query(absRect))
+			invalidate(id);
+	}
+	
+	/**
+	 * Drops the invalidated and transient objects that have died, and
+	 * refreshes the bounds and depth keys of the rest, moving them in the
+	 * index only if their bounds changed.
+	 */
+	public void update()
+	{
+		for (int i = 0; i < transientCount; ++i)
+			invalidate(transientIds[i]);
+		
+		for (int i = 0; i < dirtyCount; ++i)
+		{
+			int id = dirtyIds[i];
+			dirty[id] = false;
+			
+			DisplayObject dObj = index.get(id);
+			
+			if (!dObj.isAlive())
+			{
+				remove(id, dObj);
+				continue;
+			}
+			
+			Rectangle2D rect = dObj.getBounds();
+			
+			if (rect.equals(bounds[id]))
+				continue;
+			
+			index.move(id, rect);
+			bounds[id] = rect;
+			
+			if (depthSorted)
+				keys[id] = getDepthKey(rect);
+		}
+		
+		dirtyCount = 0;
+	}
+	
+	/**
+	 * Gets the ids, in painting order, of objects that may overlap the
+	 * given rectangle.
+	 */
+	public int[] getVisible(Rectangle2D absRect)
+	{
+		int[] visible = index.query(absRect);
+		sort(visible);
+		return visible;
+	}
+	
+	public void clear()
+	{
+		index.clear();
+		Arrays.fill(bounds, null);
+		Arrays.fill(dirty, false);
+		dirtyCount = 0;
+		transientCount = 0;
+		unitIds.clear();
+	}
+	
+	private void invalidate(int id)
+	{
+		if (dirty[id])
+			return;
+		
+		if (dirtyCount == dirtyIds.length)
+			dirtyIds = Arrays.copyOf(dirtyIds, dirtyCount * 2);
+		
+		dirty[id] = true;
+		dirtyIds[dirtyCount++] = id;
+	}
+	
+	private void remove(int id, DisplayObject dObj)
+	{
+		index.remove(id);
+		bounds[id] = null;
+		
+		if (dObj.isTransient())
+		{
+			for (int i = 0; i < transientCount; ++i)
+			{
+				if (transientIds[i] == id)
+				{
+					transientIds[i] = transientIds[--transientCount];
+					break;
+				}
+			}
+		}
+		
+		Unit unit = dObj.getUnit();
+		
+		if (unit != null)
+		{
+			List<Integer> ids = unitIds.get(unit);
+			ids.remove(Integer.valueOf(id));
+			
+			if (ids.isEmpty())
+				unitIds.remove(unit);
+		}
+	}
+	
+	/**
+	 * Sorts ids by depth key, then by when they were added. Insertion
+	 * sort, as only the few objects in view are sorted.
+	 */
+	private void sort(int[] ids)
+	{
+		for (int i = 1; i < ids.length; ++i)
+		{
+			int id = ids[i];
+			int j = i - 1;
+			
+			while (j >= 0 && before(id, ids[j]))
+			{
+				ids[j + 1] = ids[j];
+				j--;
+			}
+			
+			ids[j + 1] = id;
+		}
+	}
+	
+	private boolean before(int a, int b)
+	{
+		return keys[a] != keys[b] ? keys[a] < keys[b] : seqs[a] < seqs[b];
+	}
+	
+	/**
+	 * Objects whose bottom edge is lower are painted later, on top. Ties
+	 * go to the one further right.
+	 */
+	private static long getDepthKey(Rectangle2D rect)
+	{
+		long maxY = (long) Math.floor(rect.getMaxY() * KEY_STEPS);
+		long minX = (long) Math.floor(rect.getX()    * KEY_STEPS) + X_BIAS;
+		return (maxY << 32) | (minX & 0xffffffffL);
+	}
+}
@@ -10,24 +10,36 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
 import com.robbix.mp5.Game;
 import com.robbix.mp5.map.LayeredMap;
+import com.robbix.mp5.map.MapListener;
 import com.robbix.mp5.map.Tile;
 import com.robbix.mp5.map.TileSet;
 import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.ani.AmbientAnimation;
+import com.robbix.mp5.ui.ani.ParticleSystem;
 import com.robbix.mp5.ui.obj.DisplayLayer;
 import com.robbix.mp5.ui.obj.DisplayObject;
 import com.robbix.mp5.ui.overlay.InputOverlay;
@@ -38,8 +50,9 @@ import com.robbix.utils.CostMap;
 import com.robbix.utils.GridMetrics;
 import com.robbix.utils.Position;
 import com.robbix.utils.RColor;
-import com.robbix.utils.RImage;
 import com.robbix.utils.Region;
+import com.robbix.utils.SpatialIndex;
+import com.robbix.utils.TripleBuffer;
 
 @SuppressWarnings("serial")
 public class DisplayPanel extends JComponent
@@ -56,11 +69,30 @@ public class DisplayPanel extends JComponent
 	private double shadowXOffset = -0.125;
 	private double shadowYOffset = -0.125;
 	
-	private BufferedImage cachedBackground = null;
-	private Object cacheLock = new Object();
-	private long lastRefreshTime = 0;
+	private TerrainCache terrainCache = new TerrainCache();
+	
+	private DirtyRegion dirtyRegion = new DirtyRegion();
+	
+	/**
+	 * Tiles around the view included in render snapshots, so scrolling
+	 * a little between frames doesn't uncover anything missing.
+	 */
+	private static final int SNAPSHOT_MARGIN = 2;
+	
+	private TripleBuffer<RenderSnapshot> snapshots = new TripleBuffer<RenderSnapshot>(
+		new RenderSnapshot(),
+		new RenderSnapshot(),
+		new RenderSnapshot()
+	);
+	
+	private volatile boolean snapshotStale = true;
+	private boolean snapshotRequested = false;
+	private Map<Object, Painted> painted = new IdentityHashMap<Object, Painted>();
+	private int damageTick = 0;
+	private volatile boolean inputDamaged = true;
 	
 	private static Font costMapFont = Font.decode("SansSerif-9");
+	private static CostLabelTable costLabels = new CostLabelTable(costMapFont);
 	private static Color BACKGROUND_BLUE = new Color(127, 127, 255);
 	private Color letterBoxColor = Color.BLACK;
 	
@@ -74,10 +106,14 @@ public class DisplayPanel extends JComponent
 	private InputOverlay.ListenerAdapter adapter;
 	
 	private List<AmbientAnimation> animations = new LinkedList<AmbientAnimation>();
+	private SpatialIndex<AmbientAnimation> animationIndex;
+	private Map<AmbientAnimation, Integer> animationIds = new IdentityHashMap<AmbientAnimation, Integer>();
+	private ParticleSystem particles;
 	
-	private EnumMap<DisplayLayer, List<DisplayObject>> displayLayers;
+	private EnumMap<DisplayLayer, DisplayList> displayLayers;
 	
 	private DisplayPanelView view;
+	private List<ChangeListener> viewListeners = new ArrayList<ChangeListener>();
 	
 	private boolean showGrid = false;
 	private boolean showTubeConnectivity = false;
@@ -111,10 +147,40 @@ public class DisplayPanel extends JComponent
 		this.minScale = getMinScale(gm.tileSize);
 		this.cursors = cursors;
 		this.overlays = new LinkedList<InputOverlay>();
-		this.displayLayers = new EnumMap<DisplayLayer, List<DisplayObject>>(DisplayLayer.class);
+		this.displayLayers = new EnumMap<DisplayLayer, DisplayList>(DisplayLayer.class);
 		
 		for (DisplayLayer layer : DisplayLayer.values())
-			displayLayers.put(layer, new LinkedList<DisplayObject>());
+			displayLayers.put(layer, new DisplayList(map.getWidth(), map.getHeight(), layer.depthSorted));
+		
+		map.addMapListener(new MapListener()
+		{
+			public void cellsChanged(Region region)
+			{
+				invalidate(region.getAbsRect());
+			}
+			
+			public void unitAdded(Unit unit)
+			{
+			}
+			
+			public void unitRemoved(Unit unit, Position pos)
+			{
+				invalidate(unit);
+			}
+			
+			public void unitMoved(Unit unit, Position from, Position to)
+			{
+				invalidate(unit);
+			}
+			
+			public void unitShifted(Unit unit)
+			{
+				invalidate(unit);
+			}
+		});
+		
+		this.animationIndex = new SpatialIndex<AmbientAnimation>(map.getWidth(), map.getHeight());
+		this.particles = new ParticleSystem(sprites);
 		
 		setBackground(BACKGROUND_BLUE);
 		setFocusable(true);
@@ -129,6 +195,25 @@ public class DisplayPanel extends JComponent
 		addMouseListener(adapter);
 		addMouseMotionListener(adapter);
 		addMouseWheelListener(adapter);
+		
+		MouseAdapter inputDamageListener = new MouseAdapter()
+		{
+			public void mouseMoved     (MouseEvent e)      { inputDamaged = true; }
+			public void mouseDragged   (MouseEvent e)      { inputDamaged = true; }
+			public void mousePressed   (MouseEvent e)      { inputDamaged = true; }
+			public void mouseReleased  (MouseEvent e)      { inputDamaged = true; }
+			public void mouseExited    (MouseEvent e)      { inputDamaged = true; }
+			public void mouseWheelMoved(MouseWheelEvent e) { inputDamaged = true; }
+		};
+		
+		addMouseListener(inputDamageListener);
+		addMouseMotionListener(inputDamageListener);
+		addMouseWheelListener(inputDamageListener);
+		addKeyListener(new KeyAdapter()
+		{
+			public void keyPressed (KeyEvent e) { inputDamaged = true; }
+			public void keyReleased(KeyEvent e) { inputDamaged = true; }
+		});
 	}
 	
 	public DisplayPanel(DisplayPanel that)
@@ -258,7 +343,7 @@ public class DisplayPanel extends JComponent
 	public void setShowCostMap(boolean showCostMap)
 	{
 		this.showTerrainCostMap = showCostMap;
-		refresh();
+		repaint();
 	}
 	
 	public boolean isShowingCostMap()
@@ -266,24 +351,35 @@ public class DisplayPanel extends JComponent
 		return showTerrainCostMap;
 	}
 	
+	public TerrainCache getTerrainCache()
+	{
+		return terrainCache;
+	}
+	
+	/**
+	 * Drops all cached terrain and repaints.
+	 */
 	public void refresh()
 	{
-		synchronized (cacheLock)
-		{
-			cachedBackground = null;
-		}
-		
+		terrainCache.clear();
 		repaint();
 	}
 	
 	public void refresh(Position pos)
 	{
-		refresh();
+		refresh(new Region(pos));
 	}
 	
+	/**
+	 * Invalidates the terrain chunks under the given region, and repaints
+	 * just the part of the panel it covers if it is in view.
+	 */
 	public void refresh(Region region)
 	{
-		refresh();
+		terrainCache.invalidate(region);
+		
+		if (region.intersects(getDisplayRegion()))
+			repaint(gm.getRectangle(region));
 	}
 	
 	public void fireCommandButton(Command command)
@@ -324,6 +420,8 @@ public class DisplayPanel extends JComponent
 		overlays.clear();
 		adapter.setOverlay(null);
 		setAnimatedCursor(null);
+		inputDamaged = true;
+		repaint();
 	}
 	
 	public InputOverlay getCurrentOverlay()
@@ -350,6 +448,9 @@ public class DisplayPanel extends JComponent
 		{
 			adapter.setOverlay(null);
 		}
+		
+		inputDamaged = true;
+		repaint();
 	}
 	
 	public void pushOverlay(InputOverlay overlay)
@@ -361,6 +462,283 @@ public class DisplayPanel extends JComponent
 		overlay.setDisplay(this);
 		overlay.init();
 		adapter.setOverlay(overlay);
+		inputDamaged = true;
+		repaint();
+	}
+	
+	/**
+	 * What was last painted for a display object or animation.
+	 */
+	private static class Painted
+	{
+		public Rectangle2D bounds;
+		public Object appearance;
+		public int tick;
+		
+		public Painted(Rectangle2D bounds, Object appearance, int tick)
+		{
+			this.bounds = bounds;
+			this.appearance = appearance;
+			this.tick = tick;
+		}
+	}
+	
+	/**
+	 * The box the current overlay draws around a selected unit.
+	 */
+	private static class SelectionBox
+	{
+		public final Unit unit;
+		
+		public SelectionBox(Unit unit)
+		{
+			this.unit = unit;
+		}
+		
+		public boolean equals(Object obj)
+		{
+			return obj instanceof SelectionBox && ((SelectionBox) obj).unit == unit;
+		}
+		
+		public int hashCode()
+		{
+			return System.identityHashCode(unit);
+		}
+	}
+	
+	/**
+	 * Publishes a render snapshot of what is in and around the view, and
+	 * repaints only what changed since the last call: display objects that
+	 * appeared, disappeared, moved or changed appearance, the before and
+	 * after bounds of every animation, the spot of every particle playing,
+	 * and the boxes the current overlay draws around selected units as
+	 * they move, take damage or flash. Called by the Engine once per frame.
+	 * 
+	 * Input since the last frame may have changed what the current overlay
+	 * draws, so it causes a full repaint, as does showing tube connectivity.
+	 */
+	public void repaintDamage()
+	{
+		damageTick++;
+		Rectangle view = getDisplayRect();
+		
+		synchronized (snapshots)
+		{
+			RenderSnapshot snapshot = fillSnapshot(view);
+			
+			for (int i = 0; i < snapshot.size(); ++i)
+			{
+				DisplayObject dObj = snapshot.get(i);
+				track(dObj, snapshot.getBounds(i), dObj.getAppearance(), view);
+			}
+			
+			for (int i = 0; i < snapshot.getAnimationCount(); ++i)
+				track(snapshot.getAnimation(i), snapshot.getAnimationBounds(i), null, view);
+			
+			double r = ParticleSystem.RADIUS;
+			
+			synchronized (particles)
+			{
+				for (int i = 0; i < particles.getDamageCount(); ++i)
+				{
+					damage(
+						particles.getDamageX(i) - r,
+						particles.getDamageY(i) - r,
+						particles.getDamageX(i) + r,
+						particles.getDamageY(i) + r,
+						view
+					);
+				}
+			}
+			
+			snapshots.publish();
+			snapshotStale = false;
+		}
+		
+		// Read through the adapter, as overlays are pushed on the EDT
+		InputOverlay overlay = adapter.getOverlay();
+		
+		if (overlay != null)
+		{
+			for (Unit unit : overlay.getSelectedUnits().toArray(new Unit[0]))
+			{
+				if (unit.isDead() || unit.isFloating() || unit.getPosition() == null)
+					continue;
+				
+				track(
+					new SelectionBox(unit),
+					InputOverlay.getSelectedUnitBoxBounds(unit, gm.tileSize),
+					InputOverlay.getSelectedUnitBoxState(unit),
+					view
+				);
+			}
+		}
+		
+		Iterator<Painted> paintedItr = painted.values().iterator();
+		
+		while (paintedItr.hasNext())
+		{
+			Painted gone = paintedItr.next();
+			
+			if (gone.tick != damageTick)
+			{
+				damage(gone.bounds, view);
+				paintedItr.remove();
+			}
+		}
+		
+		if (inputDamaged || showTubeConnectivity)
+		{
+			inputDamaged = false;
+			dirtyRegion.clear();
+			repaint();
+		}
+	}
+	
+	private void track(Object obj, Rectangle2D bounds, Object appearance, Rectangle view)
+	{
+		Painted last = painted.get(obj);
+		
+		if (last == null)
+		{
+			painted.put(obj, new Painted(bounds, appearance, damageTick));
+			damage(bounds, view);
+			return;
+		}
+		
+		if (appearance == null
+		 || !appearance.equals(last.appearance)
+		 || !bounds.equals(last.bounds))
+		{
+			damage(last.bounds, view);
+			damage(bounds, view);
+			last.bounds = bounds;
+			last.appearance = appearance;
+		}
+		
+		last.tick = damageTick;
+	}
+	
+	/**
+	 * Brings the display lists up to date and fills the back snapshot
+	 * with what is in and around the view.
+	 * Must be called holding the lock on snapshots.
+	 */
+	private RenderSnapshot fillSnapshot(Rectangle view)
+	{
+		Rectangle2D area = gm.getRegion(view).getAbsRect();
+		area.setRect(
+			area.getX() - SNAPSHOT_MARGIN,
+			area.getY() - SNAPSHOT_MARGIN,
+			area.getWidth()  + SNAPSHOT_MARGIN * 2,
+			area.getHeight() + SNAPSHOT_MARGIN * 2
+		);
+		
+		RenderSnapshot snapshot = snapshots.getBack();
+		snapshot.reset(area, damageTick);
+		
+		synchronized (displayLayers)
+		{
+			for (DisplayLayer layer : DisplayLayer.values())
+			{
+				DisplayList list = displayLayers.get(layer);
+				list.update();
+				
+				for (int id : list.getVisible(area))
+				{
+					Rectangle2D bounds = list.getBounds(id);
+					
+					if (area.intersects(bounds))
+						snapshot.add(list.get(id), bounds);
+				}
+			}
+		}
+		
+		synchronized (animations)
+		{
+			for (int id : animationIndex.query(area))
+			{
+				AmbientAnimation animation = animationIndex.get(id);
+				Rectangle2D bounds = animation.getBounds();
+				
+				if (area.intersects(bounds))
+					snapshot.addAnimation(animation, bounds);
+			}
+		}
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Gets the latest render snapshot. If it doesn't cover the view, or
+	 * objects were added since it was taken - when the engine is paused,
+	 * say - a new one is taken once this paint is over, and painted in
+	 * turn.
+	 */
+	private RenderSnapshot getSnapshot()
+	{
+		RenderSnapshot snapshot = snapshots.getFront();
+		
+		if (snapshotStale || !snapshot.covers(gm.getRegion(getDisplayRect()).getAbsRect()))
+			requestSnapshot();
+		
+		return snapshot;
+	}
+	
+	/**
+	 * Takes and publishes a new snapshot later on the EDT, outside of
+	 * painting, then repaints. Requests made before then are merged.
+	 */
+	private void requestSnapshot()
+	{
+		if (snapshotRequested)
+			return;
+		
+		snapshotRequested = true;
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			public void run()
+			{
+				snapshotRequested = false;
+				
+				synchronized (snapshots)
+				{
+					fillSnapshot(getDisplayRect());
+					snapshots.publish();
+					snapshotStale = false;
+				}
+				
+				repaint();
+			}
+		});
+	}
+	
+	/**
+	 * Marks the pixels covered by the given bounds, in grid units, as dirty
+	 * if they are in view.
+	 */
+	private void damage(Rectangle2D bounds, Rectangle view)
+	{
+		damage(bounds.getMinX(), bounds.getMinY(), bounds.getMaxX(), bounds.getMaxY(), view);
+	}
+	
+	/**
+	 * Marks the pixels between the given corners, in grid units, as dirty
+	 * if they are in view. Doesn't allocate unless the spot is outside
+	 * everything already dirty.
+	 */
+	private void damage(double minX, double minY, double maxX, double maxY, Rectangle view)
+	{
+		int x0 = Math.max(view.x, (int) Math.floor(minX * gm.tileSize) + gm.xOffset - 1);
+		int y0 = Math.max(view.y, (int) Math.floor(minY * gm.tileSize) + gm.yOffset - 1);
+		int x1 = Math.min(view.x + view.width,  (int) Math.ceil(maxX * gm.tileSize) + gm.xOffset + 1);
+		int y1 = Math.min(view.y + view.height, (int) Math.ceil(maxY * gm.tileSize) + gm.yOffset + 1);
+		
+		if (x1 > x0 && y1 > y0)
+		{
+			dirtyRegion.add(x0, y0, x1 - x0, y1 - y0);
+			repaint(x0, y0, x1 - x0, y1 - y0);
+		}
 	}
 	
 	/**
@@ -381,7 +759,48 @@ public class DisplayPanel extends JComponent
 		synchronized (animations)
 		{
 			animations.add(animation);
+			animationIds.put(animation, animationIndex.add(animation, animation.getBounds()));
 		}
+		
+		snapshotStale = true;
+	}
+	
+	/**
+	 * Gets the particles shared by this panel's animations.
+	 */
+	public ParticleSystem getParticles()
+	{
+		return particles;
+	}
+	
+	/**
+	 * Steps every animation and particle and drops those that are done.
+	 * Called by the Engine once per frame.
+	 */
+	public void stepAnimations()
+	{
+		synchronized (animations)
+		{
+			Iterator<AmbientAnimation> animationItr = animations.iterator();
+			
+			while (animationItr.hasNext())
+			{
+				AmbientAnimation animation = animationItr.next();
+				animation.step();
+				
+				if (animation.isDone())
+				{
+					animationItr.remove();
+					animationIndex.remove(animationIds.remove(animation));
+				}
+				else if (animation.takeBoundsChanged())
+				{
+					animationIndex.move(animationIds.get(animation), animation.getBounds());
+				}
+			}
+		}
+		
+		particles.step();
 	}
 	
 	public List<AmbientAnimation> getAnimations()
@@ -389,6 +808,32 @@ public class DisplayPanel extends JComponent
 		return animations;
 	}
 	
+	/**
+	 * Has the display lists look again at the objects following the
+	 * given unit on the next frame.
+	 */
+	private void invalidate(Unit unit)
+	{
+		synchronized (displayLayers)
+		{
+			for (DisplayList list : displayLayers.values())
+				list.invalidate(unit);
+		}
+	}
+	
+	/**
+	 * Has the display lists look again at the objects that may overlap
+	 * the given rectangle on the next frame.
+	 */
+	private void invalidate(Rectangle2D absRect)
+	{
+		synchronized (displayLayers)
+		{
+			for (DisplayList list : displayLayers.values())
+				list.invalidate(absRect);
+		}
+	}
+	
 	public void addDisplayObject(DisplayObject dObj, DisplayLayer layer)
 	{
 		synchronized (displayLayers)
@@ -396,6 +841,8 @@ public class DisplayPanel extends JComponent
 			dObj.setDisplayPanel(this);
 			displayLayers.get(layer).add(dObj);
 		}
+		
+		snapshotStale = true;
 	}
 	
 	public void addDisplayObject(DisplayObject dObj)
@@ -458,7 +905,31 @@ public class DisplayPanel extends JComponent
 		alignVisibleArea();
 		
 		if (gm.xOffset != oldScrollX || gm.yOffset != oldScrollY)
-			refresh();
+		{
+			repaint();
+			fireViewChanged();
+		}
+	}
+	
+	/**
+	 * Adds a listener told whenever the view scrolls or zooms.
+	 */
+	public void addViewListener(ChangeListener listener)
+	{
+		viewListeners.add(listener);
+	}
+	
+	public void removeViewListener(ChangeListener listener)
+	{
+		viewListeners.remove(listener);
+	}
+	
+	private void fireViewChanged()
+	{
+		ChangeEvent event = new ChangeEvent(this);
+		
+		for (ChangeListener listener : viewListeners)
+			listener.stateChanged(event);
 	}
 	
 	public void shiftViewPoint(int dx, int dy)
@@ -506,7 +977,7 @@ public class DisplayPanel extends JComponent
 	{
 		setScale(minScale);
 		setViewCenterPoint(getWidth() / 2, getHeight() / 2);
-		refresh();
+		repaint();
 	}
 	
 	public void zoomIn(Position pos)
@@ -529,7 +1000,7 @@ public class DisplayPanel extends JComponent
 		if (gm.scale < maxScale)
 		{
 			setScaleCentered(gm.scale + 1, center);
-			refresh(getDisplayRegion());
+			repaint();
 		}
 	}
 	
@@ -538,7 +1009,7 @@ public class DisplayPanel extends JComponent
 		if (gm.scale > minScale)
 		{
 			setScaleCentered(gm.scale - 1, center);
-			refresh(getDisplayRegion());
+			repaint();
 		}
 	}
 	
@@ -547,7 +1018,7 @@ public class DisplayPanel extends JComponent
 		if (gm.scale != normalScale)
 		{
 			setScaleCentered(normalScale, center);
-			refresh(getDisplayRegion());
+			repaint();
 		}
 	}
 	
@@ -559,7 +1030,7 @@ public class DisplayPanel extends JComponent
 	{
 		super.reshape(x, y, width, height);
 		alignVisibleArea();
-		refresh();
+		repaint();
 	}
 	
 	public int getMinimumScale()
@@ -625,6 +1096,7 @@ public class DisplayPanel extends JComponent
 			map.getWidth()  * gm.tileSize,
 			map.getHeight() * gm.tileSize
 		));
+		fireViewChanged();
 	}
 	
 	public void setScaleCentered(int scale, Point center)
@@ -689,13 +1161,63 @@ public class DisplayPanel extends JComponent
 	/**
 	 * Paints the visible rect of the map, including terrain, units and
 	 * overlays.
+	 * 
+	 * If the only repaints requested were from repaintDamage(), just the
+	 * dirty rectangles are painted rather than their bounding box.
 	 */
 	public void paintComponent(Graphics g0)
+	{
+		Rectangle clip = g0.getClipBounds();
+		List<Rectangle> dirtyRects = dirtyRegion.take();
+		RenderSnapshot snapshot = getSnapshot();
+		
+		if (clip == null || dirtyRects.isEmpty() || !clip.equals(getUnion(dirtyRects)))
+		{
+			paintArea(g0, clip, snapshot);
+			return;
+		}
+		
+		for (Rectangle dirtyRect : dirtyRects)
+		{
+			Graphics g1 = g0.create();
+			g1.clipRect(dirtyRect.x, dirtyRect.y, dirtyRect.width, dirtyRect.height);
+			paintArea(g1, dirtyRect, snapshot);
+			g1.dispose();
+		}
+	}
+	
+	private static Rectangle getUnion(List<Rectangle> rects)
+	{
+		Rectangle bounds = new Rectangle(rects.get(0));
+		
+		for (Rectangle rect : rects)
+			bounds.add(rect);
+		
+		return bounds;
+	}
+	
+	/**
+	 * Paints the part of the map inside the given clip rect, or all of it
+	 * if clip is null.
+	 */
+	private void paintArea(Graphics g0, Rectangle clip, RenderSnapshot snapshot)
 	{
 		DisplayGraphics g = new DisplayGraphics((Graphics2D) g0);
 		g.setGridMetrics(gm);
 		drawLetterBox(g);
 		Rectangle rect = getDisplayRect();
+		
+		if (clip != null)
+			rect = rect.intersection(clip);
+		
+		if (rect.isEmpty())
+		{
+			if (! overlays.isEmpty())
+				overlays.getFirst().paint(g);
+			
+			return;
+		}
+		
 		Region region = gm.getRegion(rect);
 		Rectangle2D absRect = region.getAbsRect();
 		
@@ -716,15 +1238,17 @@ public class DisplayPanel extends JComponent
 		}
 		
 		if (showTubeConnectivity && gm.scale >= -2)
-			drawTubeConnectivity(g, region);
+			drawTubeConnectivity(g, map.getBounds().getIntersection(region));
 		
-		drawObjects(g, absRect);
+		drawObjects(g, absRect, snapshot);
 		
-		synchronized (animations)
+		if (gm.scale >= minShowUnitScale)
 		{
-			for (AmbientAnimation animation : animations)
-				if (absRect.intersects(animation.getBounds()) && gm.scale >= minShowUnitScale)
-					animation.paint(g);
+			particles.paint(g, absRect);
+			
+			for (int i = 0; i < snapshot.getAnimationCount(); ++i)
+				if (absRect.intersects(snapshot.getAnimationBounds(i)))
+					snapshot.getAnimation(i).paint(g, snapshot.getAnimationState(i));
 		}
 		
 		if (! overlays.isEmpty())
@@ -756,43 +1280,80 @@ public class DisplayPanel extends JComponent
 	
 	/**
 	 * Draws terrain (surface or cost map) depending on options using
-	 * Graphics g in the visible rect.
+	 * Graphics g in the visible rect, a cached chunk at a time. Only chunks
+	 * that aren't cached yet at this zoom level are rendered.
 	 */
 	private void drawTerrain(DisplayGraphics g, Rectangle rect)
 	{
-		synchronized (cacheLock)
+		Region region = map.getBounds().getIntersection(gm.getRegion(rect));
+		
+		if (region.w == 0 || region.h == 0)
+			return;
+		
+		int span = TerrainCache.getChunkSpan(gm.tileSize);
+		int chunkSize = span * gm.tileSize;
+		
+		for (int cy = region.y / span; cy <= (region.getMaxY() - 1) / span; ++cy)
+		for (int cx = region.x / span; cx <= (region.getMaxX() - 1) / span; ++cx)
 		{
-			Region region = getDisplayRegion();
-			region = map.getBounds().getIntersection(region);
-			long time = System.currentTimeMillis();
+			BufferedImage chunk = terrainCache.get(gm.scale, showTerrainCostMap, cx, cy);
 			
-			if ((cachedBackground == null) || (time - lastRefreshTime > 1000))
-			{
-				lastRefreshTime = time;
-				cachedBackground = new RImage(rect.width, rect.height, false);
-				Graphics2D bg = (Graphics2D) cachedBackground.getGraphics();
-				DisplayGraphics cg = new DisplayGraphics(bg);
-				cg.setGridMetrics(g.getGridMetrics());
-				cg.translate(min(0, -gm.xOffset), min(0, -gm.yOffset));
-				
-				if (showTerrainCostMap) drawCostMap(cg, region);
-								   else drawSurface(cg, region);
-				
-				cg.dispose();
-			}
+			if (chunk == null)
+				chunk = renderTerrainChunk(cx, cy, span);
 			
-			Rectangle letterBox = getLetterBoxRect();
-			g.drawImage(cachedBackground, letterBox.x, letterBox.y, null);
+			g.drawImage(chunk, cx * chunkSize + gm.xOffset, cy * chunkSize + gm.yOffset, null);
 		}
 	}
 	
+	/**
+	 * Renders the terrain chunk at (cx, cy), in bands on worker threads,
+	 * and adds it to the cache.
+	 */
+	private BufferedImage renderTerrainChunk(int cx, int cy, int span)
+	{
+		int generation = terrainCache.getGeneration();
+		Region chunkRegion = new Region(cx * span, cy * span, span, span);
+		chunkRegion = map.getBounds().getIntersection(chunkRegion);
+		
+		BandRenderer.Pass pass = showTerrainCostMap
+			? new BandRenderer.Pass()
+			{
+				public void render(DisplayGraphics g, Region band)
+				{
+					drawCostMap(g, band);
+				}
+			}
+			: new BandRenderer.Pass()
+			{
+				public void render(DisplayGraphics g, Region band)
+				{
+					drawSurface(g, band);
+				}
+			};
+		
+		BufferedImage chunk = BandRenderer.render(chunkRegion, gm.tileSize, gm.scale, false, pass);
+		
+		terrainCache.put(
+			gm.scale,
+			showTerrainCostMap,
+			cx,
+			cy,
+			chunkRegion,
+			chunk,
+			generation
+		);
+		
+		return chunk;
+	}
+	
 	/**
 	 * Draws the terrain costmap using Graphics g with in given visible Region.
+	 * Safe to call from BandRenderer's worker threads.
 	 */
 	private void drawCostMap(DisplayGraphics g, Region region)
 	{
 		CostMap costMap = map.getTerrainCostMap();
-		g.setFont(costMapFont);
+		int scale = g.getGridMetrics().scale;
 		
 		for (Position pos : region)
 		{
@@ -800,33 +1361,34 @@ public class DisplayPanel extends JComponent
 			g.setColor(color);
 			g.fill(pos);
 			
-			if (gm.scale >= -1)
+			if (scale >= -1)
 			{
-				g.setColor(color.invert().toBlackWhite());
-				double cost = costMap.get(pos);
-				String costLabel = null;
-				
-				if (costMap.isInfinite(pos)) costLabel = "Inf";
-				else if (gm.scale >= 0)  costLabel = String.format("%.2f", cost);
-				else if (gm.scale == -1) costLabel = String.valueOf((int) cost);
+				boolean white = color.invert().toBlackWhite().equals(RColor.WHITE);
 				
-				if (costLabel != null)
-					g.drawString(costLabel, pos);
+				g.drawImageCentered(costLabels.get(
+					costMap.get(pos),
+					costMap.isInfinite(pos),
+					scale >= 0,
+					white
+				), pos);
 			}
 		}
 	}
 	
 	/**
 	 * Draws the terrain surface image using Graphics g in the visible Region.
+	 * Safe to call from BandRenderer's worker threads.
 	 */
 	private void drawSurface(DisplayGraphics g, Region region)
 	{
+		int scale = g.getGridMetrics().scale;
+		
 		for (int x = region.x; x < region.getMaxX(); ++x)
 		for (int y = region.y; y < region.getMaxY(); ++y)
 		{
 			Tile tile = tiles.getTile(map.getTileCode(x, y));
 			
-			if (gm.scale >= minShowUnitScale)
+			if (scale >= minShowUnitScale)
 			{
 				g.drawImageAtPosition(tile.getImage(), x, y);
 			}
@@ -852,8 +1414,31 @@ public class DisplayPanel extends JComponent
 	
 	/**
 	 * Highlights tubes and buildings as active/potentially active or disabled.
+	 * The highlights are rendered in bands on worker threads, then drawn over
+	 * the map in one go.
 	 */
 	private void drawTubeConnectivity(DisplayGraphics g, Region region)
+	{
+		if (region.w == 0 || region.h == 0)
+			return;
+		
+		BufferedImage highlights = BandRenderer.render(region, gm.tileSize, gm.scale, true, new BandRenderer.Pass()
+		{
+			public void render(DisplayGraphics g, Region band)
+			{
+				drawTubeConnectivityBand(g, band);
+			}
+		});
+		
+		g.drawImage(
+			highlights,
+			region.x * gm.tileSize + gm.xOffset,
+			region.y * gm.tileSize + gm.yOffset,
+			null
+		);
+	}
+	
+	private void drawTubeConnectivityBand(DisplayGraphics g, Region region)
 	{
 		for (int x = region.x; x < region.getMaxX(); ++x)
 		for (int y = region.y; y < region.getMaxY(); ++y)
@@ -874,39 +1459,13 @@ public class DisplayPanel extends JComponent
 	}
 	
 	/**
-	 * Draws listed display objects layer by layer, sorting as required.
+	 * Draws the display objects in view from the snapshot, which has them
+	 * layer by layer in painting order, as they were when it was taken.
 	 */
-	private void drawObjects(DisplayGraphics g, Rectangle2D absRect)
+	private void drawObjects(DisplayGraphics g, Rectangle2D absRect, RenderSnapshot snapshot)
 	{
-		synchronized (displayLayers)
-		{
-			for (DisplayLayer layer : DisplayLayer.values())
-			{
-				List<DisplayObject> list = displayLayers.get(layer);
-				List<DisplayObject> listCopy = new ArrayList<DisplayObject>();
-				
-				Iterator<DisplayObject> dObjItr = list.iterator();
-				
-				while (dObjItr.hasNext())
-				{
-					DisplayObject dObj = dObjItr.next();
-					
-					if (!dObj.isAlive())
-					{
-						dObjItr.remove();
-						continue;
-					}
-					
-					if (absRect.intersects(dObj.getBounds()))
-						listCopy.add(dObj);
-				}
-				
-				if (layer.comparator != null)
-					Collections.sort(listCopy, layer.comparator);
-				
-				for (DisplayObject dObj : listCopy)
-					dObj.paint(g);
-			}
-		}
+		for (int i = 0; i < snapshot.size(); ++i)
+			if (absRect.intersects(snapshot.getBounds(i)))
+				snapshot.get(i).paint(g, snapshot.getState(i));
 	}
 }
@@ -0,0 +1,280 @@
+package com.robbix.mp5.ui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import javax.swing.JComponent;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+import com.robbix.mp5.map.LayeredMap;
+import com.robbix.mp5.map.MapListener;
+import com.robbix.mp5.map.TileSet;
+import com.robbix.mp5.unit.Footprint;
+import com.robbix.mp5.unit.Unit;
+import com.robbix.utils.Position;
+import com.robbix.utils.Region;
+
+/**
+ * A whole-map overview, one pixel per tile, with units in their owners'
+ * colors and the DisplayPanel's view outlined. Clicking or dragging on it
+ * moves the view.
+ *
+ * The pixels are kept in an int[] and only the cells named in map events
+ * are redrawn, so keeping it current costs as much as what changed.
+ */
+public class Minimap extends JComponent implements MapListener
+{
+	private static final long serialVersionUID = 1L;
+	
+	public static final int DEFAULT_SIZE = 192;
+	
+	private static final int TUBE_COLOR = 0x808080;
+	private static final int WALL_COLOR = 0xb0b0b0;
+	private static final Color VIEW_COLOR = Color.WHITE;
+	
+	private DisplayPanel panel;
+	private LayeredMap map;
+	private TileSet tiles;
+	
+	private int width;
+	private int height;
+	private BufferedImage image;
+	private int[] pixels;
+	
+	/**
+	 * Colors of the cells with no units on them.
+	 */
+	private int[] ground;
+	
+	/**
+	 * The cells in the panel's view, converted to pixels when painted
+	 * so they follow this component's size.
+	 */
+	private Region viewRegion = new Region();
+	private ChangeListener viewListener;
+	
+	public Minimap(DisplayPanel panel)
+	{
+		this.panel = panel;
+		this.map = panel.getMap();
+		this.tiles = panel.getTileSet();
+		this.width = map.getWidth();
+		this.height = map.getHeight();
+		this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		this.ground = new int[width * height];
+		
+		double scale = DEFAULT_SIZE / (double) Math.max(width, height);
+		setPreferredSize(new Dimension(
+			Math.max(1, (int) Math.round(width  * scale)),
+			Math.max(1, (int) Math.round(height * scale))
+		));
+		
+		rebuild();
+		updateViewRect();
+		
+		map.addMapListener(this);
+		viewListener = new ChangeListener()
+		{
+			public void stateChanged(ChangeEvent e)
+			{
+				updateViewRect();
+			}
+		};
+		panel.addViewListener(viewListener);
+		
+		MouseAdapter mouseListener = new MouseAdapter()
+		{
+			public void mousePressed(MouseEvent e) { centerView(e); }
+			public void mouseDragged(MouseEvent e) { centerView(e); }
+		};
+		
+		addMouseListener(mouseListener);
+		addMouseMotionListener(mouseListener);
+	}
+	
+	/**
+	 * Stops listening to the map and panel.
+	 */
+	public void dispose()
+	{
+		map.removeMapListener(this);
+		panel.removeViewListener(viewListener);
+	}
+	
+	/**
+	 * Redraws every cell. Only needed once, or if the map is replaced
+	 * wholesale.
+	 */
+	public synchronized void rebuild()
+	{
+		for (int y = 0; y < height; ++y)
+		for (int x = 0; x < width;  ++x)
+			ground[y * width + x] = getGroundColor(x, y);
+		
+		System.arraycopy(ground, 0, pixels, 0, ground.length);
+		
+		for (Unit unit : map.getUnitIterator())
+			paintUnit(unit, unit.getPosition(), true);
+		
+		repaint();
+	}
+	
+	public void cellsChanged(Region region)
+	{
+		synchronized (this)
+		{
+			for (int y = region.y; y < region.getMaxY(); ++y)
+			for (int x = region.x; x < region.getMaxX(); ++x)
+			{
+				int i = y * width + x;
+				ground[i] = getGroundColor(x, y);
+				Unit occupant = map.getUnit(x, y);
+				pixels[i] = occupant != null
+					? getUnitColor(occupant)
+					: ground[i];
+			}
+		}
+		
+		repaintCells(region.x, region.y, region.w, region.h);
+	}
+	
+	public void unitAdded(Unit unit)
+	{
+		paintUnit(unit, unit.getPosition(), true);
+	}
+	
+	public void unitRemoved(Unit unit, Position pos)
+	{
+		paintUnit(unit, pos, false);
+	}
+	
+	public void unitMoved(Unit unit, Position from, Position to)
+	{
+		paintUnit(unit, from, false);
+		paintUnit(unit, to, true);
+	}
+	
+	public void unitShifted(Unit unit)
+	{
+	}
+	
+	/**
+	 * Fills the unit's footprint at the given position with its owner's
+	 * color, or with the ground's if it left.
+	 */
+	private void paintUnit(Unit unit, Position pos, boolean present)
+	{
+		int color = getUnitColor(unit);
+		int x0 = Integer.MAX_VALUE, y0 = Integer.MAX_VALUE;
+		int x1 = Integer.MIN_VALUE, y1 = Integer.MIN_VALUE;
+		
+		synchronized (this)
+		{
+			for (int offset : unit.getFootprint().getInnerOffsets())
+			{
+				int x = pos.x + Footprint.getDX(offset);
+				int y = pos.y + Footprint.getDY(offset);
+				
+				if (x < 0 || y < 0 || x >= width || y >= height)
+					continue;
+				
+				int i = y * width + x;
+				pixels[i] = present ? color : ground[i];
+				x0 = Math.min(x0, x); x1 = Math.max(x1, x);
+				y0 = Math.min(y0, y); y1 = Math.max(y1, y);
+			}
+		}
+		
+		if (x0 <= x1)
+			repaintCells(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+	}
+	
+	private int getGroundColor(int x, int y)
+	{
+		if (map.hasTube(x, y))
+			return TUBE_COLOR;
+		
+		Position pos = new Position(x, y);
+		
+		if (map.hasWall(pos))
+			return WALL_COLOR;
+		
+		return tiles.getTile(map.getTileCode(x, y)).getAverageColor().getRGB() & 0xffffff;
+	}
+	
+	private static int getUnitColor(Unit unit)
+	{
+		return unit.getOwner().getColor().getRGB() & 0xffffff;
+	}
+	
+	private void updateViewRect()
+	{
+		Region old = viewRegion;
+		viewRegion = map.getBounds().getIntersection(panel.getDisplayRegion());
+		
+		repaintCells(old.x, old.y, old.w, old.h);
+		repaintCells(viewRegion.x, viewRegion.y, viewRegion.w, viewRegion.h);
+	}
+	
+	private void centerView(MouseEvent e)
+	{
+		int x = (int) (e.getX() * width  / (double) getWidth());
+		int y = (int) (e.getY() * height / (double) getHeight());
+		x = Math.max(0, Math.min(width  - 1, x));
+		y = Math.max(0, Math.min(height - 1, y));
+		panel.setViewCenterPosition(new Position(x, y));
+	}
+	
+	private void repaintCells(int x, int y, int w, int h)
+	{
+		repaint(grow(toComponent(x, y, w, h)));
+	}
+	
+	/**
+	 * Converts cells to the pixels they cover on this component.
+	 */
+	private Rectangle toComponent(int x, int y, int w, int h)
+	{
+		double sx = getWidth()  / (double) width;
+		double sy = getHeight() / (double) height;
+		int x0 = (int) Math.floor(x * sx);
+		int y0 = (int) Math.floor(y * sy);
+		int x1 = (int) Math.ceil((x + w) * sx);
+		int y1 = (int) Math.ceil((y + h) * sy);
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+	}
+	
+	private static Rectangle grow(Rectangle rect)
+	{
+		return new Rectangle(rect.x - 1, rect.y - 1, rect.width + 2, rect.height + 2);
+	}
+	
+	protected void paintComponent(Graphics g0)
+	{
+		Graphics2D g = (Graphics2D) g0;
+		g.setRenderingHint(
+			RenderingHints.KEY_INTERPOLATION,
+			RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+		);
+		
+		synchronized (this)
+		{
+			g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+		}
+		
+		Region view = viewRegion;
+		Rectangle viewRect = toComponent(view.x, view.y, view.w, view.h);
+		g.setColor(VIEW_COLOR);
+		g.drawRect(viewRect.x, viewRect.y, viewRect.width - 1, viewRect.height - 1);
+	}
+}
@@ -0,0 +1,145 @@
+package com.robbix.mp5.ui;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+import com.robbix.mp5.ui.ani.AmbientAnimation;
+import com.robbix.mp5.ui.obj.DisplayObject;
+
+/**
+ * The display objects and animations in and around the view as of the end
+ * of a frame, in painting order, with their bounds and captured state.
+ * The panel paints from the latest snapshot instead of live game state,
+ * so it doesn't need to hold any locks while it does.
+ *
+ * Snapshots are filled by one thread at a time and reused from frame to
+ * frame, along with the state objects they hold.
+ */
+public class RenderSnapshot
+{
+	private Rectangle2D area = new Rectangle2D.Double();
+	private int frame = -1;
+	
+	private DisplayObject[] objects = new DisplayObject[64];
+	private Rectangle2D[] bounds = new Rectangle2D[64];
+	private Object[] states = new Object[64];
+	private int size;
+	
+	private AmbientAnimation[] animations = new AmbientAnimation[16];
+	private Rectangle2D[] animationBounds = new Rectangle2D[16];
+	private Object[] animationStates = new Object[16];
+	private int animationCount;
+	
+	/**
+	 * Empties this snapshot to be refilled for the given area, in tiles.
+	 */
+	void reset(Rectangle2D area, int frame)
+	{
+		this.area.setRect(area);
+		this.frame = frame;
+		
+		Arrays.fill(objects, 0, size, null);
+		Arrays.fill(bounds,  0, size, null);
+		Arrays.fill(animations,      0, animationCount, null);
+		Arrays.fill(animationBounds, 0, animationCount, null);
+		size = 0;
+		animationCount = 0;
+	}
+	
+	/**
+	 * Adds an object to be painted after those already added, capturing
+	 * its state.
+	 */
+	void add(DisplayObject dObj, Rectangle2D rect)
+	{
+		if (size == objects.length)
+		{
+			int capacity = size * 2;
+			objects = Arrays.copyOf(objects, capacity);
+			bounds  = Arrays.copyOf(bounds,  capacity);
+			states  = Arrays.copyOf(states,  capacity);
+		}
+		
+		objects[size] = dObj;
+		bounds[size] = rect;
+		states[size] = dObj.capture(states[size]);
+		size++;
+	}
+	
+	/**
+	 * Adds an animation to be painted after those already added,
+	 * capturing its state.
+	 */
+	void addAnimation(AmbientAnimation animation, Rectangle2D rect)
+	{
+		if (animationCount == animations.length)
+		{
+			int capacity = animationCount * 2;
+			animations      = Arrays.copyOf(animations,      capacity);
+			animationBounds = Arrays.copyOf(animationBounds, capacity);
+			animationStates = Arrays.copyOf(animationStates, capacity);
+		}
+		
+		animations[animationCount] = animation;
+		animationBounds[animationCount] = rect;
+		animationStates[animationCount] = animation.capture(animationStates[animationCount]);
+		animationCount++;
+	}
+	
+	/**
+	 * Gets the frame this snapshot was taken on, or -1 if it has never
+	 * been filled.
+	 */
+	public int getFrame()
+	{
+		return frame;
+	}
+	
+	/**
+	 * Returns true if this snapshot has everything in the given area.
+	 */
+	public boolean covers(Rectangle2D rect)
+	{
+		return frame >= 0 && area.contains(rect);
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public DisplayObject get(int index)
+	{
+		return objects[index];
+	}
+	
+	public Rectangle2D getBounds(int index)
+	{
+		return bounds[index];
+	}
+	
+	public Object getState(int index)
+	{
+		return states[index];
+	}
+	
+	public int getAnimationCount()
+	{
+		return animationCount;
+	}
+	
+	public AmbientAnimation getAnimation(int index)
+	{
+		return animations[index];
+	}
+	
+	public Rectangle2D getAnimationBounds(int index)
+	{
+		return animationBounds[index];
+	}
+	
+	public Object getAnimationState(int index)
+	{
+		return animationStates[index];
+	}
+}
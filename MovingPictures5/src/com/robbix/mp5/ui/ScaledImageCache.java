@@ -0,0 +1,174 @@
+package com.robbix.mp5.ui;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pre-scaled copies of sprite images, one per zoom level, so drawing
+ * a sprite at any zoom is a plain unscaled blit.
+ *
+ * Zoomed-out copies are made by halving the next larger copy with
+ * bilinear filtering, so each level is filtered from the one above it.
+ * Zoomed-in copies are doubled with nearest neighbor, to keep pixel art
+ * crisp as it was before. Copies are screen-compatible images and are
+ * evicted least-recently-used past the memory budget.
+ */
+public class ScaledImageCache
+{
+	public static final long DEFAULT_BUDGET = 32L << 20;
+	
+	private static ScaledImageCache instance = new ScaledImageCache(DEFAULT_BUDGET);
+	
+	public static ScaledImageCache getInstance()
+	{
+		return instance;
+	}
+	
+	private static class Key
+	{
+		public final BufferedImage source;
+		public final int scale;
+		
+		public Key(BufferedImage source, int scale)
+		{
+			this.source = source;
+			this.scale = scale;
+		}
+		
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+				return false;
+			
+			Key key = (Key) obj;
+			return key.source == source && key.scale == scale;
+		}
+		
+		public int hashCode()
+		{
+			return System.identityHashCode(source) * 31 + scale;
+		}
+	}
+	
+	private LinkedHashMap<Key, BufferedImage> images;
+	private long budget;
+	private long usedBytes;
+	private GraphicsConfiguration config;
+	
+	public ScaledImageCache(long budget)
+	{
+		if (budget <= 0)
+			throw new IllegalArgumentException("budget must be positive");
+		
+		this.budget = budget;
+		this.images = new LinkedHashMap<Key, BufferedImage>(256, 0.75f, true);
+		
+		if (!GraphicsEnvironment.isHeadless())
+		{
+			config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+										.getDefaultScreenDevice()
+										.getDefaultConfiguration();
+		}
+	}
+	
+	/**
+	 * Gets the source image scaled by 2^scale, making and caching
+	 * the copy if needed. The source itself is returned for scale 0.
+	 */
+	public synchronized BufferedImage get(BufferedImage source, int scale)
+	{
+		if (scale == 0)
+			return source;
+		
+		Key key = new Key(source, scale);
+		BufferedImage scaled = images.get(key);
+		
+		if (scaled == null)
+		{
+			BufferedImage larger = get(source, scale < 0 ? scale + 1 : scale - 1);
+			scaled = scale < 0 ? halve(larger) : twice(larger);
+			images.put(key, scaled);
+			usedBytes += getBytes(scaled);
+			trim(key);
+		}
+		
+		return scaled;
+	}
+	
+	public synchronized void clear()
+	{
+		images.clear();
+		usedBytes = 0;
+	}
+	
+	public synchronized int getImageCount()
+	{
+		return images.size();
+	}
+	
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+	
+	public long getBudget()
+	{
+		return budget;
+	}
+	
+	private void trim(Key keep)
+	{
+		Iterator<Map.Entry<Key, BufferedImage>> itr = images.entrySet().iterator();
+		
+		while (usedBytes > budget && itr.hasNext())
+		{
+			Map.Entry<Key, BufferedImage> eldest = itr.next();
+			
+			if (eldest.getKey().equals(keep))
+				continue;
+			
+			usedBytes -= getBytes(eldest.getValue());
+			itr.remove();
+		}
+	}
+	
+	private BufferedImage halve(BufferedImage img)
+	{
+		int w = Math.max(1, img.getWidth()  / 2);
+		int h = Math.max(1, img.getHeight() / 2);
+		return resize(img, w, h, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+	}
+	
+	private BufferedImage twice(BufferedImage img)
+	{
+		int w = img.getWidth()  * 2;
+		int h = img.getHeight() * 2;
+		return resize(img, w, h, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+	}
+	
+	private BufferedImage resize(BufferedImage img, int w, int h, Object interpolation)
+	{
+		BufferedImage scaled = config != null
+			? config.createCompatibleImage(w, h, Transparency.TRANSLUCENT)
+			: new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+		
+		Graphics2D g = scaled.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+		g.drawImage(img, 0, 0, w, h, null);
+		g.dispose();
+		
+		return scaled;
+	}
+	
+	private static long getBytes(BufferedImage img)
+	{
+		return 4L * img.getWidth() * img.getHeight();
+	}
+}
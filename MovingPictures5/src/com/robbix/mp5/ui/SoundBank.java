@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.Map;
@@ -15,14 +16,23 @@ import javax.sound.sampled.AudioSystem;
 import javax.sound.sampled.LineUnavailableException;
 import javax.sound.sampled.SourceDataLine;
 
+import com.robbix.mp5.ModuleBudget;
 import com.robbix.mp5.Modular;
 import com.robbix.mp5.ModuleEvent;
 import com.robbix.mp5.ModuleListener;
+import com.robbix.utils.AssetArchive;
 import com.robbix.utils.SampleBuffer;
 import com.robbix.utils.SampleStream;
 
+/**
+ * Sound bites are kept within a memory budget. Once over it, the least
+ * recently played ones are unloaded, and are loaded again if they're
+ * played later.
+ */
 public class SoundBank implements Modular
 {
+	public static final long DEFAULT_MEMORY_BUDGET = 32L << 20;
+	
 	public static SoundBank load(File rootDir, boolean lazy) throws IOException
 	{
 		return lazy ? loadLazy(rootDir) : preload(rootDir);
@@ -30,17 +40,8 @@ public class SoundBank implements Modular
 	
 	public static SoundBank preload(File rootDir) throws IOException
 	{
-		SoundBank sounds = new SoundBank();
-		sounds.rootDir = rootDir;
-		
-		for (File file : rootDir.listFiles())
-		{
-			if (! file.getName().endsWith(".wav"))
-				continue;
-			
-			sounds.loadModule(file);
-		}
-		
+		SoundBank sounds = loadLazy(rootDir);
+		sounds.loadAllModules();
 		return sounds;
 	}
 	
@@ -93,6 +94,7 @@ public class SoundBank implements Modular
 	private DoPlay doPlay;
 	private int maxStreamCount = 10;
 	private float volume = 1.0f;
+	private ModuleBudget budget;
 	
 	private SoundBank()
 	{
@@ -100,6 +102,34 @@ public class SoundBank implements Modular
 		buffers = new HashMap<String, SampleBuffer>();
 		playList = new LinkedList<SampleStream>();
 		outFormat = DEFAULT_OUT_FORMAT;
+		
+		budget = new ModuleBudget(this, DEFAULT_MEMORY_BUDGET)
+		{
+			protected long getByteSize(String module)
+			{
+				SampleBuffer buffer = getBuffer(module);
+				return buffer == null ? 0 : 4L * buffer.getChannelCount() * buffer.length();
+			}
+		};
+	}
+	
+	public ModuleBudget getMemoryBudget()
+	{
+		return budget;
+	}
+	
+	public void setMemoryBudget(long bytes)
+	{
+		budget.setBudget(bytes);
+		budget.trim();
+	}
+	
+	private SampleBuffer getBuffer(String name)
+	{
+		synchronized (buffers)
+		{
+			return buffers.get(name);
+		}
 	}
 	
 	public void addModuleListener(ModuleListener listener)
@@ -112,6 +142,24 @@ public class SoundBank implements Modular
 		listenerHelper.remove(listener);
 	}
 	
+	/**
+	 * Loads every sound bite in the bank's directory. Sounds played in
+	 * the meantime are loaded on demand.
+	 */
+	public void loadAllModules() throws IOException
+	{
+		for (File file : AssetArchive.listFiles(rootDir))
+		{
+			if (! file.getName().endsWith(".wav"))
+				continue;
+			
+			String name = file.getName();
+			
+			if (! isLoaded(name.substring(0, name.lastIndexOf('.'))))
+				loadModule(file);
+		}
+	}
+	
 	public void loadModule(String name) throws IOException
 	{
 		loadModule(new File(rootDir, name + ".wav"));
@@ -126,8 +174,14 @@ public class SoundBank implements Modular
 			SampleBuffer buffer = SampleBuffer.load(file);
 			buffer.rechannel(DEFAULT_IN_FORMAT.getChannels());
 			buffer.resample(DEFAULT_IN_FORMAT.getSampleRate());
-			buffers.put(name, buffer);
+			
+			synchronized (buffers)
+			{
+				buffers.put(name, buffer);
+			}
+			
 			listenerHelper.fireModuleLoaded(new ModuleEvent(this, name));
+			budget.loaded(name);
 		}
 		catch (Exception e)
 		{
@@ -137,39 +191,43 @@ public class SoundBank implements Modular
 	
 	public boolean isLoaded(String name)
 	{
-		return buffers.containsKey(name);
+		synchronized (buffers)
+		{
+			return buffers.containsKey(name);
+		}
 	}
 	
 	public boolean unloadModule(String name)
 	{
-		if (buffers.containsKey(name))
+		synchronized (buffers)
 		{
-			buffers.remove(name);
-		}
-		else
-		{
-			return false;
+			if (buffers.remove(name) == null)
+				return false;
 		}
 		
+		budget.unloaded(name);
 		listenerHelper.fireModuleUnloaded(new ModuleEvent(this, name));
 		return true;
 	}
 	
 	public Set<String> getLoadedModules()
 	{
-		return buffers.keySet();
+		synchronized (buffers)
+		{
+			return new HashSet<String>(buffers.keySet());
+		}
 	}
 	
 	public SampleBuffer getData(String name)
 	{
-		SampleBuffer buffer = buffers.get(name);
+		SampleBuffer buffer = getBuffer(name);
 		
 		if (buffer == null)
 		{
 			try
 			{
 				loadModule(name);
-				buffer = buffers.get(name);
+				buffer = getBuffer(name);
 			}
 			catch (IOException ioe)
 			{
@@ -178,6 +236,7 @@ public class SoundBank implements Modular
 			}
 		}
 		
+		budget.used(name);
 		return buffer.copy();
 	}
 	
@@ -198,7 +257,7 @@ public class SoundBank implements Modular
 	{
 		play(name, null);
 	}
-
+	
 	public void play(String name, SampleStream.Callback callback)
 	{
 		play(name, 1, 0, callback);
@@ -212,14 +271,14 @@ public class SoundBank implements Modular
 		if (!isRunning())
 			return;
 		
-		SampleBuffer buffer = buffers.get(name);
+		SampleBuffer buffer = getBuffer(name);
 		
 		if (buffer == null)
 		{
 			try
 			{
 				loadModule(name);
-				buffer = buffers.get(name);
+				buffer = getBuffer(name);
 			}
 			catch (IOException ioe)
 			{
@@ -228,6 +287,8 @@ public class SoundBank implements Modular
 			}
 		}
 		
+		budget.used(name);
+		
 		synchronized (playList)
 		{
 			if (playList.size() < maxStreamCount)
@@ -1,33 +1,65 @@
 package com.robbix.mp5.ui;
 
 import java.awt.Color;
-import java.util.HashMap;
-import java.util.Map;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
 
+import com.robbix.mp5.player.Player;
 import com.robbix.utils.Offset;
 import com.robbix.utils.RColor;
 import com.robbix.utils.RImage;
 
 public class Sprite
 {
-	private static final Color SHADOW = new Color(0, 0, 0, 127);
 	private Offset offset;
 	private RColor baseColor;
 	private RImage baseImage;
-	private RImage shadow;
-	private Map<RColor, RImage> colorMap;
+	
+	/**
+	 * Recolored copies of the base image, in the same order as the colors
+	 * they were baked for. Both are replaced, never modified, when a
+	 * variant is added so they can be read without locking.
+	 */
+	private volatile Variants variants = Variants.NONE;
+	
+	private static class Variants
+	{
+		public static final Variants NONE = new Variants(new RColor[0], new RImage[0]);
+		
+		public final RColor[] colors;
+		public final RImage[] images;
+		
+		public Variants(RColor[] colors, RImage[] images)
+		{
+			this.colors = colors;
+			this.images = images;
+		}
+		
+		public RImage get(RColor color)
+		{
+			for (int i = 0; i < colors.length; ++i)
+				if (colors[i].equals(color))
+					return images[i];
+			
+			return null;
+		}
+		
+		public Variants with(RColor color, RImage image)
+		{
+			RColor[] newColors = Arrays.copyOf(colors, colors.length + 1);
+			RImage[] newImages = Arrays.copyOf(images, images.length + 1);
+			newColors[colors.length] = color;
+			newImages[images.length] = image;
+			return new Variants(newColors, newImages);
+		}
+	}
 	
 	public Sprite(RImage image, Color baseColor, Offset offset)
 	{
 		this.baseImage = image;
 		this.baseColor = RColor.fromColor(baseColor);
 		this.offset = offset;
-		
-		if (this.baseColor != null)
-		{
-			this.colorMap = new HashMap<RColor, RImage>();
-			colorMap.put(this.baseColor, image);
-		}
 	}
 	
 	public Sprite(RImage image)
@@ -60,28 +92,106 @@ public class Sprite
 		return baseImage;
 	}
 	
-	public RImage getImage(Color color, boolean cache)
+	/**
+	 * Recolors the base image to the given color. The copy is kept in the
+	 * SpriteVariantCache, but player colors should still be baked and
+	 * drawn with getImage(Player).
+	 */
+	public RImage getImage(Color color)
 	{
 		if (baseColor == null || color == null || baseColor.equals(color))
 			return baseImage;
 		
-		RColor rColor = RColor.fromColor(color);
-		RImage img = colorMap.get(rColor);
+		return SpriteVariantCache.getInstance().getRecolored(baseImage, baseColor, color);
+	}
+	
+	/**
+	 * Gets this sprite in the player's color, or in the base color if
+	 * that variant hasn't been baked yet. Indexed sprites are cheap to
+	 * recolor, so their variants are baked here if they're missing.
+	 */
+	public RImage getImage(Player player)
+	{
+		if (player == null || baseColor == null)
+			return baseImage;
 		
-		if (img == null)
+		RColor color = player.getColor();
+		RImage variant = variants.get(color);
+		
+		if (variant != null)
+			return variant;
+		
+		if (baseImage.isIndexed())
 		{
-			img = baseImage.getRecoloredCopy(baseColor, color);
-			
-			if (cache)
-				colorMap.put(rColor, img);
+			bake(color);
+			variant = variants.get(color);
 		}
 		
-		return img;
+		return variant != null ? variant : baseImage;
+	}
+	
+	/**
+	 * Gets this sprite in the player's color, pre-scaled to the given zoom
+	 * level. Scaled copies are kept in the ScaledImageCache.
+	 */
+	public BufferedImage getImage(Player player, int scale)
+	{
+		return ScaledImageCache.getInstance().get(getImage(player), scale);
+	}
+	
+	/**
+	 * Returns true if this sprite has no player colors or its variant
+	 * for the given color is ready.
+	 */
+	public boolean isBaked(RColor color)
+	{
+		return baseColor == null || variants.get(color) != null;
+	}
+	
+	/**
+	 * Makes the variant of this sprite for the given player color. Safe
+	 * to call from any thread. Indexed sprites are recolored by palette
+	 * and share their pixels with the base image.
+	 */
+	public void bake(RColor color)
+	{
+		if (isBaked(color))
+			return;
+		
+		setVariant(color, baseColor.equals(color)
+			? baseImage
+			: baseImage.getRecoloredView(baseColor, color));
 	}
 	
-	public RImage getImage(RColor color)
+	/**
+	 * Makes the variant of this indexed sprite for the given player color
+	 * by drawing its pixels with an already recolored palette.
+	 */
+	public void bake(RColor color, IndexColorModel palette)
 	{
-		return getImage(color, true);
+		if (isBaked(color))
+			return;
+		
+		setVariant(color, palette == baseImage.getColorModel()
+			? baseImage
+			: baseImage.getPaletteView(palette));
+	}
+	
+	private void setVariant(RColor color, RImage variant)
+	{
+		synchronized (this)
+		{
+			if (variants.get(color) == null)
+				variants = variants.with(color, variant);
+		}
+	}
+	
+	/**
+	 * Gets the shadow pre-scaled to the given zoom level.
+	 */
+	public BufferedImage getShadow(int scale)
+	{
+		return ScaledImageCache.getInstance().get(getShadow(), scale);
 	}
 	
 	public Offset getOffset()
@@ -109,15 +219,89 @@ public class Sprite
 		return offset.getDY(scale);
 	}
 	
-	public RImage getShadow()
+	/**
+	 * Replaces the base image with one of the same size and content,
+	 * such as a view into a SpriteAtlas sheet. Baked variants are
+	 * dropped.
+	 */
+	void setImage(RImage image)
+	{
+		if (image.getWidth()  != baseImage.getWidth()
+		 || image.getHeight() != baseImage.getHeight())
+			throw new IllegalArgumentException("image size differs");
+		
+		synchronized (this)
+		{
+			baseImage = image;
+			variants = Variants.NONE;
+		}
+	}
+	
+	/**
+	 * Gives a sprite that was made before its frame was decoded its
+	 * image. Baked variants are dropped.
+	 */
+	void setDecodedImage(RImage image)
 	{
-		if (shadow == null)
+		synchronized (this)
 		{
-			shadow = baseImage.copy();
-			shadow.mask(SHADOW);
+			baseImage = image;
+			variants = Variants.NONE;
 		}
+	}
+	
+	/**
+	 * Gets the number of bytes taken by this sprite's image and baked
+	 * variants. Indexed variants share the image's pixels, so they're
+	 * not counted.
+	 */
+	long getByteSize()
+	{
+		RImage image = baseImage;
+		long pixels = (long) image.getWidth() * image.getHeight();
+		
+		if (image.isIndexed())
+			return pixels;
+		
+		long bytes = 4 * pixels;
+		
+		for (RImage variant : variants.images)
+			if (variant != null && variant != image)
+				bytes += 4 * pixels;
+		
+		return bytes;
+	}
+	
+	/**
+	 * Gets the shadow, kept in the SpriteVariantCache.
+	 */
+	public RImage getShadow()
+	{
+		return SpriteVariantCache.getInstance().getShadow(baseImage);
+	}
+	
+	/**
+	 * Gets this sprite faded to about the given alpha. The faded image is
+	 * kept in the SpriteVariantCache, so this is cheap to call per paint.
+	 */
+	public Sprite getFaded(double alpha)
+	{
+		return new Sprite(SpriteVariantCache.getInstance().getFaded(baseImage, alpha), baseColor, offset);
+	}
+	
+	/**
+	 * Gets this sprite in the player's color faded to about the given
+	 * alpha, baking the player's variant first if it isn't yet. The faded
+	 * sprite has no base color, so it's drawn as is for any player.
+	 */
+	public Sprite getFaded(Player player, double alpha)
+	{
+		if (player == null || baseColor == null)
+			return getFaded(alpha);
 		
-		return shadow;
+		bake(player.getColor());
+		RImage faded = SpriteVariantCache.getInstance().getFaded(getImage(player), alpha);
+		return new Sprite(faded, null, offset);
 	}
 	
 	public Sprite getFadedCopy(double alpha)
@@ -0,0 +1,343 @@
+package com.robbix.mp5.ui;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.robbix.utils.RColor;
+import com.robbix.utils.RImage;
+
+/**
+ * A few large sheets holding every frame of a SpriteSet. After packing,
+ * each Sprite's image is a view into a sheet that shares its pixels, so
+ * a set costs a handful of rasters instead of one per frame.
+ *
+ * Frames are placed tallest-first on shelves - rows as tall as their
+ * first frame - and a new sheet is started when one fills up. Frames
+ * larger than a sheet get a sheet to themselves.
+ *
+ * Sheets hold a byte per pixel indexing a palette shared by the set, as
+ * the original 8-bit art does. Player colors are made by recoloring the
+ * palette and drawing the same pixels with it. The few sets with more
+ * colors than fit in PALETTE_SIZE get 32-bit sheets instead, so no color
+ * is changed, and their player colors are baked pixel by pixel.
+ */
+public class SpriteAtlas
+{
+	public static final int SHEET_SIZE = 1024;
+	
+	public static final int PALETTE_SIZE = 256;
+	
+	/**
+	 * Packs all frames of the given set into sheets and re-points its
+	 * sprites at them. Must be done before the set is shared.
+	 */
+	public static SpriteAtlas pack(SpriteSet set)
+	{
+		List<Sprite> sprites = new ArrayList<Sprite>();
+		Map<Sprite, Boolean> seen = new IdentityHashMap<Sprite, Boolean>();
+		
+		for (Object key : set.getArgumentList())
+		{
+			Object[] args = key instanceof Object[]
+				? (Object[]) key
+				: new Object[]{key};
+			
+			SpriteGroup group = set.get(args);
+			
+			if (group == null)
+				continue;
+			
+			for (Sprite sprite : group.getSprites())
+				if (sprite != null && sprite != SpriteSet.BLANK_SPRITE && seen.put(sprite, true) == null)
+					sprites.add(sprite);
+		}
+		
+		SpriteAtlas atlas = new SpriteAtlas();
+		atlas.layOut(sprites);
+		set.setAtlas(atlas);
+		return atlas;
+	}
+	
+	/**
+	 * Packs the given frames into sheets of their own and re-points their
+	 * sprites at them. Used for groups decoded apart from the rest of
+	 * their set.
+	 */
+	public static SpriteAtlas pack(Collection<Sprite> frames)
+	{
+		List<Sprite> sprites = new ArrayList<Sprite>();
+		Map<Sprite, Boolean> seen = new IdentityHashMap<Sprite, Boolean>();
+		
+		for (Sprite sprite : frames)
+			if (sprite != null && sprite != SpriteSet.BLANK_SPRITE && seen.put(sprite, true) == null)
+				sprites.add(sprite);
+		
+		SpriteAtlas atlas = new SpriteAtlas();
+		atlas.layOut(sprites);
+		return atlas;
+	}
+	
+	private List<RImage> sheets = new ArrayList<RImage>();
+	private int frameCount;
+	
+	private IndexColorModel palette;
+	private Map<Long, IndexColorModel> recoloredPalettes;
+	
+	private SpriteAtlas()
+	{
+	}
+	
+	public List<RImage> getSheets()
+	{
+		return Collections.unmodifiableList(sheets);
+	}
+	
+	public int getSheetCount()
+	{
+		return sheets.size();
+	}
+	
+	public int getFrameCount()
+	{
+		return frameCount;
+	}
+	
+	public boolean isIndexed()
+	{
+		return palette != null;
+	}
+	
+	/**
+	 * Gets the palette shared by the sheets, or null if they're 32-bit.
+	 */
+	public IndexColorModel getPalette()
+	{
+		return palette;
+	}
+	
+	/**
+	 * Gets the palette with startColor's shades changed to endColor's.
+	 * Each recoloring is only done once per set.
+	 */
+	public synchronized IndexColorModel getRecoloredPalette(RColor startColor, RColor endColor)
+	{
+		if (palette == null)
+			throw new IllegalStateException("Atlas is not indexed");
+		
+		if (startColor.equals(endColor))
+			return palette;
+		
+		if (recoloredPalettes == null)
+			recoloredPalettes = new HashMap<Long, IndexColorModel>();
+		
+		Long key = ((long) startColor.getRGB() << 32) | (endColor.getRGB() & 0xffffffffL);
+		IndexColorModel recolored = recoloredPalettes.get(key);
+		
+		if (recolored == null)
+		{
+			recolored = RImage.getRecoloredPalette(palette, startColor, endColor);
+			recoloredPalettes.put(key, recolored);
+		}
+		
+		return recolored;
+	}
+	
+	/**
+	 * Works out the palette of the given frames and each frame's pixels
+	 * as indices into it. Index 0 is transparent. Returns null if there
+	 * are more colors than fit.
+	 */
+	private static IndexColorModel index(List<Sprite> sprites, Map<Sprite, byte[]> indices)
+	{
+		Map<Integer, int[]> counts = new HashMap<Integer, int[]>();
+		List<int[]> pixelLists = new ArrayList<int[]>(sprites.size());
+		
+		for (Sprite sprite : sprites)
+		{
+			RImage img = sprite.getImage();
+			int w = img.getWidth();
+			int h = img.getHeight();
+			int[] pixels = img.getRGB(0, 0, w, h, null, 0, w);
+			pixelLists.add(pixels);
+			
+			for (int pixel : pixels)
+			{
+				if (pixel >>> 24 == 0)
+					continue;
+				
+				int[] count = counts.get(pixel);
+				
+				if (count == null)
+					counts.put(pixel, new int[]{1});
+				else
+					count[0]++;
+			}
+		}
+		
+		if (counts.size() > PALETTE_SIZE - 1)
+			return null;
+		
+		final Map<Integer, int[]> finalCounts = counts;
+		List<Integer> colors = new ArrayList<Integer>(counts.keySet());
+		
+		Collections.sort(colors, new Comparator<Integer>()
+		{
+			public int compare(Integer a, Integer b)
+			{
+				return finalCounts.get(b)[0] - finalCounts.get(a)[0];
+			}
+		});
+		
+		int size = colors.size() + 1;
+		int[] rgbs = new int[size];
+		Map<Integer, Integer> colorIndices = new HashMap<Integer, Integer>(size * 2);
+		
+		for (int i = 1; i < size; ++i)
+		{
+			rgbs[i] = colors.get(i - 1);
+			colorIndices.put(rgbs[i], i);
+		}
+		
+		for (int i = 0; i < sprites.size(); ++i)
+		{
+			int[] pixels = pixelLists.get(i);
+			byte[] pixelIndices = new byte[pixels.length];
+			
+			for (int j = 0; j < pixels.length; ++j)
+				if (pixels[j] >>> 24 != 0)
+					pixelIndices[j] = (byte) colorIndices.get(pixels[j]).intValue();
+			
+			indices.put(sprites.get(i), pixelIndices);
+		}
+		
+		return new IndexColorModel(8, size, rgbs, 0, true, 0, DataBuffer.TYPE_BYTE);
+	}
+	
+	private static class Sheet
+	{
+		public List<Sprite> sprites = new ArrayList<Sprite>();
+		public List<Rectangle> rects = new ArrayList<Rectangle>();
+		public int width;
+		public int height;
+		
+		public int shelfX;
+		public int shelfY;
+		public int shelfHeight;
+		
+		/**
+		 * Places a w x h frame on the current shelf or a new one below it.
+		 * Returns null if the sheet has no room left.
+		 */
+		public Rectangle place(int w, int h)
+		{
+			if (shelfX + w > SHEET_SIZE)
+			{
+				shelfY += shelfHeight;
+				shelfX = 0;
+				shelfHeight = 0;
+			}
+			
+			if (shelfX + w > SHEET_SIZE || shelfY + h > SHEET_SIZE)
+				return null;
+			
+			Rectangle rect = new Rectangle(shelfX, shelfY, w, h);
+			shelfX += w;
+			shelfHeight = Math.max(shelfHeight, h);
+			width  = Math.max(width,  rect.x + w);
+			height = Math.max(height, rect.y + h);
+			return rect;
+		}
+	}
+	
+	private void layOut(List<Sprite> sprites)
+	{
+		Collections.sort(sprites, new Comparator<Sprite>()
+		{
+			public int compare(Sprite a, Sprite b)
+			{
+				return b.getImage().getHeight() - a.getImage().getHeight();
+			}
+		});
+		
+		List<Sheet> layout = new ArrayList<Sheet>();
+		Sheet current = null;
+		
+		for (Sprite sprite : sprites)
+		{
+			int w = sprite.getImage().getWidth();
+			int h = sprite.getImage().getHeight();
+			
+			if (w > SHEET_SIZE || h > SHEET_SIZE)
+			{
+				Sheet own = new Sheet();
+				own.sprites.add(sprite);
+				own.rects.add(new Rectangle(0, 0, w, h));
+				own.width = w;
+				own.height = h;
+				layout.add(own);
+				continue;
+			}
+			
+			Rectangle rect = current == null ? null : current.place(w, h);
+			
+			if (rect == null)
+			{
+				current = new Sheet();
+				layout.add(current);
+				rect = current.place(w, h);
+			}
+			
+			current.sprites.add(sprite);
+			current.rects.add(rect);
+		}
+		
+		Map<Sprite, byte[]> indices = new IdentityHashMap<Sprite, byte[]>();
+		palette = sprites.isEmpty() ? null : index(sprites, indices);
+		
+		for (Sheet sheet : layout)
+		{
+			RImage image;
+			
+			if (palette != null)
+			{
+				image = RImage.newIndexed(sheet.width, sheet.height, palette);
+				
+				for (int i = 0; i < sheet.sprites.size(); ++i)
+				{
+					Rectangle rect = sheet.rects.get(i);
+					byte[] pixelIndices = indices.get(sheet.sprites.get(i));
+					image.getRaster().setDataElements(rect.x, rect.y, rect.width, rect.height, pixelIndices);
+				}
+			}
+			else
+			{
+				image = new RImage(sheet.width, sheet.height, true);
+				Graphics2D g = image.createGraphics();
+				
+				for (int i = 0; i < sheet.sprites.size(); ++i)
+				{
+					Rectangle rect = sheet.rects.get(i);
+					g.drawImage(sheet.sprites.get(i).getImage(), rect.x, rect.y, null);
+				}
+				
+				g.dispose();
+			}
+			
+			for (int i = 0; i < sheet.sprites.size(); ++i)
+				sheet.sprites.get(i).setImage(image.getView(sheet.rects.get(i)));
+			
+			sheets.add(image);
+			frameCount += sheet.sprites.size();
+		}
+	}
+}
@@ -1,14 +1,33 @@
 package com.robbix.mp5.ui;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 
+/**
+ * A group can be made before its frames are decoded, with a Source to
+ * decode them. Its sprites are then stand-ins that are given their images
+ * the first time a frame is asked for, or when load() is called ahead of
+ * time. The number of frames is known without decoding.
+ */
 public class SpriteGroup
 {
+	/**
+	 * Decodes the frames of a group made before they were needed.
+	 */
+	public interface Source
+	{
+		/**
+		 * Gives each of the group's sprites its image.
+		 */
+		public void load(List<Sprite> sprites) throws IOException;
+	}
+	
 	private Sprite[] sprites;
 	private boolean looped;
 	private int delay;
 	private Class<? extends Enum<?>> enumType;
+	private volatile Source source;
 	
 	public SpriteGroup(Sprite sprite)
 	{
@@ -64,6 +83,52 @@ public class SpriteGroup
 		this.enumType = enumType;
 	}
 	
+	/**
+	 * Has the group's sprites decoded by the given source when they're
+	 * first needed.
+	 */
+	void setSource(Source source)
+	{
+		this.source = source;
+	}
+	
+	/**
+	 * Returns true if the group's frames have been decoded.
+	 */
+	public boolean isLoaded()
+	{
+		return source == null;
+	}
+	
+	/**
+	 * Decodes the group's frames if they haven't been already. If they
+	 * can't be, the group is left blank rather than failing every time
+	 * it's drawn.
+	 */
+	public void load()
+	{
+		if (source == null)
+			return;
+		
+		synchronized (this)
+		{
+			if (source == null)
+				return;
+			
+			try
+			{
+				source.load(Arrays.asList(sprites));
+			}
+			catch (IOException ioe)
+			{
+				System.err.println("frames not decoded: " + ioe.getMessage());
+				Arrays.fill(sprites, SpriteSet.BLANK_GROUP.getFirst());
+			}
+			
+			source = null;
+		}
+	}
+	
 	public boolean isEnumGroup()
 	{
 		return enumType != null;
@@ -91,6 +156,7 @@ public class SpriteGroup
 	
 	public Sprite getFrame(int frame)
 	{
+		load();
 		frame /= delay;
 		
 		if (looped)
@@ -114,6 +180,7 @@ public class SpriteGroup
 	
 	public Sprite getSprite(int index)
 	{
+		load();
 		return sprites[index];
 	}
 	
@@ -122,16 +189,19 @@ public class SpriteGroup
 		if (!enumType.isInstance(enumValue))
 			throw new IllegalArgumentException(enumValue + " is not of type " + enumType);
 		
+		load();
 		return sprites[enumValue.ordinal()];
 	}
 	
 	public Sprite getFirst()
 	{
+		load();
 		return sprites[0];
 	}
 	
 	public List<Sprite> getSprites()
 	{
+		load();
 		return Arrays.asList(sprites);
 	}
 }
@@ -5,30 +5,64 @@ import static com.robbix.mp5.unit.Activity.TURRET;
 import java.awt.geom.Point2D;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
 
 import com.robbix.mp5.AsyncModuleListener;
 import com.robbix.mp5.Game;
+import com.robbix.mp5.GameListener;
+import com.robbix.mp5.ModuleBudget;
 import com.robbix.mp5.Modular;
 import com.robbix.mp5.ModuleEvent;
 import com.robbix.mp5.ModuleListener;
 import com.robbix.mp5.map.Fixture;
+import com.robbix.mp5.map.LayeredMap;
 import com.robbix.mp5.map.Ore;
+import com.robbix.mp5.player.Player;
 import com.robbix.mp5.unit.Activity;
 import com.robbix.mp5.unit.HealthBracket;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.mp5.unit.UnitType;
+import com.robbix.utils.AssetArchive;
 import com.robbix.utils.AutoArrayList;
 import com.robbix.utils.Direction;
+import com.robbix.utils.RColor;
 import com.robbix.utils.Utils;
 
 /**
- * Async module loading is not enabled by default.
+ * Async module loading is not enabled by default. Async modules, and all
+ * modules when preloading, are loaded on the AsyncLoader's worker pool,
+ * so a module's frames are decoded in parallel. A module that's drawn
+ * before it's loaded is moved to the front of the queue.
+ * 
+ * Player-colored variants of every sprite are baked on a pool of
+ * background threads as players are added and modules are loaded.
+ * Sprites are drawn in their base color until their variant is ready.
+ * 
+ * When loaded lazily, unit sets are read without decoding their frames.
+ * Each activity's frames are decoded the first time they're drawn, and
+ * the commonly drawn ones are decoded in the background after loading.
+ * 
+ * Loaded modules are kept within a memory budget. Once over it, the least
+ * recently drawn modules that no unit on the map uses are unloaded, and
+ * are loaded again if they're drawn later.
  */
-public class SpriteLibrary implements Modular
+public class SpriteLibrary implements Modular, GameListener
 {
 	public static SpriteLibrary load(File rootDir, boolean lazy) throws IOException
 	{
@@ -37,31 +71,63 @@ public class SpriteLibrary implements Modular
 	
 	public static SpriteLibrary loadLazy(File rootDir)
 	{
-		SpriteLibrary library = new SpriteLibrary();
-		library.rootDir = rootDir;
+		SpriteLibrary library = new SpriteLibrary(rootDir);
+		library.setLazyDecodingEnabled(true);
 		return library;
 	}
 	
+	/**
+	 * Loads every module under the given directory, in parallel, and
+	 * waits for them all to finish.
+	 */
 	public static SpriteLibrary preload(File rootDir) throws IOException
 	{
-		SpriteLibrary library = new SpriteLibrary();
-		library.rootDir = rootDir;
-		
-		File[] dirs = rootDir.listFiles();
-		
-		for (File dir : dirs) // For each directory under the spriteset dir
+		SpriteLibrary library = new SpriteLibrary(rootDir);
+		library.loadAllModules();
+		return library;
+	}
+	
+	/**
+	 * Waits for a module to load, rethrowing whatever stopped it.
+	 */
+	private static SpriteSet await(Future<SpriteSet> future) throws IOException
+	{
+		try
 		{
-			File infoFile = new File(dir, "info.xml"); // Load xml file in each
+			return future.get();
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		catch (ExecutionException ee)
+		{
+			Throwable cause = ee.getCause();
 			
-			if (!infoFile.exists())
-				continue;
+			if (cause instanceof IOException)
+				throw (IOException) cause;
 			
-			library.loadModuleSync(infoFile);
+			throw new Error(cause);
 		}
-		
-		return library;
 	}
 	
+	/**
+	 * Priority given to modules that are being drawn before they've
+	 * finished loading.
+	 */
+	public static final int NEEDED_PRIORITY = 10;
+	
+	/**
+	 * Activities whose frames are decoded in the background once a
+	 * lazily decoded set is loaded, since nearly every unit is drawn
+	 * with them.
+	 */
+	private static final Set<Activity> PREFETCH =
+		EnumSet.of(Activity.STILL, Activity.MOVE, TURRET);
+	
+	public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+	
 	private List<SpriteSet> unitSets; // indexed by UnitType.serial
 	private HashMap<String, SpriteSet> ambientSets; // indexed by eventName
 	
@@ -72,9 +138,15 @@ public class SpriteLibrary implements Modular
 	private AsyncModuleListener.Helper listenerHelper;
 	
 	private boolean asyncMode = false;
+	private boolean lazyDecoding = false;
 	private Object asyncLock = new Object();
 	private AsyncLoader loader;
 	
+	private Map<Integer, Player> players;
+	private ExecutorService bakers;
+	
+	private ModuleBudget budget;
+	
 	public SpriteLibrary()
 	{
 		loadedModules = new HashSet<String>(64);
@@ -83,6 +155,60 @@ public class SpriteLibrary implements Modular
 		ambientSets = new HashMap<String, SpriteSet>(256);
 		listenerHelper = new AsyncModuleListener.Helper();
 		loader = new AsyncLoader();
+		players = new HashMap<Integer, Player>();
+		
+		budget = new ModuleBudget(this, DEFAULT_MEMORY_BUDGET)
+		{
+			protected long getByteSize(String module)
+			{
+				SpriteSet set = getSpriteSet(module);
+				return set == null ? 0 : SpriteLibrary.getByteSize(set);
+			}
+			
+			protected Set<String> getPinnedModules()
+			{
+				return getMapModules();
+			}
+			
+			// The map is only changed on the event thread, so its units
+			// are only looked at there
+			public void trim(final String kept)
+			{
+				if (!SwingUtilities.isEventDispatchThread())
+				{
+					SwingUtilities.invokeLater(new Runnable()
+					{
+						public void run()
+						{
+							trim(kept);
+						}
+					});
+					return;
+				}
+				
+				super.trim(kept);
+			}
+		};
+	}
+	
+	/**
+	 * Makes an empty library that loads modules from the given directory.
+	 */
+	public SpriteLibrary(File rootDir)
+	{
+		this();
+		this.rootDir = rootDir;
+	}
+	
+	public ModuleBudget getMemoryBudget()
+	{
+		return budget;
+	}
+	
+	public void setMemoryBudget(long bytes)
+	{
+		budget.setBudget(bytes);
+		budget.trim();
 	}
 	
 	public void setAsyncModeEnabled(boolean asyncMode)
@@ -95,6 +221,21 @@ public class SpriteLibrary implements Modular
 		return asyncMode;
 	}
 	
+	/**
+	 * Has unit modules loaded from now on decode each group's frames
+	 * when the group is first used.
+	 */
+	public void setLazyDecodingEnabled(boolean lazyDecoding)
+	{
+		this.lazyDecoding = lazyDecoding;
+		loader.setLazyDecodingEnabled(lazyDecoding);
+	}
+	
+	public boolean isLazyDecodingEnabled()
+	{
+		return lazyDecoding;
+	}
+	
 	public void addModuleListener(ModuleListener listener)
 	{
 		listenerHelper.add(listener);
@@ -113,7 +254,7 @@ public class SpriteLibrary implements Modular
 	public void loadModuleSync(File xmlFile) throws IOException
 	{
 		String moduleName = 
-			xmlFile.isDirectory()
+			AssetArchive.isDirectory(xmlFile)
 			? xmlFile.getName()
 			: xmlFile.getParentFile().getName();
 		
@@ -121,7 +262,7 @@ public class SpriteLibrary implements Modular
 		 || modulesBeingLoaded.contains(moduleName))
 			return;
 		
-		SpriteSet set = new SpriteSetXMLLoader(xmlFile).load();
+		SpriteSet set = new SpriteSetXMLLoader(xmlFile, lazyDecoding).load();
 		Class<?>[] params = set.getParameterList();
 		
 		if (params.length == 1 && params[0].equals(String.class))
@@ -135,36 +276,103 @@ public class SpriteLibrary implements Modular
 		}
 		
 		loadedModules.add(set.getName());
+		bakeLater(set);
+		prefetchLater(set);
 		listenerHelper.fireModuleLoaded(new ModuleEvent(this, set.getName()));
+		budget.loaded(set.getName());
+	}
+	
+	/**
+	 * Loads every module under the library's directory, in parallel, and
+	 * waits for them all to finish. Modules drawn in the meantime are
+	 * moved ahead of the rest.
+	 */
+	public void loadAllModules() throws IOException
+	{
+		File[] dirs = AssetArchive.listFiles(rootDir);
+		List<Future<SpriteSet>> futures = new ArrayList<Future<SpriteSet>>();
+		
+		for (File dir : dirs) // For each directory under the spriteset dir
+		{
+			File infoFile = new File(dir, "info.xml"); // Load xml file in each
+			
+			if (!AssetArchive.exists(infoFile))
+				continue;
+			
+			futures.add(loadModuleAsync(infoFile));
+		}
+		
+		for (Future<SpriteSet> future : futures)
+			await(future);
 	}
 	
-	public void loadModuleAsync(String name)
+	public Future<SpriteSet> loadModuleAsync(String name)
 	{
-		loadModuleAsync(new File(rootDir, name));
+		return loadModuleAsync(new File(rootDir, name));
 	}
 	
-	public void loadModuleAsync(File xmlFile)
+	public Future<SpriteSet> loadModuleAsync(File xmlFile)
 	{
-		String moduleName = 
-			xmlFile.isDirectory()
-			? xmlFile.getName()
-			: xmlFile.getParentFile().getName();
+		return loadModuleAsync(xmlFile, AsyncLoader.NORMAL_PRIORITY);
+	}
+	
+	public Future<SpriteSet> loadModuleAsync(String name, int priority)
+	{
+		return loadModuleAsync(new File(rootDir, name), priority);
+	}
+	
+	/**
+	 * Queues the module to be loaded in the background, ahead of any
+	 * queued with a lower priority. Returns a future that completes once
+	 * the module is loaded and moduleLoaded() has been fired.
+	 */
+	public Future<SpriteSet> loadModuleAsync(File xmlFile, int priority)
+	{
+		if (!AssetArchive.isDirectory(xmlFile))
+			xmlFile = xmlFile.getParentFile();
+		
+		String moduleName = xmlFile.getName();
 		
 		synchronized (asyncLock)
 		{
-			if (loadedModules.contains(moduleName) || modulesBeingLoaded.contains(moduleName))
-				return;
+			if (loadedModules.contains(moduleName))
+				return AsyncLoader.completed(getSpriteSet(moduleName));
+			
+			if (modulesBeingLoaded.contains(moduleName))
+			{
+				Future<SpriteSet> future = loader.getFuture(xmlFile);
+				
+				if (future != null)
+				{
+					loader.prioritize(xmlFile, priority);
+					return future;
+				}
+			}
 			
 			modulesBeingLoaded.add(moduleName);
 			listenerHelper.fireModuleLoadStarted(new ModuleEvent(this, moduleName));
-			loader.load(xmlFile, new AsyncCallback());
+			return loader.load(xmlFile, priority, new AsyncCallback());
 		}
 	}
 	
+	/**
+	 * Moves a module that's being loaded in the background ahead of
+	 * everything queued with a lower priority. Used for the modules
+	 * the map and players are waiting on.
+	 */
+	public void prioritize(String moduleName, int priority)
+	{
+		loader.prioritize(new File(rootDir, moduleName), priority);
+	}
+	
 	private class AsyncCallback implements AsyncLoader.Callback
 	{
 		public void loadFailed(File file, Exception exc)
 		{
+			synchronized (asyncLock)
+			{
+				modulesBeingLoaded.remove(file.getName());
+			}
 		}
 		
 		public void loadComplete(SpriteSet set)
@@ -185,8 +393,12 @@ public class SpriteLibrary implements Modular
 				
 				modulesBeingLoaded.remove(set.getName());
 				loadedModules.add(set.getName());
+				bakeLater(set);
+				prefetchLater(set);
 				listenerHelper.fireModuleLoaded(new ModuleEvent(this, set.getName()));
 			}
+			
+			budget.loaded(set.getName());
 		}
 	}
 	
@@ -231,16 +443,18 @@ public class SpriteLibrary implements Modular
 			{
 				ambientSets.remove(name);
 				loadedModules.remove(name);
+				budget.unloaded(name);
 				listenerHelper.fireModuleUnloaded(new ModuleEvent(this, name));
 				return true;
 			}
 			
 			UnitType type = Game.game.getUnitFactory().getType(name);
 			
-			if (type != null)
+			if (type != null && unitSets.get(type.getSerial()) != null)
 			{
 				unitSets.set(type.getSerial(), null);
 				loadedModules.remove(name);
+				budget.unloaded(name);
 				listenerHelper.fireModuleUnloaded(new ModuleEvent(this, name));
 				return true;
 			}
@@ -249,6 +463,150 @@ public class SpriteLibrary implements Modular
 		}
 	}
 	
+	/**
+	 * Bakes the player's colored variants of all loaded sprites
+	 * in the background.
+	 */
+	public void playerAdded(Player player)
+	{
+		synchronized (players)
+		{
+			players.put(player.getID(), player);
+		}
+		
+		List<SpriteSet> sets = new ArrayList<SpriteSet>();
+		
+		synchronized (asyncLock)
+		{
+			for (int i = 0; i < unitSets.size(); ++i)
+				if (unitSets.get(i) != null)
+					sets.add(unitSets.get(i));
+			
+			sets.addAll(ambientSets.values());
+		}
+		
+		for (SpriteSet set : sets)
+			bakeLater(set, player);
+	}
+	
+	private void bakeLater(SpriteSet set)
+	{
+		List<Player> playerList;
+		
+		synchronized (players)
+		{
+			playerList = new ArrayList<Player>(players.values());
+		}
+		
+		for (Player player : playerList)
+			bakeLater(set, player);
+	}
+	
+	private void bakeLater(final SpriteSet set, final Player player)
+	{
+		getBakers().execute(new Runnable()
+		{
+			public void run()
+			{
+				bake(set, player.getColor());
+			}
+		});
+	}
+	
+	/**
+	 * Decodes the set's commonly drawn groups in the background, if
+	 * they haven't been already.
+	 */
+	private void prefetchLater(SpriteSet set)
+	{
+		for (Object key : set.getArgumentList())
+		{
+			Object[] args = key instanceof Object[]
+				? (Object[]) key
+				: new Object[]{key};
+			
+			final SpriteGroup group = set.get(args);
+			
+			if (group == null || group.isLoaded() || !isPrefetched(args))
+				continue;
+			
+			getBakers().execute(new Runnable()
+			{
+				public void run()
+				{
+					group.load();
+				}
+			});
+		}
+	}
+	
+	private static boolean isPrefetched(Object[] args)
+	{
+		for (Object arg : args)
+			if (arg instanceof Activity && PREFETCH.contains(arg))
+				return true;
+		
+		return false;
+	}
+	
+	/**
+	 * Bakes a player's variants of every sprite in the set. An indexed
+	 * set's palette is recolored once and shared by all its sprites.
+	 * Groups that haven't been decoded yet are baked as they're drawn.
+	 */
+	private static void bake(SpriteSet set, RColor color)
+	{
+		SpriteAtlas atlas = set.getAtlas();
+		boolean indexed = atlas != null && atlas.isIndexed();
+		
+		for (Object key : set.getArgumentList())
+		{
+			Object[] args = key instanceof Object[]
+				? (Object[]) key
+				: new Object[]{key};
+			
+			SpriteGroup group = set.get(args);
+			
+			if (group == null || !group.isLoaded())
+				continue;
+			
+			for (Sprite sprite : group.getSprites())
+			{
+				if (sprite == null || sprite.getBaseColor() == null)
+					continue;
+				
+				if (indexed && sprite.getImage().isIndexed())
+					sprite.bake(color, atlas.getRecoloredPalette(sprite.getBaseColor(), color));
+				else
+					sprite.bake(color);
+			}
+		}
+	}
+	
+	private ExecutorService getBakers()
+	{
+		synchronized (players)
+		{
+			if (bakers == null)
+			{
+				int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+				
+				bakers = Executors.newFixedThreadPool(threads, new ThreadFactory()
+				{
+					public Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "SpriteBaker");
+						thread.setDaemon(true);
+						thread.setPriority(Thread.MIN_PRIORITY);
+						return thread;
+					}
+				});
+			}
+			
+			return bakers;
+		}
+	}
+	
 	public Set<String> getLoadedModules()
 	{
 		synchronized (asyncLock)
@@ -305,6 +663,7 @@ public class SpriteLibrary implements Modular
 			{
 				if (isBeingLoaded(type.getName()))
 				{
+					prioritize(type.getName(), NEEDED_PRIORITY);
 					return SpriteSet.BLANK;
 				}
 				
@@ -320,6 +679,7 @@ public class SpriteLibrary implements Modular
 				}
 			}
 			
+			budget.used(type.getName());
 			return unitSets.get(type.getSerial());
 		}
 	}
@@ -332,6 +692,7 @@ public class SpriteLibrary implements Modular
 			{
 				if (isBeingLoaded(eventName))
 				{
+					prioritize(eventName, NEEDED_PRIORITY);
 					return SpriteSet.BLANK;
 				}
 				
@@ -346,21 +707,82 @@ public class SpriteLibrary implements Modular
 				}
 			}
 			
+			budget.used(eventName);
 			return ambientSets.get(eventName);
 		}
 	}
 	
+	/**
+	 * Gets the modules drawn for the units on the current map, which
+	 * are kept loaded whatever the budget. Returns null while there's
+	 * no map yet, so nothing is evicted before its units are known.
+	 */
+	private static Set<String> getMapModules()
+	{
+		LayeredMap map = Game.game == null ? null : Game.game.getMap();
+		
+		if (map == null)
+			return null;
+		
+		Set<String> modules = new HashSet<String>();
+		
+		for (Unit unit : map.getUnitIterator())
+		{
+			modules.add(unit.getType().getName());
+			
+			if (unit.hasTurret())
+				modules.add(unit.getTurret().getType().getName());
+		}
+		
+		return modules;
+	}
+	
+	/**
+	 * Gets the number of bytes taken by the set's decoded sprites and
+	 * their baked variants.
+	 */
+	private static long getByteSize(SpriteSet set)
+	{
+		Set<Sprite> counted = Collections.newSetFromMap(new IdentityHashMap<Sprite, Boolean>());
+		long bytes = 0;
+		
+		for (Object key : set.getArgumentList())
+		{
+			Object[] args = key instanceof Object[]
+				? (Object[]) key
+				: new Object[]{key};
+			
+			SpriteGroup group = set.get(args);
+			
+			if (group == null || !group.isLoaded())
+				continue;
+			
+			for (Sprite sprite : group.getSprites())
+				if (sprite != null && counted.add(sprite))
+					bytes += sprite.getByteSize();
+		}
+		
+		return bytes;
+	}
+	
 	public Point2D getHotspot(Unit turret)
 	{
 		return getHotspot(turret.getType(), turret.getDirection());
 	}
 	
+	/**
+	 * Gets where the turret fires from, relative to its unit, or null if
+	 * its sprites aren't loaded yet.
+	 */
 	public Point2D getHotspot(UnitType turretType, Direction dir)
 	{
 		SpriteSet set = getUnitSpriteSet(turretType);
 		SpriteGroup group = set.get(TURRET);
-		TurretSprite sprite = (TurretSprite) group.getSprite(dir.ordinal());
-		return sprite.getHotspot();
+		Sprite sprite = group.getSprite(dir.ordinal());
+		
+		return sprite instanceof TurretSprite
+			? ((TurretSprite) sprite).getHotspot()
+			: null;
 	}
 	
 	public Sprite getUnknownDepositSprite()
@@ -395,7 +817,7 @@ public class SpriteLibrary implements Modular
 		if (sprite == SpriteSet.BLANK_SPRITE)
 			return sprite;
 		
-		return sprite.getFadedCopy(aFactor);
+		return sprite.getFaded(aFactor);
 	}
 	
 	public Sprite getSprite(Fixture fixture)
@@ -410,7 +832,7 @@ public class SpriteLibrary implements Modular
 		if (sprite == SpriteSet.BLANK_SPRITE)
 			return sprite;
 		
-		return sprite.getFadedCopy(aFactor);
+		return sprite.getFaded(aFactor);
 	}
 	
 	public SpriteGroup getSpriteGroup(Fixture fixture)
@@ -491,6 +913,15 @@ public class SpriteLibrary implements Modular
 	}
 	
 	public Sprite getTranslucentDefault(UnitType unitType, double aFactor)
+	{
+		return getTranslucentDefault(unitType, null, aFactor);
+	}
+	
+	/**
+	 * Gets the type's default sprite faded, in the owner's color if one
+	 * is given.
+	 */
+	public Sprite getTranslucentDefault(UnitType unitType, Player owner, double aFactor)
 	{
 		Sprite sprite = getDefaultSprite(unitType);
 		
@@ -500,12 +931,12 @@ public class SpriteLibrary implements Modular
 		if (sprite == SpriteSet.BLANK_SPRITE)
 			return sprite;
 		
-		return sprite.getFadedCopy(aFactor);
+		return sprite.getFaded(owner, aFactor);
 	}
 	
 	public Sprite getTranslucentDefault(Unit unit, double aFactor)
 	{
-		return getTranslucentDefault(unit.getType(), aFactor);
+		return getTranslucentDefault(unit.getType(), unit.getOwner(), aFactor);
 	}
 	
 	/**
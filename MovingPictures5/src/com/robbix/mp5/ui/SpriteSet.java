@@ -46,6 +46,7 @@ public abstract class SpriteSet
 	};
 	
 	private String name;
+	private SpriteAtlas atlas;
 	
 	protected SpriteSet(String name)
 	{
@@ -57,6 +58,20 @@ public abstract class SpriteSet
 		return name;
 	}
 	
+	/**
+	 * Gets the sheets this set's frames were packed into, or null if
+	 * they were not packed.
+	 */
+	public SpriteAtlas getAtlas()
+	{
+		return atlas;
+	}
+	
+	void setAtlas(SpriteAtlas atlas)
+	{
+		this.atlas = atlas;
+	}
+	
 	public abstract Class<?>[] getParameterList();
 	public abstract Object[] getArgumentList();
 	public abstract void set(SpriteGroup group, Object... args);
@@ -1,17 +1,22 @@
 package com.robbix.mp5.ui;
 
 import java.awt.Color;
+import java.awt.Rectangle;
 import java.awt.geom.Point2D;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 import com.robbix.mp5.unit.Activity;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Cargo;
 import com.robbix.mp5.unit.HealthBracket;
+import com.robbix.utils.AssetArchive;
 import com.robbix.utils.AutoArrayList;
 import com.robbix.utils.Direction;
 import com.robbix.utils.FileFormatException;
@@ -28,42 +33,252 @@ import static com.robbix.mp5.unit.Activity.*;
  * OR REUSABLE! DO NOT REUSE!
  * 
  * One instance per info.xml file/sprite set!
+ * 
+ * The exception is decodeFrame(), which can be called from several threads
+ * between plan() and finish() so a set's frames are decoded in parallel.
+ * 
+ * In lazy mode, unit sets are built without decoding any frames. Each of
+ * their groups decodes its own frames when first used.
  */
 class SpriteSetXMLLoader
 {
+	private static final RImage PLACEHOLDER = new RImage(1, 1, true);
+	
 	private Map<String, List<RNode>> offsetFrameMap;
 	private File xmlFile;
+	private RNode rootNode;
+	
+	/**
+	 * Frames noted while planning, with their translucency.
+	 */
+	private Map<File, Double> plannedFrames;
+	
+	private File[] frameFiles;
+	private double[] frameTranslucencies;
+	private RImage[] frameImages;
+	private Map<File, RImage> decodedFrames;
+	
+	private boolean lazy;
+	private SpriteSet lazySet;
+	
+	/**
+	 * Frames of the stand-in images given to sprites in lazy mode.
+	 */
+	private Map<RImage, Frame> lazyFrames;
+	
+	/**
+	 * Stand-in for each frame file, so a file used by several sprites is
+	 * only decoded once.
+	 */
+	private Map<File, RImage> standIns;
 	
 	private List<Sprite> tempList = new AutoArrayList<Sprite>();
 	
+	private static class Frame
+	{
+		public final File file;
+		public final double trans;
+		
+		public Frame(File file, double trans)
+		{
+			this.file = file;
+			this.trans = trans;
+		}
+		
+		public RImage load() throws IOException
+		{
+			RImage img = loadFrame(file);
+			
+			if (trans != 1.0)
+				img.fade(trans);
+			
+			return img;
+		}
+	}
+	
+	/**
+	 * Decodes a lazy group's frames and packs them into an atlas of
+	 * their own.
+	 */
+	private static class LazyFrames implements SpriteGroup.Source
+	{
+		private Map<Sprite, Frame> frames;
+		
+		public LazyFrames(Map<Sprite, Frame> frames)
+		{
+			this.frames = frames;
+		}
+		
+		public void load(List<Sprite> sprites) throws IOException
+		{
+			Map<Frame, RImage> decoded = new IdentityHashMap<Frame, RImage>();
+			
+			for (Map.Entry<Sprite, Frame> entry : frames.entrySet())
+			{
+				RImage img = decoded.get(entry.getValue());
+				
+				if (img == null)
+				{
+					img = entry.getValue().load();
+					decoded.put(entry.getValue(), img);
+				}
+				
+				entry.getKey().setDecodedImage(img);
+			}
+			
+			SpriteAtlas.pack(sprites);
+		}
+	}
+	
 	public SpriteSetXMLLoader(File xmlFile)
 	{
-		if (xmlFile.isDirectory())
+		this(xmlFile, false);
+	}
+	
+	public SpriteSetXMLLoader(File xmlFile, boolean lazy)
+	{
+		if (AssetArchive.isDirectory(xmlFile))
 			xmlFile = new File(xmlFile, "info.xml");
 		
-		if (!xmlFile.exists() || !xmlFile.isFile() || !xmlFile.getName().endsWith(".xml"))
+		if (!AssetArchive.exists(xmlFile) || AssetArchive.isDirectory(xmlFile) || !xmlFile.getName().endsWith(".xml"))
 			throw new IllegalArgumentException(xmlFile + " not valid");
 		
 		this.xmlFile = xmlFile;
+		this.lazy = lazy;
 	}
 	
 	public SpriteSet load() throws IOException
 	{
-		RNode rootNode = RNode.load(xmlFile);
+		rootNode = RNode.load(xmlFile);
+		offsetFrameMap = getOffsetFrameMap(rootNode);
+		
+		if (lazy && !rootNode.getAttribute("type").equals("ambient"))
+			return buildLazy();
+		
+		SpriteSet spriteSet = build();
+		SpriteAtlas.pack(spriteSet);
+		return spriteSet;
+	}
+	
+	/**
+	 * Builds the set with stand-in images, then gives each group a source
+	 * that decodes the real ones.
+	 */
+	private SpriteSet buildLazy() throws IOException
+	{
+		lazyFrames = new IdentityHashMap<RImage, Frame>();
+		standIns = new HashMap<File, RImage>();
+		SpriteSet spriteSet = build();
 		
+		for (Object key : spriteSet.getArgumentList())
+		{
+			Object[] args = key instanceof Object[]
+				? (Object[]) key
+				: new Object[]{key};
+			
+			SpriteGroup group = spriteSet.get(args);
+			
+			if (group == null || !group.isLoaded())
+				continue;
+			
+			Map<Sprite, Frame> frames = new IdentityHashMap<Sprite, Frame>();
+			
+			for (Sprite sprite : group.getSprites())
+				if (sprite != null && lazyFrames.containsKey(sprite.getImage()))
+					frames.put(sprite, lazyFrames.get(sprite.getImage()));
+			
+			if (!frames.isEmpty())
+				group.setSource(new LazyFrames(frames));
+		}
+		
+		lazyFrames = null;
+		standIns = null;
+		return spriteSet;
+	}
+	
+	/**
+	 * Reads the metadata and works out which frames the set is made of,
+	 * without decoding any of them. Returns the number of frames, each of
+	 * which must be given to decodeFrame() before finish() is called.
+	 */
+	public int plan() throws IOException
+	{
+		if (lazy)
+		{
+			lazySet = load();
+			frameFiles = new File[0];
+			return 0;
+		}
+		
+		rootNode = RNode.load(xmlFile);
 		offsetFrameMap = getOffsetFrameMap(rootNode);
+		
+		plannedFrames = new LinkedHashMap<File, Double>();
+		build();
+		
+		frameFiles = plannedFrames.keySet().toArray(new File[plannedFrames.size()]);
+		frameTranslucencies = new double[frameFiles.length];
+		decodedFrames = new HashMap<File, RImage>(frameFiles.length * 2);
+		frameImages = new RImage[frameFiles.length];
+		
+		for (int i = 0; i < frameFiles.length; ++i)
+			frameTranslucencies[i] = plannedFrames.get(frameFiles[i]);
+		
+		plannedFrames = null;
+		return frameFiles.length;
+	}
+	
+	/**
+	 * Decodes one of the planned frames. Different frames may be decoded
+	 * on different threads at the same time.
+	 */
+	public void decodeFrame(int index) throws IOException
+	{
+		RImage img = loadFrame(frameFiles[index]);
+		
+		if (frameTranslucencies[index] != 1.0)
+			img.fade(frameTranslucencies[index]);
+		
+		frameImages[index] = img;
+	}
+	
+	/**
+	 * Builds the set out of the decoded frames. Must be called after every
+	 * call to decodeFrame() has returned.
+	 */
+	public SpriteSet finish() throws IOException
+	{
+		if (lazySet != null)
+			return lazySet;
+		
+		for (int i = 0; i < frameFiles.length; ++i)
+			decodedFrames.put(frameFiles[i], frameImages[i]);
+		
+		frameImages = null;
+		SpriteSet spriteSet = build();
+		decodedFrames = null;
+		
+		SpriteAtlas.pack(spriteSet);
+		return spriteSet;
+	}
+	
+	private SpriteSet build() throws IOException
+	{
 		String type = rootNode.getAttribute("type");
 		File rootDir = xmlFile.getParentFile();
+		SpriteSet spriteSet;
 		
-		if      (type.equals("vehicle"))   return loadVehicle  (rootDir, rootNode);
-		else if (type.equals("turret"))    return loadTurret   (rootDir, rootNode);
-		else if (type.equals("guardPost")) return loadGuardPost(rootDir, rootNode);
-		else if (type.equals("structure")) return loadStructure(rootDir, rootNode);
-		else if (type.equals("ambient"))   return loadAmbient  (rootDir, rootNode);
+		if      (type.equals("vehicle"))   spriteSet = loadVehicle  (rootDir, rootNode);
+		else if (type.equals("turret"))    spriteSet = loadTurret   (rootDir, rootNode);
+		else if (type.equals("guardPost")) spriteSet = loadGuardPost(rootDir, rootNode);
+		else if (type.equals("structure")) spriteSet = loadStructure(rootDir, rootNode);
+		else if (type.equals("ambient"))   spriteSet = loadAmbient  (rootDir, rootNode);
 		else
 		{
 			throw new FileFormatException(xmlFile, "Not a valid SpriteSet type");
 		}
+		
+		return spriteSet;
 	}
 	
 	/**
@@ -73,8 +288,9 @@ class SpriteSetXMLLoader
 	{
 		String unitType = rootNode.getAttribute("unitType");
 		RColor color = RColor.fromColor(rootNode.getColorAttribute("color"));
+		boolean truck = Capability.TRUCK.in(Capability.getCapabilities(unitType));
 		
-		SpriteSet spriteSet = unitType.contains("Truck")
+		SpriteSet spriteSet = truck
 			? SpriteSet.forTrucks(unitType)
 			: SpriteSet.forVehicles(unitType);
 		
@@ -97,9 +313,9 @@ class SpriteSetXMLLoader
 				
 				Cargo.Type cargo = activityNode.getEnumAttribute(Cargo.Type.class, "cargo", null);
 				
-				if (unitType.contains("Truck") && cargo == null)
+				if (truck && cargo == null)
 					throw new FileFormatException(xmlFile, "Cargo type not marked for Truck");
-								
+				
 				for (RNode directionNode : getOffsetNodes(activityNode))
 				{
 					Direction direction = directionNode.getDirectionAttribute("name");
@@ -114,14 +330,14 @@ class SpriteSetXMLLoader
 					
 					for (int i = 0; i < frameCount; ++i)
 					{
-						RImage img = loadFrame(activityDir, fileNumber++);
+						RImage img = frame(activityDir, fileNumber++);
 						Sprite sprite = new Sprite(img, color, dirOffset);
 						tempList.add(sprite);
 					}
 					
 					SpriteGroup group = new SpriteGroup(tempList, true, delay);
 					
-					if (unitType.contains("Truck"))
+					if (truck)
 						spriteSet.set(group, cargo, activity, direction);
 					else
 						spriteSet.set(group, activity, direction);
@@ -131,8 +347,8 @@ class SpriteSetXMLLoader
 			{
 				int perTurnFrameCount = activityNode.getIntAttribute("perTurnFrameCount");
 				Cargo.Type cargo = activityNode.getEnumAttribute(Cargo.Type.class, "cargo");
-
-				if (unitType.contains("Truck") && cargo == null)
+				
+				if (truck && cargo == null)
 					throw new FileFormatException(xmlFile,
 						"Cargo type not marked for Truck"
 					);
@@ -147,7 +363,7 @@ class SpriteSetXMLLoader
 					
 					for (int i = 0; i < perTurnFrameCount; ++i)
 					{
-						RImage img = loadFrame(activityDir, fileNumber++);
+						RImage img = frame(activityDir, fileNumber++);
 						Sprite sprite = new Sprite(img, color, dirOffset);
 						tempList.add(sprite);
 					}
@@ -170,7 +386,7 @@ class SpriteSetXMLLoader
 					cargo = null;
 				}
 				
-				if (unitType.contains("Truck") && cargo == null)
+				if (truck && cargo == null)
 					throw new FileFormatException(xmlFile, "Cargo type not marked for Truck");
 				
 				List<RNode> offsetNodes = getOffsetNodes(activityNode);
@@ -178,7 +394,7 @@ class SpriteSetXMLLoader
 				
 				for (int i = 0; i < frameCount; ++i)
 				{
-					RImage img = loadFrame(activityDir, fileNumber++);
+					RImage img = frame(activityDir, fileNumber++);
 					Offset frameOffset = activityOffset;
 					
 					if (!offsetNodes.isEmpty())
@@ -191,7 +407,7 @@ class SpriteSetXMLLoader
 				}
 				
 				SpriteGroup group = new SpriteGroup(tempList, false, delay);
-				if (unitType.contains("Truck"))
+				if (truck)
 					spriteSet.set(group, cargo, activity, Direction.W);
 				else
 					spriteSet.set(group, activity, Direction.W);
@@ -215,7 +431,7 @@ class SpriteSetXMLLoader
 					
 					for (int i = 0; i < perTurnFrameCount; ++i)
 					{
-						RImage img = loadFrame(activityDir, fileNumber++);
+						RImage img = frame(activityDir, fileNumber++);
 						Offset frameOffset = dirOffset;
 						
 						if (!offsetNodes.isEmpty())
@@ -239,7 +455,7 @@ class SpriteSetXMLLoader
 				
 				for (int i = 0; i < frameCount; ++i)
 				{
-					RImage img = loadFrame(activityDir, fileNumber++);
+					RImage img = frame(activityDir, fileNumber++);
 					Offset frameOffset = activityOffset;
 					
 					if (!offsetNodes.isEmpty())
@@ -290,7 +506,7 @@ class SpriteSetXMLLoader
 					int fileNumber = healthNode.getIntAttribute("fileNumber");
 					Offset healthOffset = healthNode.getOffsetAttributes();
 					healthOffset = healthOffset.add(activityOffset);
-					RImage img = loadFrame(activityDir, fileNumber);
+					RImage img = frame(activityDir, fileNumber);
 					Sprite sprite = new Sprite(img, color, healthOffset);
 					tempList.set(hb.ordinal(), sprite);
 				}
@@ -308,7 +524,7 @@ class SpriteSetXMLLoader
 				
 				for (int i = 0; i < frameCount; ++i)
 				{
-					RImage img = loadFrame(activityDir, fileNumber++);
+					RImage img = frame(activityDir, fileNumber++);
 					Offset frameOffset = activityOffset;
 					
 					if (!offsetNodes.isEmpty())
@@ -333,7 +549,7 @@ class SpriteSetXMLLoader
 				
 				for (int i = 0; i < frameCount; ++i)
 				{
-					RImage img = loadFrame(activityDir, fileNumber++);
+					RImage img = frame(activityDir, fileNumber++);
 					Offset frameOffset = activityOffset;
 					
 					if (!offsetNodes.isEmpty())
@@ -367,14 +583,14 @@ class SpriteSetXMLLoader
 		
 		if (activityNode == null)
 			throw new FileFormatException(xmlFile, "No activity Node");
-
+		
 		Activity activity = activityNode.getEnumAttribute(Activity.class, "name");
 		
 		if (activity != TURRET)
 			throw new IOException("Only \"turret\" activity valid for turrets");
 		
 		String path = activityNode.getAttribute("path", ".");
-
+		
 		File activityDir = new File(dir, path);
 		
 		Offset activityOffset = activityNode.getOffsetAttributes();
@@ -397,7 +613,7 @@ class SpriteSetXMLLoader
 					hotspotOffset.dy / 32.0
 				);
 			}
-			RImage img = loadFrame(activityDir, fileNumber++);
+			RImage img = frame(activityDir, fileNumber++);
 			Sprite sprite = new TurretSprite(img, color, dirOffset, hotspot);
 			tempList.set(direction.ordinal(), sprite);
 		}
@@ -449,7 +665,7 @@ class SpriteSetXMLLoader
 							hotspotOffset.dy / 32.0
 						);
 					}
-					RImage img = loadFrame(activityDir, fileNumber++);
+					RImage img = frame(activityDir, fileNumber++);
 					Sprite sprite = new TurretSprite(img, color, dirOffset, hotspot);
 					tempList.set(direction.ordinal(), sprite);
 				}
@@ -466,7 +682,7 @@ class SpriteSetXMLLoader
 				
 				for (int i = 0; i < frameCount; ++i)
 				{
-					RImage img = loadFrame(activityDir, fileNumber++);
+					RImage img = frame(activityDir, fileNumber++);
 					
 					Offset frameOffset = activityOffset;
 					
@@ -514,7 +730,7 @@ class SpriteSetXMLLoader
 			
 			for (int i = 0; i < frameCount; ++i)
 			{
-				RImage img = loadFrame(eventDir, fileNumber++, trans);
+				RImage img = frame(eventDir, fileNumber++, trans);
 				Offset frameOffset = eventOffset;
 				
 				if (!offsetNodes.isEmpty())
@@ -540,11 +756,21 @@ class SpriteSetXMLLoader
 	
 	public static RImage loadFrame(File dir, int fileNumber) throws IOException
 	{
-		RImage img = RImage.readEnsureAlpha(new File(dir, "frm-" + (fileNumber++) + ".bmp"));
+		return loadFrame(getFrameFile(dir, fileNumber));
+	}
+	
+	private static RImage loadFrame(File file) throws IOException
+	{
+		RImage img = RImage.readEnsureAlpha(file);
 		img.extract(bgColors);
 		return img;
 	}
 	
+	private static File getFrameFile(File dir, int fileNumber)
+	{
+		return new File(dir, "frm-" + fileNumber + ".bmp");
+	}
+	
 	public static RImage loadFrame(File dir, int fileNumber, double trans) throws IOException
 	{
 		RImage img = loadFrame(dir, fileNumber);
@@ -552,6 +778,56 @@ class SpriteSetXMLLoader
 		return img;
 	}
 	
+	private RImage frame(File dir, int fileNumber) throws IOException
+	{
+		return frame(dir, fileNumber, 1.0);
+	}
+	
+	/**
+	 * Gets a frame for the set being built. While planning, the frame is
+	 * only noted and a placeholder is returned. Once planned, the decoded
+	 * frame is returned. In lazy mode each frame file gets a stand-in of
+	 * its own. Otherwise it's decoded on the spot.
+	 */
+	private RImage frame(File dir, int fileNumber, double trans) throws IOException
+	{
+		File file = getFrameFile(dir, fileNumber);
+		
+		if (lazyFrames != null)
+		{
+			RImage standIn = standIns.get(file);
+			
+			if (standIn == null)
+			{
+				standIn = PLACEHOLDER.getView(new Rectangle(1, 1));
+				lazyFrames.put(standIn, new Frame(file, trans));
+				standIns.put(file, standIn);
+			}
+			
+			return standIn;
+		}
+		
+		if (plannedFrames != null)
+		{
+			plannedFrames.put(file, trans);
+			return PLACEHOLDER;
+		}
+		
+		if (decodedFrames != null)
+		{
+			RImage img = decodedFrames.get(file);
+			
+			if (img == null)
+				throw new FileFormatException(xmlFile, file.getName() + " was not decoded");
+			
+			return img;
+		}
+		
+		return trans == 1.0
+			? loadFrame(dir, fileNumber)
+			: loadFrame(dir, fileNumber, trans);
+	}
+	
 	public List<RNode> getOffsetNodes(RNode activityNode) throws FileFormatException
 	{
 		String offsetGroupName = activityNode.getAttribute("useOffsets", null);
@@ -600,7 +876,7 @@ class SpriteSetXMLLoader
 				offsetFrameGroup.getNodes("OffsetFrame")
 			);
 		}
-
+		
 		for (RNode offsetFrameGroup : rootNode.getNodes("DirectionOffsetFrames"))
 		{
 			offsetFrameMap.put(
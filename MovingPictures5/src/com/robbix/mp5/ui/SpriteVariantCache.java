@@ -0,0 +1,242 @@
+package com.robbix.mp5.ui;
+
+import java.awt.Color;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.robbix.utils.RImage;
+
+/**
+ * Copies of sprite images with a transform applied - faded, grayed,
+ * masked to a shadow or recolored - kept so they are made once instead
+ * of every time they are drawn. Fade levels are rounded to one of
+ * FADE_LEVELS steps so nearby alphas share a copy.
+ *
+ * Copies are keyed on the identity of the source image and evicted
+ * least-recently-used past the memory budget. Hits, misses and evictions
+ * are counted for tuning the budget.
+ */
+public class SpriteVariantCache
+{
+	public static final long DEFAULT_BUDGET = 16L << 20;
+	
+	public static final int FADE_LEVELS = 32;
+	
+	private static SpriteVariantCache instance = new SpriteVariantCache(DEFAULT_BUDGET);
+	
+	public static SpriteVariantCache getInstance()
+	{
+		return instance;
+	}
+	
+	public static enum Transform
+	{
+		FADED,
+		GRAYED,
+		SHADOW,
+		RECOLORED;
+	}
+	
+	private static class Key
+	{
+		public final RImage source;
+		public final Transform transform;
+		public final int arg0;
+		public final int arg1;
+		
+		public Key(RImage source, Transform transform, int arg0, int arg1)
+		{
+			this.source = source;
+			this.transform = transform;
+			this.arg0 = arg0;
+			this.arg1 = arg1;
+		}
+		
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+				return false;
+			
+			Key key = (Key) obj;
+			return key.source    == source
+				&& key.transform == transform
+				&& key.arg0      == arg0
+				&& key.arg1      == arg1;
+		}
+		
+		public int hashCode()
+		{
+			int hash = System.identityHashCode(source);
+			hash = hash * 31 + transform.ordinal();
+			hash = hash * 31 + arg0;
+			hash = hash * 31 + arg1;
+			return hash;
+		}
+	}
+	
+	private static final Color SHADOW = new Color(0, 0, 0, 127);
+	
+	private LinkedHashMap<Key, RImage> images;
+	private long budget;
+	private long usedBytes;
+	
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	public SpriteVariantCache(long budget)
+	{
+		if (budget <= 0)
+			throw new IllegalArgumentException("budget must be positive");
+		
+		this.budget = budget;
+		this.images = new LinkedHashMap<Key, RImage>(256, 0.75f, true);
+	}
+	
+	/**
+	 * Gets the source faded to the given alpha, rounded to the nearest
+	 * of FADE_LEVELS steps.
+	 */
+	public RImage getFaded(RImage source, double alpha)
+	{
+		int level = (int) Math.round(Math.max(0, Math.min(1, alpha)) * FADE_LEVELS);
+		
+		if (level == FADE_LEVELS)
+			return source;
+		
+		return get(new Key(source, Transform.FADED, level, 0));
+	}
+	
+	public RImage getGrayed(RImage source)
+	{
+		return get(new Key(source, Transform.GRAYED, 0, 0));
+	}
+	
+	/**
+	 * Gets the source masked to a translucent black silhouette.
+	 */
+	public RImage getShadow(RImage source)
+	{
+		return get(new Key(source, Transform.SHADOW, 0, 0));
+	}
+	
+	public RImage getRecolored(RImage source, Color startColor, Color endColor)
+	{
+		if (startColor.equals(endColor))
+			return source;
+		
+		return get(new Key(source, Transform.RECOLORED, startColor.getRGB(), endColor.getRGB()));
+	}
+	
+	private synchronized RImage get(Key key)
+	{
+		RImage image = images.get(key);
+		
+		if (image != null)
+		{
+			hits++;
+			return image;
+		}
+		
+		misses++;
+		image = make(key);
+		images.put(key, image);
+		usedBytes += getBytes(image);
+		trim(key);
+		return image;
+	}
+	
+	private static RImage make(Key key)
+	{
+		switch (key.transform)
+		{
+		case FADED:
+			return key.source.getFadedCopy(key.arg0 / (double) FADE_LEVELS);
+		case GRAYED:
+			return key.source.getGrayedCopy();
+		case SHADOW:
+			return key.source.getMaskedCopy(SHADOW);
+		case RECOLORED:
+			return key.source.getRecoloredView(
+				new Color(key.arg0, true),
+				new Color(key.arg1, true)
+			);
+		}
+		
+		throw new IllegalArgumentException("invalid transform " + key.transform);
+	}
+	
+	public synchronized void clear()
+	{
+		images.clear();
+		usedBytes = 0;
+	}
+	
+	public synchronized int getImageCount()
+	{
+		return images.size();
+	}
+	
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+	
+	public long getBudget()
+	{
+		return budget;
+	}
+	
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+	
+	public synchronized String toString()
+	{
+		return String.format(
+			"SpriteVariantCache[%d images, %d/%d KB, %d hits, %d misses, %d evictions]",
+			images.size(), usedBytes >> 10, budget >> 10, hits, misses, evictions
+		);
+	}
+	
+	private void trim(Key keep)
+	{
+		Iterator<Map.Entry<Key, RImage>> itr = images.entrySet().iterator();
+		
+		while (usedBytes > budget && itr.hasNext())
+		{
+			Map.Entry<Key, RImage> eldest = itr.next();
+			
+			if (eldest.getKey().equals(keep))
+				continue;
+			
+			usedBytes -= getBytes(eldest.getValue());
+			itr.remove();
+			evictions++;
+		}
+	}
+	
+	/**
+	 * Recolored indexed images share the source's pixels, so only their
+	 * palettes are counted.
+	 */
+	private static long getBytes(RImage img)
+	{
+		if (img.isIndexed())
+			return 4L * img.getPalette().getMapSize();
+		
+		return 4L * img.getWidth() * img.getHeight();
+	}
+}
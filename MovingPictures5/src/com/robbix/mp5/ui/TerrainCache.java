@@ -0,0 +1,173 @@
+package com.robbix.mp5.ui;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import com.robbix.utils.Region;
+
+/**
+ * Pre-rendered terrain, split into square chunks of tiles and kept per zoom
+ * level. Chunks are evicted least-recently-used once the total size of
+ * their images goes over the memory budget, and are invalidated one by one
+ * as the map changes under them.
+ *
+ * Chunks are CHUNK_PIXELS across on screen, which is 16 tiles at normal
+ * zoom - fewer when zoomed in and more when zoomed out.
+ */
+public class TerrainCache
+{
+	public static final int CHUNK_PIXELS = 512;
+	
+	public static final long DEFAULT_BUDGET = 48L << 20;
+	
+	/**
+	 * Gets the number of tiles along one side of a chunk at the given
+	 * tile size.
+	 */
+	public static int getChunkSpan(int tileSize)
+	{
+		return Math.max(1, CHUNK_PIXELS / tileSize);
+	}
+	
+	private static class Chunk
+	{
+		public final BufferedImage image;
+		public final Region region;
+		public final long bytes;
+		
+		public Chunk(BufferedImage image, Region region)
+		{
+			this.image = image;
+			this.region = region;
+			this.bytes = 4L * image.getWidth() * image.getHeight();
+		}
+	}
+	
+	private LinkedHashMap<Long, Chunk> chunks;
+	private long budget;
+	private long usedBytes;
+	private int generation;
+	
+	public TerrainCache()
+	{
+		this(DEFAULT_BUDGET);
+	}
+	
+	public TerrainCache(long budget)
+	{
+		if (budget <= 0)
+			throw new IllegalArgumentException("budget must be positive");
+		
+		this.budget = budget;
+		this.chunks = new LinkedHashMap<Long, Chunk>(64, 0.75f, true);
+	}
+	
+	/**
+	 * Gets the cached image for the chunk at (cx, cy), or null if it
+	 * has to be rendered.
+	 */
+	public synchronized BufferedImage get(int scale, boolean costMap, int cx, int cy)
+	{
+		Chunk chunk = chunks.get(getKey(scale, costMap, cx, cy));
+		return chunk == null ? null : chunk.image;
+	}
+	
+	/**
+	 * Gets a number that changes every time chunks are invalidated. A chunk
+	 * rendered while this changed may be stale, and put() will drop it.
+	 */
+	public synchronized int getGeneration()
+	{
+		return generation;
+	}
+	
+	/**
+	 * Caches the image for the chunk at (cx, cy), covering the given
+	 * region of tiles, unless chunks were invalidated since generation
+	 * was read.
+	 */
+	public synchronized void put(
+		int scale,
+		boolean costMap,
+		int cx,
+		int cy,
+		Region region,
+		BufferedImage image,
+		int generation)
+	{
+		if (generation != this.generation)
+			return;
+		
+		Chunk chunk = new Chunk(image, region);
+		Chunk old = chunks.put(getKey(scale, costMap, cx, cy), chunk);
+		
+		if (old != null)
+			usedBytes -= old.bytes;
+		
+		usedBytes += chunk.bytes;
+		
+		Iterator<Chunk> itr = chunks.values().iterator();
+		
+		while (usedBytes > budget && itr.hasNext())
+		{
+			Chunk eldest = itr.next();
+			
+			if (eldest == chunk)
+				break;
+			
+			usedBytes -= eldest.bytes;
+			itr.remove();
+		}
+	}
+	
+	/**
+	 * Drops every chunk, at every zoom level, that overlaps the region.
+	 */
+	public synchronized void invalidate(Region region)
+	{
+		generation++;
+		Iterator<Chunk> itr = chunks.values().iterator();
+		
+		while (itr.hasNext())
+		{
+			Chunk chunk = itr.next();
+			
+			if (chunk.region.intersects(region))
+			{
+				usedBytes -= chunk.bytes;
+				itr.remove();
+			}
+		}
+	}
+	
+	public synchronized void clear()
+	{
+		generation++;
+		chunks.clear();
+		usedBytes = 0;
+	}
+	
+	public synchronized int getChunkCount()
+	{
+		return chunks.size();
+	}
+	
+	public synchronized long getUsedBytes()
+	{
+		return usedBytes;
+	}
+	
+	public long getBudget()
+	{
+		return budget;
+	}
+	
+	private static Long getKey(int scale, boolean costMap, int cx, int cy)
+	{
+		return ((long) (scale & 0xff) << 48)
+			 | (costMap ? 1L << 47 : 0L)
+			 | ((long) (cy & 0xfffff) << 20)
+			 | (cx & 0xfffff);
+	}
+}
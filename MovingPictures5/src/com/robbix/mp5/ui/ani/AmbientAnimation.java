@@ -1,20 +1,18 @@
 package com.robbix.mp5.ui.ani;
 
-import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
-import com.robbix.mp5.Game;
 import com.robbix.mp5.ui.DisplayPanel;
 import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.SpriteLibrary;
-import com.robbix.mp5.unit.Unit;
-import com.robbix.utils.Position;
 
 public abstract class AmbientAnimation
 {
 	protected DisplayPanel panel;
 	protected SpriteLibrary lib;
 	
+	private boolean boundsChanged;
+	
 	public AmbientAnimation(SpriteLibrary lib)
 	{
 		this.lib = lib;
@@ -36,53 +34,73 @@ public abstract class AmbientAnimation
     public abstract Rectangle2D getBounds();
 
     /**
-     * Graphics object is translated to the bounding rectangle
+     * Called by subclasses whose bounds change as they step. Bounds are
+     * otherwise taken to stay as they were when the animation was cued.
      */
-    public abstract void paint(DisplayGraphics g);
-    
-    public abstract void step();
+    protected void boundsChanged()
+    {
+        boundsChanged = true;
+    }
     
     /**
-     * Returns true if this animation is done - it is no longer
-     * rendering anything and no longer will
+     * Returns true if the bounds changed since the last call.
      */
-    public abstract boolean isDone();
-    
-    protected Point2D add(Point2D p1, Point2D p2)
+    public boolean takeBoundsChanged()
     {
-    	return new Point2D.Double(p1.getX() + p2.getX(), p1.getY() + p2.getY());
+        boolean changed = boundsChanged;
+        boundsChanged = false;
+        return changed;
     }
+
+    /**
+     * Copies whatever paint(g, state) needs, so the animation can be
+     * painted from a RenderSnapshot while it carries on stepping. The
+     * state this returned last time for the same slot in the snapshot is
+     * passed back in to be refilled, and may be of another animation's
+     * type.
+     */
+    public abstract Object capture(Object reuse);
     
-    protected void playSoundLater(final String sound, final Position pos)
-    {
-    	Game.game.doLater(new Runnable()
-    	{
-    		public void run()
-    		{
-    			Game.game.playSound(sound, pos);
-    		}
-    	});
-    }
+    /**
+     * Paints from the state returned by capture().
+     */
+    public abstract void paint(DisplayGraphics g, Object state);
     
-    protected void doSplashDamageLater(final Position pos, final double amount, final double range)
+    /**
+     * Paints from live state, by capturing it first.
+     */
+    public void paint(DisplayGraphics g)
     {
-    	Game.game.doLater(new Runnable()
-    	{
-    		public void run()
-    		{
-    			Game.game.doSplashDamage(pos, amount, range);
-    		}
-    	});
+        paint(g, capture(null));
     }
     
-    protected void doDamageLater(final Unit attacker, final Unit target, final double amount)
+    public abstract void step();
+    
+    /**
+     * Returns true if this animation is done - it is no longer
+     * rendering anything and no longer will
+     */
+    public abstract boolean isDone();
+    
+    /**
+     * The state of animations that only need the frame they were on.
+     */
+    protected static class FrameState
     {
-    	Game.game.doLater(new Runnable()
-    	{
-    		public void run()
-    		{
-    			Game.game.doDamage(attacker, target, amount);
-    		}
-    	});
+        public int frame;
+        
+        /**
+         * Gets the given state to refill if it is a FrameState, or a new
+         * one, set to the given frame either way.
+         */
+        public static FrameState reuse(Object reuse, int frame)
+        {
+            FrameState state = reuse instanceof FrameState
+                ? (FrameState) reuse
+                : new FrameState();
+            
+            state.frame = frame;
+            return state;
+        }
     }
 }
@@ -2,32 +2,51 @@ package com.robbix.mp5.ui.ani;
 
 import java.awt.Color;
 import java.awt.Stroke;
+import java.awt.geom.Point2D;
 
 import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.SpriteLibrary;
-import com.robbix.mp5.unit.Unit;
+import com.robbix.mp5.unit.ProjectileSet;
 
 public abstract class BeamAnimation extends WeaponAnimation
 {
 	private int frame = 0;
 	private final int frameLength = 20;
 	
-	private String soundBite;
-	private double damage;
+	public BeamAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
+	{
+		super(lib, projectiles, projectile);
+	}
+	
+	/**
+	 * The frame a beam was on and where its ends were, as they follow
+	 * the attacker and target.
+	 */
+	private static class BeamState extends FrameState
+	{
+		public final Point2D.Double origin = new Point2D.Double();
+		public final Point2D.Double impact = new Point2D.Double();
+	}
 	
-	public BeamAnimation(SpriteLibrary lib, Unit attacker, Unit target, String soundBite, double damage)
+	public Object capture(Object reuse)
 	{
-		super(lib, attacker, target);
-		this.soundBite = soundBite;
-		this.damage = damage;
+		BeamState state = reuse instanceof BeamState
+			? (BeamState) reuse
+			: new BeamState();
+		
+		state.frame = frame;
+		state.origin.setLocation(getTrackedFireOrigin());
+		state.impact.setLocation(getTrackedFireImpact());
+		return state;
 	}
 	
-	public void paint(DisplayGraphics g)
+	public void paint(DisplayGraphics g, Object state)
 	{
-		g.setColor(getColor(frame));
+		BeamState beam = (BeamState) state;
+		g.setColor(getColor(beam.frame));
 		Stroke oldStroke = g.getStroke();
-		g.setStroke(getStroke(frame, panel.getScale()));
-		g.drawLine(getTrackedFireOrigin(), getTrackedFireImpact());
+		g.setStroke(getStroke(beam.frame, panel.getScale()));
+		g.drawLine(beam.origin, beam.impact);
 		g.setStroke(oldStroke);
 	}
 	
@@ -37,23 +56,8 @@ public abstract class BeamAnimation extends WeaponAnimation
 	
 	public void step()
 	{
-		if (frame == 0)
-		{
-			playSoundLater(soundBite, getAttacker().getPosition());
-		}
-		
-		if (atHotPoint())
-		{
-			doDamageLater(getAttacker(), getTarget(), damage);
-		}
-		
 		frame++;
 	}
-	
-	public boolean atHotPoint()
-	{
-		return frame == frameLength / 2;
-	}
 
 	public boolean isDone()
 	{
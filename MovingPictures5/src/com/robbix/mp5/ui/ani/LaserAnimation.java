@@ -5,7 +5,7 @@ import java.awt.Color;
 import java.awt.Stroke;
 
 import com.robbix.mp5.ui.SpriteLibrary;
-import com.robbix.mp5.unit.Unit;
+import com.robbix.mp5.unit.ProjectileSet;
 
 public class LaserAnimation extends BeamAnimation
 {
@@ -31,8 +31,8 @@ public class LaserAnimation extends BeamAnimation
 		throw new IllegalArgumentException("Invalid frame " + frame);
 	}
 	
-	public LaserAnimation(SpriteLibrary lib, Unit attacker, Unit target)
+	public LaserAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
 	{
-		super(lib, attacker, target, "laser", attacker.getType().getDamage());
+		super(lib, projectiles, projectile);
 	}
 }
@@ -7,7 +7,7 @@ import java.awt.Color;
 import java.awt.Stroke;
 
 import com.robbix.mp5.ui.SpriteLibrary;
-import com.robbix.mp5.unit.Unit;
+import com.robbix.mp5.unit.ProjectileSet;
 
 public class MicrowaveAnimation extends BeamAnimation
 {
@@ -28,8 +28,8 @@ public class MicrowaveAnimation extends BeamAnimation
 		return new Color(224, 224, 224);
 	}
 	
-	public MicrowaveAnimation(SpriteLibrary lib, Unit attacker, Unit target)
+	public MicrowaveAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
 	{
-		super(lib, attacker, target, "microwave", attacker.getType().getDamage());
+		super(lib, projectiles, projectile);
 	}
 }
@@ -0,0 +1,313 @@
+package com.robbix.mp5.ui.ani;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+import com.robbix.mp5.ui.DisplayGraphics;
+import com.robbix.mp5.ui.SpriteGroup;
+import com.robbix.mp5.ui.SpriteLibrary;
+import com.robbix.mp5.ui.SpriteSet;
+
+/**
+ * Short-lived effects that play a fixed run of frames in one place -
+ * smoke puffs, smoke rings and acid clouds - shared by every animation on
+ * a DisplayPanel.
+ *
+ * Each type of particle has a fixed-size ring of slots, kept as parallel
+ * arrays of position and birth time, so spawning doesn't allocate and a
+ * frame's work is bounded by the ring sizes. When a ring is full the
+ * oldest particle is dropped to make room. Particles are stepped and drawn
+ * a type at a time, so each pass looks up its sprites once.
+ *
+ * Each frame, the spot of every particle that is playing, or stopped, is
+ * kept as damage, so the panel repaints just those spots. The spots are
+ * kept in arrays that are reused from frame to frame, like the rings.
+ */
+public class ParticleSystem
+{
+	/**
+	 * How far a particle's area reaches from its center, in absolute
+	 * units.
+	 */
+	public static final double RADIUS = 1;
+	
+	private static final int INITIAL_DAMAGE_CAPACITY = 256;
+	
+	public static enum Type
+	{
+		SMOKE_PUFF_1(1024, "aRocket",    "smokePuff1"),
+		SMOKE_PUFF_2(1024, "aRocket",    "smokePuff2"),
+		SMOKE_PUFF_3(1024, "aRocket",    "smokePuff3"),
+		SMOKE_RING  (512,  "aRocket",    "smokeRing1", "smokeRing2", "smokeRing3"),
+		ACID_CLOUD  (32,   "aAcidCloud", "cloud1", "cloud2", "cloud2", "cloud3");
+		
+		public final int capacity;
+		public final String module;
+		
+		/**
+		 * The sprite groups played one after another over the particle's
+		 * life.
+		 */
+		private final String[] groups;
+		
+		private Type(int capacity, String module, String... groups)
+		{
+			this.capacity = capacity;
+			this.module = module;
+			this.groups = groups;
+		}
+		
+		/**
+		 * Gets one of the three smoke puffs, numbered from 1.
+		 */
+		public static Type getSmokePuff(int puffNumber)
+		{
+			switch (puffNumber)
+			{
+			case 1: return SMOKE_PUFF_1;
+			case 2: return SMOKE_PUFF_2;
+			case 3: return SMOKE_PUFF_3;
+			}
+			
+			throw new IllegalArgumentException("Invalid puff " + puffNumber);
+		}
+	}
+	
+	/**
+	 * The particles of one type, oldest at tail.
+	 */
+	private static class Pool
+	{
+		public final Type type;
+		public final double[] xs;
+		public final double[] ys;
+		public final int[] births;
+		public int tail;
+		public int count;
+		
+		/**
+		 * The sprite set the groups were taken from, and the length of the
+		 * particles' lives in frames. The duration is 0 while the set is
+		 * still loading.
+		 */
+		public SpriteSet set;
+		public SpriteGroup[] groups;
+		public int duration;
+		
+		public Pool(Type type)
+		{
+			this.type = type;
+			this.xs = new double[type.capacity];
+			this.ys = new double[type.capacity];
+			this.births = new int[type.capacity];
+		}
+	}
+	
+	private SpriteLibrary lib;
+	private Pool[] pools;
+	private int clock;
+	
+	private double[] damageXs = new double[INITIAL_DAMAGE_CAPACITY];
+	private double[] damageYs = new double[INITIAL_DAMAGE_CAPACITY];
+	private int damageCount;
+	
+	private double[] droppedXs = new double[INITIAL_DAMAGE_CAPACITY];
+	private double[] droppedYs = new double[INITIAL_DAMAGE_CAPACITY];
+	private int droppedCount;
+	
+	public ParticleSystem(SpriteLibrary lib)
+	{
+		this.lib = lib;
+		
+		Type[] types = Type.values();
+		pools = new Pool[types.length];
+		
+		for (Type type : types)
+			pools[type.ordinal()] = new Pool(type);
+	}
+	
+	/**
+	 * Adds a particle centered on the given absolute point. It starts
+	 * playing after the given number of frames.
+	 */
+	public synchronized void spawn(Type type, double x, double y, int delay)
+	{
+		Pool pool = pools[type.ordinal()];
+		int capacity = type.capacity;
+		
+		if (pool.count == capacity)
+		{
+			if (clock >= pool.births[pool.tail])
+				addDropped(pool.xs[pool.tail], pool.ys[pool.tail]);
+			
+			pool.tail = (pool.tail + 1) % capacity;
+			pool.count--;
+		}
+		
+		int slot = (pool.tail + pool.count) % capacity;
+		pool.xs[slot] = x;
+		pool.ys[slot] = y;
+		pool.births[slot] = clock + delay;
+		pool.count++;
+	}
+	
+	/**
+	 * Advances every particle by a frame, drops the ones that have
+	 * finished from the back of each ring, and notes the damage for the
+	 * frame. Particles whose sprites are still loading are kept until
+	 * they can play. Called by the DisplayPanel once per frame.
+	 */
+	public synchronized void step()
+	{
+		clock++;
+		damageCount = 0;
+		
+		for (int i = 0; i < droppedCount; ++i)
+			addDamage(droppedXs[i], droppedYs[i]);
+		
+		droppedCount = 0;
+		
+		for (Pool pool : pools)
+		{
+			if (pool.count == 0)
+				continue;
+			
+			int duration = getDuration(pool);
+			int capacity = pool.type.capacity;
+			
+			// Held back until their sprites are loaded, so they play in full
+			if (duration == 0)
+			{
+				for (int i = 0, slot = pool.tail; i < pool.count; ++i, slot = (slot + 1) % capacity)
+					pool.births[slot]++;
+				
+				continue;
+			}
+			
+			while (pool.count > 0 && clock - pool.births[pool.tail] >= duration)
+			{
+				// Covers the last frame it was drawn on
+				addDamage(pool.xs[pool.tail], pool.ys[pool.tail]);
+				pool.tail = (pool.tail + 1) % capacity;
+				pool.count--;
+			}
+			
+			for (int i = 0, slot = pool.tail; i < pool.count; ++i, slot = (slot + 1) % capacity)
+				if (clock >= pool.births[slot])
+					addDamage(pool.xs[slot], pool.ys[slot]);
+		}
+	}
+	
+	/**
+	 * Gets the number of particles that were drawn last frame or are to
+	 * be drawn this frame. Each one's area reaches RADIUS from the center
+	 * given by getDamageX() and getDamageY(). Hold this system's lock
+	 * while reading them.
+	 */
+	public synchronized int getDamageCount()
+	{
+		return damageCount;
+	}
+	
+	public synchronized double getDamageX(int i)
+	{
+		return damageXs[i];
+	}
+	
+	public synchronized double getDamageY(int i)
+	{
+		return damageYs[i];
+	}
+	
+	/**
+	 * Draws every particle that is playing and within the given area.
+	 */
+	public synchronized void paint(DisplayGraphics g, Rectangle2D area)
+	{
+		for (Pool pool : pools)
+		{
+			if (pool.count == 0)
+				continue;
+			
+			int duration = getDuration(pool);
+			int capacity = pool.type.capacity;
+			SpriteGroup[] groups = pool.groups;
+			
+			for (int i = 0, slot = pool.tail; i < pool.count; ++i, slot = (slot + 1) % capacity)
+			{
+				int age = clock - pool.births[slot];
+				double x = pool.xs[slot];
+				double y = pool.ys[slot];
+				
+				if (age < 0 || age >= duration)
+					continue;
+				
+				if (x < area.getMinX() - 1 || x > area.getMaxX() + 1
+				 || y < area.getMinY() - 1 || y > area.getMaxY() + 1)
+					continue;
+				
+				int group = 0;
+				
+				while (age >= groups[group].getFrameCount())
+					age -= groups[group++].getFrameCount();
+				
+				g.draw(groups[group].getFrame(age), x, y);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the length of the pool's particles' lives, looking its sprites
+	 * up again if the set has been loaded or reloaded since. Returns 0 if
+	 * the set is still loading.
+	 */
+	private int getDuration(Pool pool)
+	{
+		SpriteSet set = lib.getAmbientSpriteSet(pool.type.module);
+		
+		if (set == pool.set)
+			return pool.duration;
+		
+		pool.set = set;
+		pool.duration = 0;
+		
+		if (set == SpriteSet.BLANK)
+			return 0;
+		
+		pool.groups = new SpriteGroup[pool.type.groups.length];
+		
+		for (int i = 0; i < pool.groups.length; ++i)
+		{
+			pool.groups[i] = set.get(pool.type.groups[i]);
+			pool.duration += pool.groups[i].getFrameCount();
+		}
+		
+		return pool.duration;
+	}
+	
+	private void addDamage(double x, double y)
+	{
+		if (damageCount == damageXs.length)
+		{
+			damageXs = Arrays.copyOf(damageXs, damageCount * 2);
+			damageYs = Arrays.copyOf(damageYs, damageCount * 2);
+		}
+		
+		damageXs[damageCount] = x;
+		damageYs[damageCount] = y;
+		damageCount++;
+	}
+	
+	private void addDropped(double x, double y)
+	{
+		if (droppedCount == droppedXs.length)
+		{
+			droppedXs = Arrays.copyOf(droppedXs, droppedCount * 2);
+			droppedYs = Arrays.copyOf(droppedYs, droppedCount * 2);
+		}
+		
+		droppedXs[droppedCount] = x;
+		droppedYs[droppedCount] = y;
+		droppedCount++;
+	}
+}
@@ -9,7 +9,6 @@ import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.Sprite;
 import com.robbix.mp5.ui.SpriteGroup;
-import com.robbix.utils.RColor;
 
 public class SpriteGroupAnimation extends AmbientAnimation
 {
@@ -45,12 +44,20 @@ public class SpriteGroupAnimation extends AmbientAnimation
 	public void step()
 	{
 		frame++;
+		
+		if (!isDone() && sprites.getFrame(frame) != sprites.getFrame(frame - 1))
+			boundsChanged();
+	}
+	
+	public Object capture(Object reuse)
+	{
+		return FrameState.reuse(reuse, frame);
 	}
 	
-	public void paint(DisplayGraphics g)
+	public void paint(DisplayGraphics g, Object state)
 	{
-		RColor color = player != null ? player.getColor() : null;
-		g.draw(sprites.getFrame(frame), point, color);
+		int frame = ((FrameState) state).frame;
+		g.draw(sprites.getFrame(frame), point, player);
 	}
 	
 	public boolean isDone()
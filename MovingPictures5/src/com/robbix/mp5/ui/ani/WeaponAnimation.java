@@ -7,40 +7,62 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
 import com.robbix.mp5.ui.SpriteLibrary;
+import com.robbix.mp5.unit.ProjectileSet;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Direction;
+import com.robbix.utils.Position;
 import com.robbix.utils.Utils;
 
+/**
+ * Shows a shot from a ProjectileSet. The shot's flight is copied when the
+ * animation is made, and damage is left entirely to the ProjectileSet, so
+ * any number of displays can show the same shot. The shot is drawn from
+ * the turret's muzzle rather than where the ProjectileSet fired it from.
+ */
 public abstract class WeaponAnimation extends AmbientAnimation
 {
+	/**
+	 * Creates the firing animation for one kind of weapon.
+	 */
+	public static interface Factory
+	{
+		public WeaponAnimation newAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile);
+	}
+	
 	private Unit attacker;
 	private Unit target;
 	private Point2D attackerStart;
 	private Point2D targetStart;
 	private Point2D origin;
 	private Point2D impact;
+	private Position targetPos;
+	private int flightFrames;
+	private Direction dir;
 	private Rectangle2D bounds;
 	
-	public WeaponAnimation(SpriteLibrary lib, Unit attacker, Unit target)
+	public WeaponAnimation(SpriteLibrary lib, ProjectileSet projectiles, long projectile)
 	{
 		super(lib);
 		
-		this.attacker = attacker;
-		this.target = target;
+		attacker = projectiles.getAttacker(projectile);
+		target = projectiles.getTarget(projectile);
 		
 		attackerStart = attacker.getAbsPoint();
 		targetStart = target.getAbsPoint();
 		
-		Direction dir = Direction.getDirection(attacker.getPosition(), target.getPosition());
-		origin = add(attacker.getAbsPoint(), lib.getHotspot(attacker.getType(), dir));
+		impact = projectiles.getImpact(projectile);
+		targetPos = projectiles.getTargetPosition(projectile);
+		flightFrames = projectiles.getFlightFrames(projectile);
+		dir = Direction.getDirection(attacker.getPosition(), targetPos);
 		
-		double w = target.getWidth();
-		double h = target.getHeight();
-		Point2D impactOffset = new Point2D.Double(
-			w / 2.0 + Utils.randFloat(-w / 8.0, w / 8.0),
-			h / 2.0 + Utils.randFloat(-h / 8.0, h / 8.0)
-		);
-		impact = add(target.getAbsPoint(), impactOffset);
+		Point2D hotspot = lib == null ? null : lib.getHotspot(attacker.getType(), dir);
+		
+		origin = hotspot == null
+			? projectiles.getOrigin(projectile)
+			: new Point2D.Double(
+				attackerStart.getX() + hotspot.getX(),
+				attackerStart.getY() + hotspot.getY()
+			);
 		
 		bounds = new Rectangle2D.Double(
 			min(origin.getX(), impact.getX()),
@@ -70,6 +92,90 @@ public abstract class WeaponAnimation extends AmbientAnimation
 		return impact;
 	}
 	
+	/**
+	 * Gets the position the shot was aimed at.
+	 */
+	public Position getTargetPosition()
+	{
+		return targetPos;
+	}
+	
+	public Direction getFireDirection()
+	{
+		return dir;
+	}
+	
+	/**
+	 * Gets the number of frames between firing and impact.
+	 */
+	public int getFlightFrames()
+	{
+		return flightFrames;
+	}
+	
+	/**
+	 * Gets the point the shot has reached the given number of frames
+	 * after firing.
+	 */
+	public Point2D getFlightPoint(int frame)
+	{
+		double progress = Math.min(frame, flightFrames) / (double) flightFrames;
+		return new Point2D.Double(
+			origin.getX() + (impact.getX() - origin.getX()) * progress,
+			origin.getY() + (impact.getY() - origin.getY()) * progress
+		);
+	}
+	
+	/**
+	 * Puffs a cloud of smoke around the muzzle, as rockets do on launch.
+	 */
+	protected void spawnLaunchSmoke()
+	{
+		ParticleSystem particles = panel.getParticles();
+		double angle = Math.atan2(
+			origin.getY() - impact.getY(),
+			origin.getX() - impact.getX()
+		);
+		
+		for (int p = 0; p < 12; ++p)
+		{
+			double spreadAngle = Utils.randFloat(0, 2 * Math.PI);
+			double x = origin.getX();
+			double y = origin.getY();
+			x += Utils.randFloat(-0.25, 0.25);
+			y += Utils.randFloat(-0.25, 0.25);
+			x += Math.cos(angle) * -0.5;
+			y += Math.sin(angle) * -0.5;
+			x += Math.cos(spreadAngle) * (p / 24.0);
+			y += Math.sin(spreadAngle) * (p / 24.0);
+			particles.spawn(
+				ParticleSystem.Type.getSmokePuff(Utils.randInt(1, 3)),
+				x, y,
+				Utils.randInt(0, 12)
+			);
+		}
+	}
+	
+	/**
+	 * Leaves a particle where the shot is the given number of frames
+	 * after firing.
+	 */
+	protected void spawnTrail(ParticleSystem.Type type, int frame)
+	{
+		double progress = Math.min(frame, flightFrames) / (double) flightFrames;
+		panel.getParticles().spawn(
+			type,
+			origin.getX() + (impact.getX() - origin.getX()) * progress,
+			origin.getY() + (impact.getY() - origin.getY()) * progress,
+			0
+		);
+	}
+	
+	protected void spawnTrailPuff(int frame)
+	{
+		spawnTrail(ParticleSystem.Type.getSmokePuff(Utils.randInt(1, 3)), frame);
+	}
+	
 	public Point2D getTrackedFireOrigin()
 	{
 		Point2D attackerCurrent = attacker.getAbsPoint();
@@ -92,9 +198,4 @@ public abstract class WeaponAnimation extends AmbientAnimation
 	{
 		return bounds;
 	}
-	
-	/**
-	 * Returns true if the animation is at the frame where damage would be done.
-	 */
-	public abstract boolean atHotPoint();
 }
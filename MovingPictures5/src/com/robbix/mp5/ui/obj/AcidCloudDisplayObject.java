@@ -1,9 +1,9 @@
 package com.robbix.mp5.ui.obj;
 
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
 import com.robbix.mp5.Game;
-import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.SpriteGroup;
 import com.robbix.mp5.ui.SpriteLibrary;
 import com.robbix.mp5.ui.SpriteSet;
@@ -32,33 +32,43 @@ public class AcidCloudDisplayObject extends DisplayObject
 		return cloud.isAlive();
 	}
 	
-	public void paint(DisplayGraphics g)
+	public boolean isTransient()
 	{
+		return true;
+	}
+	
+	public Object capture(Object reuse)
+	{
+		SpriteState state = SpriteState.reuse(reuse);
+		
 		if (!isAlive())
-			return;
+			return state;
 		
 		SpriteLibrary lib = panel.getSpriteLibrary();
 		SpriteSet acidSprites = lib.getAmbientSpriteSet("aAcidCloud");
 		int frame = Game.game.getFrame() - cloud.getStartTime();
+		Point2D point = cloud.getAbsPoint();
+		state.point.setLocation(point.getX(), point.getY());
 		
 		if (cloud.isForming())
 		{
 			SpriteGroup group = acidSprites.get("cloud1");
-			g.draw(group.getFrame(frame), cloud.getAbsPoint());
+			state.sprite = group.getFrame(frame);
 		}
 		else if (cloud.isBurning())
 		{
 			SpriteGroup group = acidSprites.get("cloud2");
-			g.draw(group.getFrame(frame % group.getFrameCount()), cloud.getAbsPoint());
-			
+			state.sprite = group.getFrame(frame % group.getFrameCount());
 		}
 		else if (cloud.isFading())
 		{
 			SpriteGroup group = acidSprites.get("cloud3");
 			frame -= cloud.getFormingDuration();
 			frame -= cloud.getBurningDuration();
-			g.draw(group.getFrame(frame), cloud.getAbsPoint());
+			state.sprite = group.getFrame(frame);
 		}
+		
+		return state;
 	}
 	
 	public Rectangle2D getBounds()
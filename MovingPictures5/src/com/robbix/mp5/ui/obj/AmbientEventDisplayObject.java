@@ -5,8 +5,6 @@ import java.awt.geom.Rectangle2D;
 
 import com.robbix.mp5.Game;
 import com.robbix.mp5.event.AmbientEvent;
-import com.robbix.mp5.ui.DisplayGraphics;
-import com.robbix.mp5.ui.Sprite;
 import com.robbix.mp5.ui.SpriteGroup;
 import com.robbix.mp5.ui.SpriteLibrary;
 import com.robbix.mp5.ui.SpriteSet;
@@ -30,23 +28,31 @@ public class AmbientEventDisplayObject extends DisplayObject
 		return frameCount < 0 || frame < frameCount;
 	}
 	
+	public boolean isTransient()
+	{
+		return true;
+	}
+	
 	public DisplayLayer getDisplayLayer()
 	{
 		return DisplayLayer.OVER_UNIT;
 	}
 	
-	public void paint(DisplayGraphics g)
+	public Object capture(Object reuse)
 	{
+		SpriteState state = SpriteState.reuse(reuse);
 		SpriteLibrary lib = panel.getSpriteLibrary();
 		SpriteSet set = lib.getAmbientSpriteSet(event.getType().getName());
 		
 		if (set == SpriteSet.BLANK)
-			return;
+			return state;
 		
 		SpriteGroup group = set.get(event.getArg());
 		int frame = Game.game.getFrame() - event.getTime();
-		Sprite sprite = group.getFrame(frame);
-		g.draw(sprite, event.getPosition());
+		Point2D point = event.getPosition();
+		state.point.setLocation(point.getX(), point.getY());
+		state.sprite = group.getFrame(frame);
+		return state;
 	}
 	
 	public Rectangle2D getBounds()
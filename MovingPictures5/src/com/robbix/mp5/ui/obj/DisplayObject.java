@@ -1,12 +1,21 @@
 package com.robbix.mp5.ui.obj;
 
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
+import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.DisplayPanel;
+import com.robbix.mp5.ui.Sprite;
+import com.robbix.mp5.unit.Unit;
 
 public abstract class DisplayObject
 {
+	/**
+	 * Appearance of objects that always look the same.
+	 */
+	protected static final Object UNCHANGING = new Object();
+	
 	protected DisplayPanel panel;
 	
 	public void setDisplayPanel(DisplayPanel panel)
@@ -23,7 +32,13 @@ public abstract class DisplayObject
 	
 	public abstract boolean isAlive();
 	
-	public abstract void paint(DisplayGraphics g);
+	/**
+	 * Paints from live state, by capturing it first.
+	 */
+	public void paint(DisplayGraphics g)
+	{
+		paint(g, capture(null));
+	}
 	
 	/**
 	 * Bounds should wrap as closely around the phenomena as possible
@@ -31,4 +46,91 @@ public abstract class DisplayObject
 	 * the screen around the edges.
 	 */
 	public abstract Rectangle2D getBounds();
+	
+	/**
+	 * Gets the unit this object follows, if any. The panel only looks at
+	 * the object's bounds and whether it's alive again when the map says
+	 * the unit moved or was removed.
+	 */
+	public Unit getUnit()
+	{
+		return null;
+	}
+	
+	/**
+	 * Whether this object can move or die without the map saying so, as
+	 * timed effects do. The panel looks at these every frame.
+	 */
+	public boolean isTransient()
+	{
+		return false;
+	}
+	
+	/**
+	 * Returns a value that stays equal from one frame to the next as long
+	 * as this object would paint the same way within the same bounds.
+	 * The panel only repaints an object when this or its bounds change.
+	 * 
+	 * The default, null, means the object is repainted every frame.
+	 */
+	public Object getAppearance()
+	{
+		return null;
+	}
+	
+	/**
+	 * Copies whatever paint(g, state) needs from live game state, so the
+	 * object can be painted from a RenderSnapshot while the simulation
+	 * carries on. The state this returned last time for the same slot in
+	 * the snapshot is passed back in to be refilled, and may be of another
+	 * object's type.
+	 */
+	public abstract Object capture(Object reuse);
+	
+	/**
+	 * Paints from the state returned by capture(). The default paints a
+	 * SpriteState.
+	 */
+	public void paint(DisplayGraphics g, Object state)
+	{
+		((SpriteState) state).paint(g);
+	}
+	
+	/**
+	 * What an object that draws up to two sprites at a point looks like
+	 * as of the last capture. The overlay is drawn over the sprite, and
+	 * either may be null.
+	 */
+	protected static class SpriteState
+	{
+		public final Point2D.Double point = new Point2D.Double();
+		public Sprite sprite;
+		public Sprite overlay;
+		public Player owner;
+		
+		/**
+		 * Gets the given state to refill if it is a SpriteState, or a
+		 * new one, emptied either way.
+		 */
+		public static SpriteState reuse(Object reuse)
+		{
+			SpriteState state = reuse instanceof SpriteState
+				? (SpriteState) reuse
+				: new SpriteState();
+			
+			state.sprite = null;
+			state.overlay = null;
+			state.owner = null;
+			return state;
+		}
+		
+		public void paint(DisplayGraphics g)
+		{
+			if (sprite != null)
+				g.draw(sprite, point, owner);
+			
+			if (overlay != null)
+				g.draw(overlay, point, owner);
+		}
+	}
 }
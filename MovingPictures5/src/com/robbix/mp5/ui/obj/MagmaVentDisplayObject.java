@@ -3,8 +3,6 @@ package com.robbix.mp5.ui.obj;
 import java.awt.geom.Rectangle2D;
 
 import com.robbix.mp5.map.Fixture;
-import com.robbix.mp5.ui.DisplayGraphics;
-import com.robbix.mp5.ui.Sprite;
 import com.robbix.mp5.ui.SpriteGroup;
 import com.robbix.mp5.ui.SpriteSet;
 import com.robbix.utils.Position;
@@ -34,14 +32,25 @@ public class MagmaVentDisplayObject extends DisplayObject
 		return new Rectangle2D.Double(pos.x, pos.y, 1, 1);
 	}
 	
-	public void paint(DisplayGraphics g)
+	public Object getAppearance()
 	{
 		SpriteGroup group = panel.getSpriteLibrary().getSpriteGroup(Fixture.MAGMA);
 		
+		if (group == SpriteSet.BLANK_GROUP)
+			return UNCHANGING;
+		
+		return Utils.getTimeBasedIndex(80, group.getFrameCount());
+	}
+	
+	public Object capture(Object reuse)
+	{
+		SpriteState state = SpriteState.reuse(reuse);
+		SpriteGroup group = panel.getSpriteLibrary().getSpriteGroup(Fixture.MAGMA);
+		state.point.setLocation(pos.x, pos.y);
+		
 		if (group != SpriteSet.BLANK_GROUP)
-		{
-			Sprite sprite = group.getFrame(Utils.getTimeBasedIndex(80, group.getFrameCount()));
-			g.draw(sprite, pos);
-		}
+			state.sprite = group.getFrame(Utils.getTimeBasedIndex(80, group.getFrameCount()));
+		
+		return state;
 	}
 }
@@ -4,8 +4,6 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
 import com.robbix.mp5.Game;
-import com.robbix.mp5.ui.DisplayGraphics;
-import com.robbix.mp5.ui.Sprite;
 import com.robbix.mp5.ui.SpriteGroup;
 import com.robbix.mp5.ui.SpriteLibrary;
 import com.robbix.mp5.unit.Meteor;
@@ -36,32 +34,40 @@ public class MeteorDisplayObject extends DisplayObject
 		return meteor.isAlive();
 	}
 	
-	public void paint(DisplayGraphics g)
+	public boolean isTransient()
 	{
+		return true;
+	}
+	
+	public Object capture(Object reuse)
+	{
+		SpriteState state = SpriteState.reuse(reuse);
+		
 		if (!isAlive())
-			return;
+			return state;
 		
 		SpriteLibrary lib = panel.getSpriteLibrary();
 		int frame = Game.game.getFrame() - meteor.getFormationTime();
 		Point2D point = meteor.getAbsPoint();
+		state.point.setLocation(point.getX(), point.getY());
 		
 		if (meteor.isForming())
 		{
 			SpriteGroup group = lib.getAmbientSpriteGroup("aMeteor", "forming");
-			g.draw(group.getFrame(frame), point);
+			state.sprite = group.getFrame(frame);
 		}
 		else if (meteor.isCrashing())
 		{
 			SpriteGroup group  = lib.getAmbientSpriteGroup("aMeteor", "impact");
-			Sprite sprite = group.getFrame(Game.game.getFrame() - meteor.getImpactTime());
-			g.draw(sprite, point);
+			state.sprite = group.getFrame(Game.game.getFrame() - meteor.getImpactTime());
 		}
 		else if (meteor.isFlying())
 		{
 			SpriteGroup group  = lib.getAmbientSpriteGroup("aMeteor", "flying");
-			Sprite sprite = group.getFrame(frame % group.getFrameCount());
-			g.draw(sprite, point);
+			state.sprite = group.getFrame(frame % group.getFrameCount());
 		}
+		
+		return state;
 	}
 	
 	public Rectangle2D getBounds()
@@ -27,7 +27,12 @@ public class MinePlatformDisplayObject extends DisplayObject
 	
 	public boolean isAlive()
 	{
-		return !mine.isFloating() && !mine.isDead();
+		return !mine.isFloating() && !mine.isDead() && !mine.isDismissed();
+	}
+	
+	public Unit getUnit()
+	{
+		return mine;
 	}
 	
 	public Rectangle2D getBounds()
@@ -36,13 +41,21 @@ public class MinePlatformDisplayObject extends DisplayObject
 		return new Rectangle2D.Double(pos.x, pos.y, 1, 1);
 	}
 	
-	public void paint(DisplayGraphics g)
+	public Object getAppearance()
+	{
+		return UNCHANGING;
+	}
+	
+	public Object capture(Object reuse)
 	{
+		SpriteState state = SpriteState.reuse(reuse);
 		Sprite sprite = panel.getSpriteLibrary().getSprite("aMine", "platform");
+		Position pos = mine.getPosition();
+		state.point.setLocation(pos.x, pos.y);
+		
+		if (sprite != SpriteSet.BLANK_SPRITE)
+			state.sprite = sprite;
 		
-		if (sprite != null && sprite != SpriteSet.BLANK_SPRITE)
-		{
-			g.draw(sprite, mine.getPosition());
-		}
+		return state;
 	}
 }
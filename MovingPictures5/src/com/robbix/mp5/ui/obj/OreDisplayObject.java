@@ -1,12 +1,12 @@
 package com.robbix.mp5.ui.obj;
 
 import java.awt.Color;
+import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
 import com.robbix.mp5.map.Ore;
 import com.robbix.mp5.map.ResourceType;
 import com.robbix.mp5.ui.DisplayGraphics;
-import com.robbix.mp5.ui.Sprite;
 import com.robbix.utils.Position;
 
 public class OreDisplayObject extends DisplayObject
@@ -41,22 +41,36 @@ public class OreDisplayObject extends DisplayObject
 		return new Rectangle2D.Double(pos.x, pos.y, 1, 1);
 	}
 	
-	public void paint(DisplayGraphics g)
+	public Object getAppearance()
+	{
+		return res.isSurveyedBy(panel.getCurrentPlayer());
+	}
+	
+	public Object capture(Object reuse)
+	{
+		SpriteState state = SpriteState.reuse(reuse);
+		Position pos = res.getPosition();
+		state.point.setLocation(pos.x, pos.y);
+		state.sprite = res.isSurveyedBy(panel.getCurrentPlayer())
+			? panel.getSpriteLibrary().getSprite(res)
+			: panel.getSpriteLibrary().getUnknownDepositSprite();
+		return state;
+	}
+	
+	public void paint(DisplayGraphics g, Object state)
 	{
 		if (panel.getScale() < -1)
 		{
+			Point2D point = ((SpriteState) state).point;
 			Color color = res.getType() == ResourceType.COMMON_ORE
 				? COMMON_ORE_COLOR
 				: RARE_ORE_COLOR;
 			g.setColor(color);
-			g.fill(res.getPosition());
+			g.fillPosition((int) point.getX(), (int) point.getY());
 		}
 		else
 		{
-			Sprite sprite = res.isSurveyedBy(panel.getCurrentPlayer())
-				? panel.getSpriteLibrary().getSprite(res)
-				: panel.getSpriteLibrary().getUnknownDepositSprite();
-			g.draw(sprite, res.getPosition());
+			super.paint(g, state);
 		}
 	}
 }
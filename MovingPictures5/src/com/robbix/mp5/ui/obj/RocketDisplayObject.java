@@ -2,7 +2,6 @@ package com.robbix.mp5.ui.obj;
 
 import java.awt.geom.Rectangle2D;
 
-import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.unit.Rocket;
 
 public class RocketDisplayObject extends DisplayObject
@@ -19,9 +18,14 @@ public class RocketDisplayObject extends DisplayObject
 		return rocket.isAlive();
 	}
 	
-	public void paint(DisplayGraphics g)
+	public boolean isTransient()
 	{
-		
+		return true;
+	}
+	
+	public Object capture(Object reuse)
+	{
+		return SpriteState.reuse(reuse);
 	}
 	
 	public Rectangle2D getBounds()
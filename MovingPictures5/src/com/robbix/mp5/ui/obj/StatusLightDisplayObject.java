@@ -4,6 +4,8 @@ import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 
 import com.robbix.mp5.ui.DisplayGraphics;
+import com.robbix.mp5.ui.DisplayPanel;
+import com.robbix.mp5.ui.Sprite;
 import com.robbix.mp5.ui.SpriteGroup;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Position;
@@ -25,7 +27,12 @@ public class StatusLightDisplayObject extends DisplayObject
 	
 	public boolean isAlive()
 	{
-		return !unit.isDead() && !unit.isFloating();
+		return !unit.isDead() && !unit.isFloating() && !unit.isDismissed();
+	}
+	
+	public Unit getUnit()
+	{
+		return unit;
 	}
 	
 	public Rectangle2D getBounds()
@@ -39,32 +46,54 @@ public class StatusLightDisplayObject extends DisplayObject
 		);
 	}
 	
-	public void paint(DisplayGraphics g)
+	public Object getAppearance()
+	{
+		Sprite sprite = getStatusSprite(panel, unit);
+		return sprite == null ? UNCHANGING : sprite;
+	}
+	
+	public Object capture(Object reuse)
+	{
+		SpriteState state = SpriteState.reuse(reuse);
+		Position pos = unit.getPosition();
+		state.point.setLocation(pos.x, pos.y);
+		state.sprite = getStatusSprite(panel, unit);
+		return state;
+	}
+	
+	public void paint(DisplayGraphics g, Object state)
 	{
-		if (panel.getScale() < panel.getMinimumShowUnitScale())
-			return;
+		if (panel.getScale() >= panel.getMinimumShowUnitScale())
+			super.paint(g, state);
+	}
+	
+	/**
+	 * Gets the status light sprite currently shown on the given unit,
+	 * or null if it has none.
+	 */
+	public static Sprite getStatusSprite(DisplayPanel panel, Unit unit)
+	{
+		if (!unit.isGuardPost() && !unit.isStructure())
+			return null;
 		
-		if (unit.isGuardPost() || unit.isStructure())
+		if (!panel.getCurrentPlayer().owns(unit))
+			return null;
+		
+		if (unit.isIdle())
 		{
-			if (!panel.getCurrentPlayer().owns(unit))
-				return;
-			
-			Position pos = unit.getPosition();
-			
-			if (unit.isIdle())
-			{
-				g.draw(panel.getSpriteLibrary().getSprite("aStructureStatus", "idle"), pos);
-			}
-			else if (unit.isDisabled())
-			{
-				SpriteGroup seq = panel.getSpriteLibrary().getAmbientSpriteGroup("aStructureStatus", "disabled");
-				int index = Utils.getTimeBasedIndex(100, seq.getSpriteCount());
-				g.draw(seq.getSprite(index), pos);
-			}
-			else if (unit.isStructure())
-			{
-				g.draw(panel.getSpriteLibrary().getSprite("aStructureStatus", "active"), pos);
-			}
+			return panel.getSpriteLibrary().getSprite("aStructureStatus", "idle");
 		}
+		else if (unit.isDisabled())
+		{
+			SpriteGroup seq = panel.getSpriteLibrary().getAmbientSpriteGroup("aStructureStatus", "disabled");
+			int index = Utils.getTimeBasedIndex(100, seq.getSpriteCount());
+			return seq.getSprite(index);
+		}
+		else if (unit.isStructure())
+		{
+			return panel.getSpriteLibrary().getSprite("aStructureStatus", "active");
+		}
+		
+		return null;
 	}
 }
@@ -7,10 +7,10 @@ import java.awt.geom.Rectangle2D;
 
 import com.robbix.mp5.Game;
 import com.robbix.mp5.player.Player;
-import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.SpriteGroup;
 import com.robbix.mp5.ui.SpriteLibrary;
 import com.robbix.mp5.ui.SpriteSet;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.mp5.unit.UnitType;
 
@@ -59,8 +59,17 @@ public class UnitDeathDisplayObject extends DisplayObject
 		return frame < frameCount;
 	}
 	
-	public void paint(DisplayGraphics g)
+	public boolean isTransient()
 	{
+		return true;
+	}
+	
+	public Object capture(Object reuse)
+	{
+		SpriteState state = SpriteState.reuse(reuse);
+		state.point.setLocation(point.getX(), point.getY());
+		state.owner = owner;
+		
 		if (group == null || group == SpriteSet.BLANK_GROUP)
 			group = getGroup();
 		
@@ -72,11 +81,13 @@ public class UnitDeathDisplayObject extends DisplayObject
 				collapseGroup = getCollapseGroup();
 			
 			if (frame < collapseGroup.getFrameCount())
-				g.draw(collapseGroup.getFrame(frame), point, owner.getColor());
+				state.sprite = collapseGroup.getFrame(frame);
 		}
 		
 		if (frame < group.getFrameCount())
-			g.draw(group.getFrame(frame), point, owner.getColor());
+			state.overlay = group.getFrame(frame);
+		
+		return state;
 	}
 	
 	public Rectangle2D getBounds()
@@ -111,11 +122,11 @@ public class UnitDeathDisplayObject extends DisplayObject
 		}
 		else if (selfDestructed)
 		{
-			if (type.is("Starflare"))
+			if (type.has(Capability.STARFLARE))
 			{
 				return lib.getAmbientSpriteGroup("aStarflareExplosion", "explosion");
 			}
-			else if (type.is("Supernova"))
+			else if (type.has(Capability.SUPERNOVA))
 			{
 				return lib.getAmbientSpriteGroup("aSupernovaExplosion", "explosion");
 			}
@@ -124,7 +135,7 @@ public class UnitDeathDisplayObject extends DisplayObject
 				return lib.getAmbientSpriteGroup("aDeath", "vehicleSelfDestruct");
 			}
 		}
-		else if (type.is("Scorpion") || type.is("Spider"))
+		else if (type.has(Capability.ARACHNID))
 		{
 			return lib.getAmbientSpriteGroup("aDeath", "arachnidKilled");
 		}
@@ -1,16 +1,18 @@
 package com.robbix.mp5.ui.obj;
 
+import java.awt.Image;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
 
+import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.Sprite;
-import com.robbix.mp5.ui.SpriteGroup;
+import com.robbix.mp5.ui.SpriteLibrary;
 import com.robbix.mp5.ui.SpriteSet;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Position;
-import com.robbix.utils.RColor;
-import com.robbix.utils.Utils;
+import com.robbix.utils.Region;
 
 public class UnitDisplayObject extends DisplayObject
 {
@@ -31,6 +33,11 @@ public class UnitDisplayObject extends DisplayObject
 		return !unit.isDead() && !unit.isFloating() && !unit.isDismissed();
 	}
 	
+	public Unit getUnit()
+	{
+		return unit;
+	}
+	
 	public Rectangle2D getBounds()
 	{
 		Point2D absPoint = unit.getAbsPoint();
@@ -42,24 +49,91 @@ public class UnitDisplayObject extends DisplayObject
 		);
 	}
 	
-	public void paint(DisplayGraphics g)
+	public Object getAppearance()
+	{
+		SpriteLibrary lib = panel.getSpriteLibrary();
+		Image image = lib.getSprite(unit).getImage(unit.getOwner());
+		
+		if (unit.hasTurret())
+			return Arrays.asList(image, lib.getSprite(unit.getTurret()).getImage(unit.getOwner()));
+		
+		if (unit.isGuardPost() || unit.isStructure())
+			return Arrays.asList(image, StatusLightDisplayObject.getStatusSprite(panel, unit));
+		
+		return image;
+	}
+	
+	/**
+	 * What a unit looks like as of the last capture. Turrets are captured
+	 * along with the unit they are mounted on.
+	 */
+	private static class UnitState
+	{
+		public final Point2D.Double point = new Point2D.Double();
+		public Sprite sprite;
+		public Player owner;
+		public Position position;
+		public Region footprint;
+		public boolean isTurret;
+		public Sprite statusSprite;
+		public UnitState turret;
+	}
+	
+	public Object capture(Object reuse)
+	{
+		UnitState state = reuse instanceof UnitState
+			? (UnitState) reuse
+			: new UnitState();
+		
+		capture(unit, state);
+		return state;
+	}
+	
+	private void capture(Unit unit, UnitState state)
+	{
+		Point2D point = unit.getAbsPoint();
+		state.point.setLocation(point.getX(), point.getY());
+		state.sprite = panel.getSpriteLibrary().getSprite(unit);
+		state.owner = unit.getOwner();
+		state.position = unit.getPosition();
+		state.footprint = unit.getFootprint().getInnerRegion();
+		state.isTurret = unit.isTurret();
+		state.statusSprite = null;
+		
+		if (unit.hasTurret())
+		{
+			if (state.turret == null)
+				state.turret = new UnitState();
+			
+			capture(unit.getTurret(), state.turret);
+		}
+		else
+		{
+			state.turret = null;
+			
+			if (unit.isGuardPost() || unit.isStructure())
+				state.statusSprite = StatusLightDisplayObject.getStatusSprite(panel, unit);
+		}
+	}
+	
+	public void paint(DisplayGraphics g, Object state)
 	{
-		drawUnit(g, unit);
+		drawUnit(g, (UnitState) state);
 	}
 	
-	private void drawUnit(DisplayGraphics g, Unit unit)
+	private void drawUnit(DisplayGraphics g, UnitState unit)
 	{
-		if (!unit.isTurret() && panel.getScale() < panel.getMinimumShowUnitScale())
+		if (!unit.isTurret && panel.getScale() < panel.getMinimumShowUnitScale())
 		{
-			g.setColor(unit.getOwner().getColor());
-			g.fill(unit.getOccupiedBounds());
+			g.setColor(unit.owner.getColor());
+			g.fill(unit.footprint.move(unit.position));
 			return;
 		}
 		
-		Point2D point = unit.getAbsPoint();
-		Sprite sprite = panel.getSpriteLibrary().getSprite(unit);
+		Point2D point = unit.point;
+		Sprite sprite = unit.sprite;
 		
-		if (panel.isShowingShadows() && !unit.isTurret())
+		if (panel.isShowingShadows() && !unit.isTurret)
 		{
 			Point2D shadowOffset = panel.getShadowOffset();
 			double px = point.getX();
@@ -71,11 +145,11 @@ public class UnitDisplayObject extends DisplayObject
 				px + sx + (sprite.getXOffset(panel.getScale()) / scaleFactor),
 				py + sy + (sprite.getYOffset(panel.getScale()) / scaleFactor)
 			);
-			g.drawImage(sprite.getShadow(), shadowPoint);
+			g.drawShadow(sprite, shadowPoint);
 			
-			if (unit.hasTurret())
+			if (unit.turret != null)
 			{
-				Sprite turretSprite = panel.getSpriteLibrary().getSprite(unit.getTurret());
+				Sprite turretSprite = unit.turret.sprite;
 				
 				if (turretSprite != null && turretSprite != SpriteSet.BLANK_SPRITE)
 				{
@@ -83,52 +157,28 @@ public class UnitDisplayObject extends DisplayObject
 						px + sx + (turretSprite.getXOffset(panel.getScale()) / scaleFactor),
 						py + sy + (turretSprite.getYOffset(panel.getScale()) / scaleFactor)
 					);
-					g.drawImage(turretSprite.getShadow(), shadowPoint);
+					g.drawShadow(turretSprite, shadowPoint);
 				}
 			}
 		}
 		
-		if (!unit.isTurret() && sprite == SpriteSet.BLANK_SPRITE)
+		if (!unit.isTurret && sprite == SpriteSet.BLANK_SPRITE)
 		{
-			g.setColor(unit.getOwner().getColor());
-			g.fill(unit.getOccupiedBounds());
+			g.setColor(unit.owner.getColor());
+			g.fill(unit.footprint.move(unit.position));
 		}
 		else
 		{
-			RColor color = unit.getOwner() != null ? unit.getOwner().getColor() : null;
-			g.draw(sprite, point, color);
-		}
-		
-		if (unit.hasTurret())
-		{
-			drawUnit(g, unit.getTurret());
-		}
-		else if (unit.isGuardPost() || unit.isStructure())
-		{
-			drawStatusLight(g, unit);
+			g.draw(sprite, point, unit.owner);
 		}
-	}
-	
-	private void drawStatusLight(DisplayGraphics g, Unit unit)
-	{
-		if (!panel.getCurrentPlayer().owns(unit))
-			return;
-		
-		Position pos = unit.getPosition();
 		
-		if (unit.isIdle())
-		{
-			g.draw(panel.getSpriteLibrary().getSprite("aStructureStatus", "idle"), pos);
-		}
-		else if (unit.isDisabled())
+		if (unit.turret != null)
 		{
-			SpriteGroup seq = panel.getSpriteLibrary().getAmbientSpriteGroup("aStructureStatus", "disabled");
-			int index = Utils.getTimeBasedIndex(100, seq.getSpriteCount());
-			g.draw(seq.getSprite(index), pos);
+			drawUnit(g, unit.turret);
 		}
-		else if (unit.isStructure())
+		else if (unit.statusSprite != null)
 		{
-			g.draw(panel.getSpriteLibrary().getSprite("aStructureStatus", "active"), pos);
+			g.draw(unit.statusSprite, unit.position);
 		}
 	}
 }
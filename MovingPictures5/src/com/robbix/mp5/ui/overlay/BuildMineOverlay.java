@@ -6,6 +6,7 @@ import com.robbix.mp5.Game;
 import com.robbix.mp5.ai.task.BuildMineTask;
 import com.robbix.mp5.map.Ore;
 import com.robbix.mp5.map.ResourceType;
+import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.Sprite;
 import com.robbix.mp5.ui.SpriteSet;
@@ -13,14 +14,13 @@ import com.robbix.mp5.unit.Footprint;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.mp5.unit.UnitType;
 import com.robbix.utils.Position;
-import com.robbix.utils.RColor;
 import com.robbix.utils.Region;
 
 public class BuildMineOverlay extends InputOverlay
 {
 	private Sprite mineSprite;
 	private ResourceType resType;
-	private RColor color;
+	private Player owner;
 	
 	private Unit miner;
 	
@@ -29,7 +29,7 @@ public class BuildMineOverlay extends InputOverlay
 	public BuildMineOverlay(Unit miner)
 	{
 		this.miner = miner;
-		this.color = miner.getOwner().getColor();
+		this.owner = miner.getOwner();
 	}
 	
 	public void paintImpl(DisplayGraphics g)
@@ -50,9 +50,9 @@ public class BuildMineOverlay extends InputOverlay
 				UnitType type = getMineType(res);
 				
 				if (mineSprite == null || mineSprite == SpriteSet.BLANK_SPRITE)
-					mineSprite = panel.getSpriteLibrary().getTranslucentDefault(type, 0.5f);
+					mineSprite = panel.getSpriteLibrary().getTranslucentDefault(type, owner, 0.5f);
 				
-				g.draw(mineSprite, pos, color);
+				g.draw(mineSprite, pos, owner);
 			}
 			
 			if (toolTip != null)
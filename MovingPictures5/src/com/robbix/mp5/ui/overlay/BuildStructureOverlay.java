@@ -5,19 +5,19 @@ import java.awt.Color;
 import com.robbix.mp5.Game;
 import com.robbix.mp5.ai.task.ConVecConstructTask;
 import com.robbix.mp5.map.LayeredMap;
+import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.Sprite;
 import com.robbix.mp5.ui.SpriteSet;
 import com.robbix.mp5.unit.Footprint;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Position;
-import com.robbix.utils.RColor;
 import com.robbix.utils.Region;
 
 public class BuildStructureOverlay extends InputOverlay
 {
 	private Sprite structSprite;
-	private RColor color;
+	private Player owner;
 	
 	private Unit conVec;
 	private Unit structure;
@@ -27,7 +27,7 @@ public class BuildStructureOverlay extends InputOverlay
 		this.conVec = conVec;
 		this.structure = structure;
 		this.showTubeConnectivity = true;
-		this.color = structure.getOwner().getColor();
+		this.owner = structure.getOwner();
 	}
 	
 	public void paintImpl(DisplayGraphics g)
@@ -40,7 +40,7 @@ public class BuildStructureOverlay extends InputOverlay
 			Position center = structure.getFootprint().getCenter();
 			Position pos = getCursorPosition().subtract(center);
 			String toolTip = drawUnitFootprint(g, structure.getType(), pos);
-			g.draw(structSprite, pos, color);
+			g.draw(structSprite, pos, owner);
 			
 			if (toolTip != null)
 			{
@@ -2,6 +2,7 @@ package com.robbix.mp5.ui.overlay;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -14,6 +15,7 @@ import com.robbix.utils.LShapedRegion;
 import com.robbix.utils.LinearRegion;
 import com.robbix.utils.Position;
 import com.robbix.utils.RIterable;
+import com.robbix.utils.Region;
 
 public class BuildTubeOverlay extends InputOverlay
 {
@@ -26,6 +28,11 @@ public class BuildTubeOverlay extends InputOverlay
 		this.showTubeConnectivity = true;
 	}
 	
+	public Collection<Unit> getSelectedUnits()
+	{
+		return Collections.singleton(crane);
+	}
+	
 	public void paintImpl(DisplayGraphics g)
 	{
 		drawSelectedUnitBox(g, crane);
@@ -157,4 +164,30 @@ public class BuildTubeOverlay extends InputOverlay
 		
 		return true;
 	}
+	
+	/**
+	 * Drag previews are checked as whole rows and columns so they
+	 * don't allocate a Position per cell every frame.
+	 */
+	private boolean canPlaceTube(Region region)
+	{
+		return panel.getMap().canPlaceFixture(Fixture.TUBE, region);
+	}
+	
+	private boolean canPlaceTube(LShapedRegion region)
+	{
+		return canPlaceTube(new Region(region.getFirstEnd(), region.getElbow()))
+			&& canPlaceTube(new Region(region.getElbow(), region.getSecondEnd()));
+	}
+	
+	private boolean canPlaceTube(BorderRegion region)
+	{
+		if (region.w == 0 || region.h == 0)
+			return true;
+		
+		return canPlaceTube(new Region(region.x, region.y, region.w, 1))
+			&& canPlaceTube(new Region(region.x, region.y + region.h - 1, region.w, 1))
+			&& canPlaceTube(new Region(region.x, region.y, 1, region.h))
+			&& canPlaceTube(new Region(region.x + region.w - 1, region.y, 1, region.h));
+	}
 }
@@ -36,6 +36,11 @@ public class CommandGroupOverlay extends InputOverlay
 		panel.showStatus((Unit)null);
 	}
 	
+	public Collection<Unit> getSelectedUnits()
+	{
+		return units;
+	}
+	
 	public void paintImpl(DisplayGraphics g)
 	{
 		for (Unit unit : units)
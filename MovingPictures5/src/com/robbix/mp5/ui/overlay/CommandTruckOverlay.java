@@ -1,6 +1,7 @@
 package com.robbix.mp5.ui.overlay;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 
 import com.robbix.mp5.Game;
@@ -11,6 +12,7 @@ import com.robbix.mp5.map.LayeredMap;
 import com.robbix.mp5.map.Ore;
 import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.DisplayGraphics;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Cargo;
 import com.robbix.mp5.unit.Command;
 import com.robbix.mp5.unit.Unit;
@@ -47,6 +49,11 @@ public class CommandTruckOverlay extends InputOverlay
 		panel.showStatus((Unit)null);
 	}
 	
+	public Collection<Unit> getSelectedUnits()
+	{
+		return Arrays.asList(trucks);
+	}
+	
 	public void paintImpl(DisplayGraphics g)
 	{
 		for (Unit truck : trucks)
@@ -117,7 +124,7 @@ public class CommandTruckOverlay extends InputOverlay
 			{
 				Unit smelter = map.getUnit(adj);
 				
-				if (smelter != null && smelter.getType().getName().contains("Smelter"))
+				if (smelter != null && smelter.isSmelter())
 				{
 					if (!smelter.isDead() && !smelter.isDisabled())
 					{
@@ -141,7 +148,7 @@ public class CommandTruckOverlay extends InputOverlay
 				Unit mine = map.getUnit(adj);
 				Ore deposit = map.getOre(adj);
 				
-				if (mine != null && mine.getType().getName().contains("Mine"))
+				if (mine != null && mine.isMine())
 				{
 					if (deposit == null)
 						throw new IllegalStateException("mine doesn't have deposit");
@@ -2,6 +2,7 @@ package com.robbix.mp5.ui.overlay;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import javax.swing.JOptionPane;
@@ -11,6 +12,7 @@ import com.robbix.mp5.ai.task.DockTask;
 import com.robbix.mp5.map.LayeredMap;
 import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.DisplayGraphics;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Cargo;
 import com.robbix.mp5.unit.Command;
 import com.robbix.mp5.unit.Unit;
@@ -41,6 +43,11 @@ public class CommandUnitOverlay extends InputOverlay
 		panel.showStatus((Unit)null);
 	}
 	
+	public Collection<Unit> getSelectedUnits()
+	{
+		return Collections.singleton(unit);
+	}
+	
 	public void paintImpl(DisplayGraphics g)
 	{
 		if (unit.getPosition() == null)
@@ -64,15 +71,15 @@ public class CommandUnitOverlay extends InputOverlay
 			Game.game.selfDestruct(unit);
 			complete();
 		}
-		else if (command == Command.BULLDOZE && unit.is("Dozer"))
+		else if (command == Command.BULLDOZE && unit.has(Capability.DOZER))
 		{
 			push(new SelectBulldozeOverlay(unit));
 		}
-		else if (command == Command.BUILD_TUBE && unit.is("Earthworker"))
+		else if (command == Command.BUILD_TUBE && unit.has(Capability.EARTHWORKER))
 		{
 			push(new BuildTubeOverlay(unit));
 		}
-		else if (command == Command.CONSTRUCT && unit.is("ConVec"))
+		else if (command == Command.CONSTRUCT && unit.has(Capability.CONVEC))
 		{
 			convecConstruct();
 		}
@@ -80,7 +87,7 @@ public class CommandUnitOverlay extends InputOverlay
 		{
 			minerConstruct();
 		}
-		else if (command == Command.BULLDOZE && unit.is("Dozer"))
+		else if (command == Command.BULLDOZE && unit.has(Capability.DOZER))
 		{
 			push(new SelectBulldozeOverlay(unit));
 		}
@@ -107,7 +114,7 @@ public class CommandUnitOverlay extends InputOverlay
 			Game.game.kill(unit);
 			complete();
 		}
-		else if (command == Command.BUILD && unit.is("VehicleFactory"))
+		else if (command == Command.BUILD && unit.has(Capability.VEHICLE_FACTORY))
 		{
 			List<UnitType> vehicleTypes = Game.game.getUnitFactory().getVehicleTypes();
 			Object option = JListDialog.showDialog(vehicleTypes.toArray());
@@ -147,7 +154,7 @@ public class CommandUnitOverlay extends InputOverlay
 			
 			JOptionPane.showMessageDialog(panel, "can't exit");
 		}
-		else if (command == Command.BUILD && unit.is("StructureFactory"))
+		else if (command == Command.BUILD && unit.has(Capability.STRUCTURE_FACTORY))
 		{
 			List<UnitType> structTypes = Game.game.getUnitFactory().getStructureTypes();
 			Object option = JListDialog.showDialog(structTypes.toArray());
@@ -176,7 +183,7 @@ public class CommandUnitOverlay extends InputOverlay
 			owner.spend(type.getCost());
 			unit.setStructureKit(type.getName());
 		}
-		else if (command == Command.DOCK && unit.is("ConVec"))
+		else if (command == Command.DOCK && unit.has(Capability.CONVEC))
 		{
 			Position adj = unit.getPosition().shift(0, -1);
 			LayeredMap map = panel.getMap();
@@ -186,7 +193,7 @@ public class CommandUnitOverlay extends InputOverlay
 				Unit sFactory = map.getUnit(adj);
 				
 				if (sFactory != null
-			&& sFactory.is("StructureFactory")
+			&& sFactory.has(Capability.STRUCTURE_FACTORY)
 			&& !sFactory.isDead()
 			&& !sFactory.isDisabled())
 				{
@@ -14,10 +14,14 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Collection;
+import java.util.Collections;
 
 import com.robbix.mp5.map.LayeredMap;
 import com.robbix.mp5.ui.DisplayPanel;
 import com.robbix.mp5.ui.DisplayGraphics;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Command;
 import com.robbix.mp5.unit.Footprint;
 import com.robbix.mp5.unit.HealthBracket;
@@ -193,6 +197,46 @@ implements MouseListener, MouseMotionListener, MouseWheelListener, KeyListener
 		g.translate(-panel.getViewX(), -panel.getViewY());
 	}
 	
+	/**
+	 * Gets the units this overlay draws selection boxes around. The panel
+	 * repaints their boxes every frame, as they follow the units and show
+	 * their health. None by default.
+	 */
+	public Collection<Unit> getSelectedUnits()
+	{
+		return Collections.emptyList();
+	}
+	
+	/**
+	 * Gets the bounds, in grid units, of the box drawSelectedUnitBox()
+	 * draws around the unit, health bar included.
+	 */
+	public static Rectangle2D getSelectedUnitBoxBounds(Unit unit, int tileSize)
+	{
+		Point2D absPoint = unit.getAbsPoint();
+		double barHeight = 2.0 / Math.max(tileSize, 1);
+		
+		return new Rectangle2D.Double(
+			absPoint.getX(),
+			absPoint.getY() - barHeight,
+			unit.getWidth(),
+			unit.getHeight() + barHeight
+		);
+	}
+	
+	/**
+	 * Gets a value that changes whenever the box drawSelectedUnitBox()
+	 * draws around the unit would look different in place - its health
+	 * bar changing or flashing.
+	 */
+	public static Object getSelectedUnitBoxState(Unit unit)
+	{
+		boolean flashOff = unit.getHealthBracket() == HealthBracket.RED
+			&& !Utils.getTimeBasedSwitch(300, 2);
+		
+		return unit.getHP() * 2 + (flashOff ? 1 : 0);
+	}
+	
 	/**
 	 * Like drawUnitFootprint(), but for a mine of undetermined type (common/rare).
 	 */
@@ -234,9 +278,9 @@ implements MouseListener, MouseMotionListener, MouseWheelListener, KeyListener
 		LayeredMap map = panel.getMap();
 		Color color;
 		String toolTip = null;
-		boolean rare = type.is("Rare");
+		boolean rare = type.has(Capability.RARE_ORE);
 		
-		if (type.getName().endsWith("Mine"))
+		if (type.has(Capability.MINE))
 		{
 			boolean onMap = map.getBounds().contains(inner);
 			boolean available = map.canPlaceUnit(pos, fp);
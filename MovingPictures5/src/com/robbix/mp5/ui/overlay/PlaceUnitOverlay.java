@@ -9,18 +9,17 @@ import com.robbix.mp5.player.Player;
 import com.robbix.mp5.ui.DisplayGraphics;
 import com.robbix.mp5.ui.Sprite;
 import com.robbix.mp5.ui.SpriteSet;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.mp5.unit.UnitFactory;
 import com.robbix.mp5.unit.UnitType;
 import com.robbix.utils.Position;
-import com.robbix.utils.RColor;
 import com.robbix.utils.Region;
 
 public class PlaceUnitOverlay extends InputOverlay
 {
 	private Sprite unitSprite;
 	private Sprite turretSprite;
-	private RColor color;
 	
 	private Unit unit;
 	
@@ -33,7 +32,6 @@ public class PlaceUnitOverlay extends InputOverlay
 		this.factory = factory;
 		this.type = type.getName();
 		this.player = player;
-		this.color = player.getColor();
 		this.unit = factory.newUnit(this.type, player);
 		this.showTubeConnectivity = unit.needsConnection() || unit.isConnectionSource();
 	}
@@ -51,10 +49,10 @@ public class PlaceUnitOverlay extends InputOverlay
 			Position center = unit.getFootprint().getCenter();
 			Position pos = getCursorPosition().subtract(center);
 			String toolTip = drawUnitFootprint(g, unit.getType(), pos);
-			g.draw(unitSprite, pos, color);
+			g.draw(unitSprite, pos, player);
 			
 			if (unit.hasTurret())
-				g.draw(turretSprite, pos, color);
+				g.draw(turretSprite, pos, player);
 			
 			if (toolTip != null)
 			{
@@ -89,7 +87,7 @@ public class PlaceUnitOverlay extends InputOverlay
 			{
 				Ore res = map.getOre(pos.shift(1, 0));
 				
-				if (res == null || (res.isRare() != unit.is("Rare")))
+				if (res == null || (res.isRare() != unit.has(Capability.RARE_ORE)))
 				{
 					if (playErrorSound)
 						Game.game.playSound("structureError");
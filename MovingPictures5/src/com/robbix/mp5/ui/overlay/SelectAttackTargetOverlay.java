@@ -1,5 +1,7 @@
 package com.robbix.mp5.ui.overlay;
 
+import java.util.Collection;
+import java.util.Collections;
 
 import com.robbix.mp5.Game;
 import com.robbix.mp5.ui.DisplayGraphics;
@@ -16,6 +18,11 @@ public class SelectAttackTargetOverlay extends InputOverlay
 		this.attacker = unit;
 	}
 	
+	public Collection<Unit> getSelectedUnits()
+	{
+		return Collections.singleton(attacker.getChassis());
+	}
+	
 	public void paintImpl(DisplayGraphics g)
 	{
 		drawSelectedUnitBox(g, attacker.getChassis());
@@ -2,6 +2,7 @@ package com.robbix.mp5.ui.overlay;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 
@@ -20,6 +21,11 @@ public class SelectBulldozeOverlay extends InputOverlay
 		this.dozer = dozer;
 	}
 	
+	public Collection<Unit> getSelectedUnits()
+	{
+		return Collections.singleton(dozer);
+	}
+	
 	public void paintImpl(DisplayGraphics g)
 	{
 		drawSelectedUnitBox(g, dozer);
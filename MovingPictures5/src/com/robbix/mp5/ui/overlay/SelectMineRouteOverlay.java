@@ -1,8 +1,12 @@
 package com.robbix.mp5.ui.overlay;
 
+import java.util.Arrays;
+import java.util.Collection;
+
 import com.robbix.mp5.Game;
 import com.robbix.mp5.ai.task.MineRouteTask;
 import com.robbix.mp5.ui.DisplayGraphics;
+import com.robbix.mp5.unit.Capability;
 import com.robbix.mp5.unit.Unit;
 import com.robbix.utils.Position;
 
@@ -23,6 +27,11 @@ public class SelectMineRouteOverlay extends InputOverlay
 		this.trucks = trucks;
 	}
 	
+	public Collection<Unit> getSelectedUnits()
+	{
+		return Arrays.asList(trucks);
+	}
+	
 	public void paintImpl(DisplayGraphics g)
 	{
 		for (Unit truck : trucks)
@@ -37,7 +46,7 @@ public class SelectMineRouteOverlay extends InputOverlay
 		{
 			if (selected.isMine())
 			{
-				if (smelter != null && smelter.is("Common") && !selected.is("Common"))
+				if (smelter != null && smelter.has(Capability.COMMON_ORE) && !selected.has(Capability.COMMON_ORE))
 				{
 					Game.game.playSound("beep4");
 					return;
@@ -48,7 +57,7 @@ public class SelectMineRouteOverlay extends InputOverlay
 			}
 			else if (selected.isSmelter())
 			{
-				if (mine != null && mine.is("Common") && !selected.is("Common"))
+				if (mine != null && mine.has(Capability.COMMON_ORE) && !selected.has(Capability.COMMON_ORE))
 				{
 					Game.game.playSound("beep4");
 					return;
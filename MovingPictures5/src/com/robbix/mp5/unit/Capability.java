@@ -0,0 +1,72 @@
+package com.robbix.mp5.unit;
+
+/**
+ * Flags describing what a UnitType is and can do. A type's capabilities
+ * are packed into an int bitset when its XML is loaded, so checks don't
+ * have to look at the type name.
+ */
+public enum Capability
+{
+	TRUCK,
+	CONVEC,
+	DOCKABLE,
+	DOZER,
+	EARTHWORKER,
+	MINER,
+	MINE,
+	SMELTER,
+	COMMON_ORE,
+	RARE_ORE,
+	VEHICLE_FACTORY,
+	STRUCTURE_FACTORY,
+	TURRET,
+	CHASSIS,
+	GUARD_POST,
+	ARACHNID,
+	STARFLARE,
+	SUPERNOVA;
+	
+	private final int mask = 1 << ordinal();
+	
+	public int getMask()
+	{
+		return mask;
+	}
+	
+	/**
+	 * Returns true if this capability's bit is set in the given bitset.
+	 */
+	public boolean in(int capabilities)
+	{
+		return (capabilities & mask) != 0;
+	}
+	
+	/**
+	 * Works out the capabilities of a unit type from its type name.
+	 */
+	public static int getCapabilities(String name)
+	{
+		int caps = 0;
+		
+		if (name.contains("Truck"))            caps |= TRUCK.mask | DOCKABLE.mask;
+		if (name.contains("ConVec"))           caps |= CONVEC.mask | DOCKABLE.mask;
+		if (name.contains("Dozer"))            caps |= DOZER.mask;
+		if (name.contains("Earthworker"))      caps |= EARTHWORKER.mask;
+		if (name.contains("Miner"))            caps |= MINER.mask;
+		if (name.endsWith("Mine"))             caps |= MINE.mask;
+		if (name.endsWith("Smelter"))          caps |= SMELTER.mask;
+		if (name.contains("Common"))           caps |= COMMON_ORE.mask;
+		if (name.contains("Rare"))             caps |= RARE_ORE.mask;
+		if (name.contains("VehicleFactory"))   caps |= VEHICLE_FACTORY.mask;
+		if (name.contains("StructureFactory")) caps |= STRUCTURE_FACTORY.mask;
+		if (name.contains("Turret"))           caps |= TURRET.mask;
+		if (name.contains("Chassis"))          caps |= CHASSIS.mask;
+		if (name.contains("GuardPost"))        caps |= GUARD_POST.mask;
+		if (name.contains("Spider"))           caps |= ARACHNID.mask;
+		if (name.contains("Scorpion"))         caps |= ARACHNID.mask;
+		if (name.contains("Starflare"))        caps |= STARFLARE.mask;
+		if (name.contains("Supernova"))        caps |= SUPERNOVA.mask;
+		
+		return caps;
+	}
+}
@@ -1,7 +1,9 @@
 package com.robbix.mp5.unit;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -85,6 +87,33 @@ public class Footprint implements Iterable<Position>
 	 */
 	private Position center;
 	
+	/**
+	 * Offsets of the occupied cells, in row-major order, packed by
+	 * pack(dx, dy).
+	 */
+	private int[] innerOffsets;
+	
+	/**
+	 * Offsets of the unoccupied cells in the inner Region stretched by one.
+	 */
+	private int[] borderOffsets;
+	
+	/**
+	 * Offsets of the cells where tubes are placed.
+	 */
+	private int[] tubeOffsets;
+	
+	/**
+	 * Offsets of the cells a tube connection is looked for in - the
+	 * 4-neighbors of all occupied and tube cells.
+	 */
+	private int[] connectionOffsets;
+	
+	/**
+	 * Offsets of the cells units can dock or exit at.
+	 */
+	private int[] dockOffsets;
+	
 	/**
 	 * Creates a new Footprint with given inner and outer Regions.
 	 * 
@@ -99,6 +128,8 @@ public class Footprint implements Iterable<Position>
 		
 		for (Position occupied : inner)
 			occupiedSet.add(occupied);
+		
+		packOffsets();
 	}
 	
 	private Footprint(int w, int h)
@@ -141,6 +172,7 @@ public class Footprint implements Iterable<Position>
 			throw new IllegalStateException("pos occupied");
 		
 		tubePositions.add(pos);
+		packOffsets();
 		return this;
 	}
 
@@ -164,9 +196,141 @@ public class Footprint implements Iterable<Position>
 		for (Position unoccupied : unoccupiedSet)
 			result.occupiedSet.remove(unoccupied);
 		
+		result.packOffsets();
 		return result;
 	}
 	
+	/**
+	 * Packs a relative offset into a single int. Offsets must fit in 16 bits.
+	 */
+	public static int pack(int dx, int dy)
+	{
+		return (dy << 16) | (dx & 0xffff);
+	}
+	
+	/**
+	 * Gets the x offset of a packed offset.
+	 */
+	public static int getDX(int offset)
+	{
+		return (short) offset;
+	}
+	
+	/**
+	 * Gets the y offset of a packed offset.
+	 */
+	public static int getDY(int offset)
+	{
+		return offset >> 16;
+	}
+	
+	/**
+	 * Gets the packed offsets of the cells this Footprint exclusively
+	 * occupies, in row-major order. The returned array must not be modified.
+	 */
+	public int[] getInnerOffsets()
+	{
+		return innerOffsets;
+	}
+	
+	/**
+	 * Gets the packed offsets of the unoccupied cells within one step of the
+	 * inner Region. The returned array must not be modified.
+	 */
+	public int[] getBorderOffsets()
+	{
+		return borderOffsets;
+	}
+	
+	/**
+	 * Gets the packed offsets of the tube cells. The returned array must
+	 * not be modified.
+	 */
+	public int[] getTubeOffsets()
+	{
+		return tubeOffsets;
+	}
+	
+	/**
+	 * Gets the packed offsets of the cells checked for a tube connection.
+	 * The returned array must not be modified.
+	 */
+	public int[] getConnectionOffsets()
+	{
+		return connectionOffsets;
+	}
+	
+	/**
+	 * Gets the packed offsets of the dock/exit cells, empty if this
+	 * Footprint has none. The returned array must not be modified.
+	 */
+	public int[] getDockOffsets()
+	{
+		return dockOffsets;
+	}
+	
+	private void packOffsets()
+	{
+		List<Integer> innerList = new ArrayList<Integer>();
+		List<Integer> borderList = new ArrayList<Integer>();
+		List<Integer> tubeList = new ArrayList<Integer>();
+		Set<Integer> connectionSet = new LinkedHashSet<Integer>();
+		
+		for (int y = -1; y <= inner.h; ++y)
+		for (int x = -1; x <= inner.w; ++x)
+		{
+			Position pos = new Position(x, y);
+			
+			if (occupiedSet.contains(pos))
+				innerList.add(pack(x, y));
+			else
+				borderList.add(pack(x, y));
+			
+			if (tubePositions.contains(pos))
+				tubeList.add(pack(x, y));
+		}
+		
+		for (Position pos : occupiedSet)
+			for (Position neighbor : pos.get4Neighbors())
+				connectionSet.add(pack(neighbor.x, neighbor.y));
+		
+		for (Position pos : tubePositions)
+			for (Position neighbor : pos.get4Neighbors())
+				connectionSet.add(pack(neighbor.x, neighbor.y));
+		
+		innerOffsets = toArray(innerList);
+		borderOffsets = toArray(borderList);
+		tubeOffsets = toArray(tubeList);
+		connectionOffsets = toArray(connectionSet);
+		
+		if (inner.w == 4 && inner.h == 3)
+		{
+			dockOffsets = new int[]
+			{
+				pack(4, 1), pack(4, 0), pack(4, -1), pack(3, -1),
+				pack(2, -1), pack(1, -1), pack(0, -1), pack(-1, -1),
+				pack(-1, 0), pack(-1, 1), pack(-1, 2), pack(-1, 3),
+				pack(0, 3), pack(1, 3), pack(2, 3), pack(3, 3),
+				pack(4, 3), pack(4, 2)
+			};
+		}
+		else
+		{
+			dockOffsets = new int[0];
+		}
+	}
+	
+	private static int[] toArray(Collection<Integer> values)
+	{
+		int[] array = new int[values.size()];
+		int i = 0;
+		
+		for (int value : values)
+			array[i++] = value;
+		
+		return array;
+	}
+	
 	/**
 	 * Returns a set of positions occupied by tubes in this footprint.
 	 */
@@ -252,26 +416,10 @@ public class Footprint implements Iterable<Position>
 	{
 		if (inner.w == 4 && inner.h == 3)
 		{
-			List<Position> posList = new ArrayList<Position>();
+			List<Position> posList = new ArrayList<Position>(dockOffsets.length);
 			
-			posList.add(origin.shift(4, 1));
-			posList.add(origin.shift(4, 0));
-			posList.add(origin.shift(4, -1));
-			posList.add(origin.shift(3, -1));
-			posList.add(origin.shift(2, -1));
-			posList.add(origin.shift(1, -1));
-			posList.add(origin.shift(0, -1));
-			posList.add(origin.shift(-1, -1));
-			posList.add(origin.shift(-1, 0));
-			posList.add(origin.shift(-1, 1));
-			posList.add(origin.shift(-1, 2));
-			posList.add(origin.shift(-1, 3));
-			posList.add(origin.shift(0, 3));
-			posList.add(origin.shift(1, 3));
-			posList.add(origin.shift(2, 3));
-			posList.add(origin.shift(3, 3));
-			posList.add(origin.shift(4, 3));
-			posList.add(origin.shift(4, 2));
+			for (int offset : dockOffsets)
+				posList.add(origin.shift(getDX(offset), getDY(offset)));
 			
 			return posList;
 		}
@@ -0,0 +1,373 @@
+package com.robbix.mp5.unit;
+
+import java.awt.geom.Point2D;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.robbix.mp5.Game;
+import com.robbix.utils.Position;
+import com.robbix.utils.Utils;
+
+/**
+ * Every weapon shot in flight. Hits are worked out here, once per frame
+ * by the Engine, so combat doesn't depend on what (if anything) is
+ * displaying it. Animations only read the flight data back.
+ *
+ * Shots are kept in parallel arrays and their slots are reused, so firing
+ * doesn't allocate once the arrays have grown to the size of the battle.
+ * A shot is referred to by a handle: the slot in the low 32 bits and a
+ * serial in the high 32 bits, so a handle to a finished shot stays dead
+ * after its slot is taken by another.
+ */
+public class ProjectileSet
+{
+	/**
+	 * The handle returned when a weapon doesn't fire anything.
+	 */
+	public static final long NONE = 0;
+	
+	private static final int INITIAL_CAPACITY = 64;
+	
+	/**
+	 * How a kind of weapon's shots fly and what they do when they land.
+	 */
+	private static class Ballistics
+	{
+		/**
+		 * Frames from firing to impact for beams, or 0 if the shot
+		 * travels at the given speed.
+		 */
+		public final int beamFrames;
+		
+		/**
+		 * Tiles per frame.
+		 */
+		public final double speed;
+		
+		/**
+		 * Range of splash damage in tiles, or 0 for a direct hit on the
+		 * target.
+		 */
+		public final double splashRange;
+		
+		/**
+		 * Number of times the splash is applied, pulseInterval frames
+		 * apart.
+		 */
+		public final int pulses;
+		public final int pulseInterval;
+		
+		public final String launchSound;
+		public final String impactSound;
+		
+		public Ballistics(
+			int beamFrames,
+			double speed,
+			double splashRange,
+			int pulses,
+			int pulseInterval,
+			String launchSound,
+			String impactSound)
+		{
+			this.beamFrames = beamFrames;
+			this.speed = speed;
+			this.splashRange = splashRange;
+			this.pulses = pulses;
+			this.pulseInterval = pulseInterval;
+			this.launchSound = launchSound;
+			this.impactSound = impactSound;
+		}
+		
+		public int getFlightFrames(double distance)
+		{
+			return beamFrames > 0
+				? beamFrames
+				: Math.max(1, (int) (distance / speed));
+		}
+	}
+	
+	private static final Map<WeaponKind, Ballistics> ballistics =
+		new EnumMap<WeaponKind, Ballistics>(WeaponKind.class);
+	
+	static
+	{
+		ballistics.put(WeaponKind.LASER,      new Ballistics(11, 0,        0,   1, 0,  "laser",        null));
+		ballistics.put(WeaponKind.MICROWAVE,  new Ballistics(11, 0,        0,   1, 0,  "microwave",    null));
+		ballistics.put(WeaponKind.RAIL_GUN,   new Ballistics(0,  4 / 32.0, 0,   1, 0,  "railGunFire",  "railGunHit"));
+		ballistics.put(WeaponKind.RPG,        new Ballistics(0,  4 / 32.0, 1,   1, 0,  "rocketLaunch", "smallExplosion1"));
+		ballistics.put(WeaponKind.ACID_CLOUD, new Ballistics(0,  4 / 32.0, 2.5, 3, 10, "rocketLaunch", "acidCloud"));
+	}
+	
+	private int capacity;
+	private int highWater;
+	private int size;
+	
+	private long[] handles;
+	private Unit[] attackers;
+	private Unit[] targets;
+	private WeaponKind[] kinds;
+	private double[] originXs;
+	private double[] originYs;
+	private double[] impactXs;
+	private double[] impactYs;
+	private int[] targetXs;
+	private int[] targetYs;
+	private int[] flightFrames;
+	private int[] timesToImpact;
+	private int[] pulsesLeft;
+	private double[] damages;
+	private double[] splashRanges;
+	
+	private int[] freeSlots;
+	private int freeCount;
+	private int[] impacts;
+	private long serial = 1;
+	
+	public ProjectileSet()
+	{
+		capacity = INITIAL_CAPACITY;
+		handles = new long[capacity];
+		attackers = new Unit[capacity];
+		targets = new Unit[capacity];
+		kinds = new WeaponKind[capacity];
+		originXs = new double[capacity];
+		originYs = new double[capacity];
+		impactXs = new double[capacity];
+		impactYs = new double[capacity];
+		targetXs = new int[capacity];
+		targetYs = new int[capacity];
+		flightFrames = new int[capacity];
+		timesToImpact = new int[capacity];
+		pulsesLeft = new int[capacity];
+		damages = new double[capacity];
+		splashRanges = new double[capacity];
+		freeSlots = new int[capacity];
+		impacts = new int[capacity];
+	}
+	
+	/**
+	 * Returns true if units with the given kind of weapon fire through
+	 * this set.
+	 */
+	public static boolean isFired(WeaponKind kind)
+	{
+		return ballistics.containsKey(kind);
+	}
+	
+	/**
+	 * Fires the attacker's weapon at the target from the given absolute
+	 * point. Returns a handle to the shot, or NONE if the weapon doesn't
+	 * fire anything.
+	 */
+	public long fire(Game game, Unit attacker, Unit target, Point2D origin)
+	{
+		WeaponKind kind = attacker.getType().getWeaponKind();
+		Ballistics b = ballistics.get(kind);
+		
+		if (b == null)
+			return NONE;
+		
+		double w = target.getWidth();
+		double h = target.getHeight();
+		Point2D targetPoint = target.getAbsPoint();
+		double impactX = targetPoint.getX() + w / 2.0 + Utils.randFloat(-w / 8.0, w / 8.0);
+		double impactY = targetPoint.getY() + h / 2.0 + Utils.randFloat(-h / 8.0, h / 8.0);
+		
+		double dx = impactX - origin.getX();
+		double dy = impactY - origin.getY();
+		int frames = b.getFlightFrames(Math.hypot(dx, dy));
+		
+		int slot = allocate();
+		long handle = (serial++ << 32) | slot;
+		Position targetPos = target.getPosition();
+		
+		handles[slot] = handle;
+		attackers[slot] = attacker;
+		targets[slot] = target;
+		kinds[slot] = kind;
+		originXs[slot] = origin.getX();
+		originYs[slot] = origin.getY();
+		impactXs[slot] = impactX;
+		impactYs[slot] = impactY;
+		targetXs[slot] = targetPos.x;
+		targetYs[slot] = targetPos.y;
+		flightFrames[slot] = frames;
+		timesToImpact[slot] = frames;
+		pulsesLeft[slot] = b.pulses;
+		damages[slot] = attacker.getType().getDamage();
+		splashRanges[slot] = b.splashRange;
+		
+		if (b.launchSound != null)
+			game.playSoundLater(b.launchSound, attacker.getPosition());
+		
+		return handle;
+	}
+	
+	/**
+	 * Counts every shot down by one frame, then resolves all the shots
+	 * that landed this frame together. Splash damage is only queued,
+	 * to be applied with the frame's other explosions.
+	 */
+	public void step(Game game)
+	{
+		int impactCount = 0;
+		
+		for (int slot = 0; slot < highWater; ++slot)
+		{
+			if (handles[slot] == NONE)
+				continue;
+			
+			if (--timesToImpact[slot] == 0)
+				impacts[impactCount++] = slot;
+		}
+		
+		for (int i = 0; i < impactCount; ++i)
+		{
+			int slot = impacts[i];
+			Ballistics b = ballistics.get(kinds[slot]);
+			boolean first = pulsesLeft[slot] == b.pulses;
+			
+			if (first && b.impactSound != null)
+				game.playSoundLater(b.impactSound, new Position(targetXs[slot], targetYs[slot]));
+			
+			if (splashRanges[slot] > 0)
+			{
+				game.doSplashDamage(
+					new Position(targetXs[slot], targetYs[slot]),
+					damages[slot],
+					splashRanges[slot]
+				);
+			}
+			else if (!targets[slot].isDead())
+			{
+				game.doDamage(attackers[slot], targets[slot], damages[slot]);
+			}
+			
+			if (--pulsesLeft[slot] > 0)
+				timesToImpact[slot] = b.pulseInterval;
+			else
+				free(slot);
+		}
+	}
+	
+	/**
+	 * Returns true if the handle's shot is still live: in flight, or
+	 * still doing damage where it landed.
+	 */
+	public boolean isLive(long handle)
+	{
+		int slot = (int) handle;
+		return handle != NONE && slot < highWater && handles[slot] == handle;
+	}
+	
+	/**
+	 * Returns true if the handle's shot hasn't landed yet.
+	 */
+	public boolean isInFlight(long handle)
+	{
+		if (!isLive(handle))
+			return false;
+		
+		int slot = (int) handle;
+		return pulsesLeft[slot] == ballistics.get(kinds[slot]).pulses;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public Unit getAttacker(long handle)
+	{
+		return attackers[getSlot(handle)];
+	}
+	
+	public Unit getTarget(long handle)
+	{
+		return targets[getSlot(handle)];
+	}
+	
+	public Point2D getOrigin(long handle)
+	{
+		int slot = getSlot(handle);
+		return new Point2D.Double(originXs[slot], originYs[slot]);
+	}
+	
+	public Point2D getImpact(long handle)
+	{
+		int slot = getSlot(handle);
+		return new Point2D.Double(impactXs[slot], impactYs[slot]);
+	}
+	
+	/**
+	 * Gets the position the shot was aimed at, where any splash is
+	 * centered.
+	 */
+	public Position getTargetPosition(long handle)
+	{
+		int slot = getSlot(handle);
+		return new Position(targetXs[slot], targetYs[slot]);
+	}
+	
+	/**
+	 * Gets the number of frames between firing and the first impact.
+	 */
+	public int getFlightFrames(long handle)
+	{
+		return flightFrames[getSlot(handle)];
+	}
+	
+	private int getSlot(long handle)
+	{
+		if (!isLive(handle))
+			throw new IllegalArgumentException("Projectile no longer live");
+		
+		return (int) handle;
+	}
+	
+	private int allocate()
+	{
+		size++;
+		
+		if (freeCount > 0)
+			return freeSlots[--freeCount];
+		
+		if (highWater == capacity)
+			grow();
+		
+		return highWater++;
+	}
+	
+	private void free(int slot)
+	{
+		handles[slot] = NONE;
+		attackers[slot] = null;
+		targets[slot] = null;
+		kinds[slot] = null;
+		freeSlots[freeCount++] = slot;
+		size--;
+	}
+	
+	private void grow()
+	{
+		capacity *= 2;
+		handles = Arrays.copyOf(handles, capacity);
+		attackers = Arrays.copyOf(attackers, capacity);
+		targets = Arrays.copyOf(targets, capacity);
+		kinds = Arrays.copyOf(kinds, capacity);
+		originXs = Arrays.copyOf(originXs, capacity);
+		originYs = Arrays.copyOf(originYs, capacity);
+		impactXs = Arrays.copyOf(impactXs, capacity);
+		impactYs = Arrays.copyOf(impactYs, capacity);
+		targetXs = Arrays.copyOf(targetXs, capacity);
+		targetYs = Arrays.copyOf(targetYs, capacity);
+		flightFrames = Arrays.copyOf(flightFrames, capacity);
+		timesToImpact = Arrays.copyOf(timesToImpact, capacity);
+		pulsesLeft = Arrays.copyOf(pulsesLeft, capacity);
+		damages = Arrays.copyOf(damages, capacity);
+		splashRanges = Arrays.copyOf(splashRanges, capacity);
+		freeSlots = Arrays.copyOf(freeSlots, capacity);
+		impacts = Arrays.copyOf(impacts, capacity);
+	}
+}
@@ -220,28 +220,57 @@ public class Unit extends Entity
 	
 	public void setXOffset(int offX)
 	{
+		if (this.offX == offX)
+			return;
+		
 		this.offX = offX;
+		offsetChanged();
 	}
 
 	public void setYOffset(int offY)
 	{
+		if (this.offY == offY)
+			return;
+		
 		this.offY = offY;
+		offsetChanged();
 	}
 	
 	public void shiftXOffset(int dx)
 	{
-		if (chassis == null)
-			offX += dx;
-		else
+		if (chassis != null)
+		{
 			chassis.shiftXOffset(dx);
+		}
+		else if (dx != 0)
+		{
+			offX += dx;
+			offsetChanged();
+		}
 	}
 	
 	public void shiftYOffset(int dy)
 	{
-		if (chassis == null)
-			offY += dy;
-		else
+		if (chassis != null)
+		{
 			chassis.shiftYOffset(dy);
+		}
+		else if (dy != 0)
+		{
+			offY += dy;
+			offsetChanged();
+		}
+	}
+	
+	/**
+	 * Lets the map's listeners know, so displays can move the unit.
+	 */
+	private void offsetChanged()
+	{
+		LayeredMap map = getMap();
+		
+		if (map != null)
+			map.offsetChanged(chassis != null ? chassis : this);
 	}
 	
 	/**
@@ -305,6 +334,11 @@ public class Unit extends Entity
 		return priority;
 	}
 	
+	public void setPriority(int priority)
+	{
+		this.priority = priority;
+	}
+	
 	public String getStructureKit()
 	{
 		return kit;
@@ -317,7 +351,7 @@ public class Unit extends Entity
 	
 	public void setCargo(Cargo cargo)
 	{
-		if (!isTruck() && !type.getName().contains("ConVec"))
+		if (!type.has(Capability.DOCKABLE))
 			throw new IllegalStateException("Not a truck");
 		
 		this.cargo = cargo == null ? Cargo.EMPTY : cargo;
@@ -433,8 +467,7 @@ public class Unit extends Entity
 	
 	public boolean isArachnid()
 	{
-		return type.getName().contains("Spider")
-			|| type.getName().contains("Scorpion");
+		return type.has(Capability.ARACHNID);
 	}
 	
 	public boolean isStructure()
@@ -452,43 +485,48 @@ public class Unit extends Entity
 		return type.is(phrase);
 	}
 	
+	public boolean has(Capability capability)
+	{
+		return type.has(capability);
+	}
+	
 	public boolean isTruck()
 	{
-		return type.getName().contains("Truck");
+		return type.has(Capability.TRUCK);
 	}
 	
 	public boolean isMine()
 	{
-		return type.getName().endsWith("Mine");
+		return type.has(Capability.MINE);
 	}
 	
 	public boolean isSmelter()
 	{
-		return type.getName().endsWith("Smelter");
+		return type.has(Capability.SMELTER);
 	}
 	
 	public boolean isMiner()
 	{
-		return type.getName().contains("Miner");
+		return type.has(Capability.MINER);
 	}
 	
 	public boolean isTurret()
 	{
-		return type.getName().contains("Turret");
+		return type.has(Capability.TURRET);
 	}
 	
 	public boolean isStarflare()
 	{
 		return turret != null
-		? turret.getType().getName().contains("Starflare")
-		: type.getName().contains("Starflare");
+			? turret.type.has(Capability.STARFLARE)
+			: type.has(Capability.STARFLARE);
 	}
 	
 	public boolean isSupernova()
 	{
 		return turret != null
-			? turret.getType().getName().contains("Supernova")
-			: type.getName().contains("Supernova");
+			? turret.type.has(Capability.SUPERNOVA)
+			: type.has(Capability.SUPERNOVA);
 	}
 	
 	public LayeredMap getContainer()
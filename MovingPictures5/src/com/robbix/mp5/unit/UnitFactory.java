@@ -17,6 +17,7 @@ import com.robbix.mp5.ai.task.Task;
 import com.robbix.mp5.ai.task.TurretTask;
 import com.robbix.mp5.map.ResourceType;
 import com.robbix.mp5.player.Player;
+import com.robbix.utils.AssetArchive;
 import com.robbix.utils.FileFormatException;
 import com.robbix.utils.Filter;
 import com.robbix.utils.RNode;
@@ -28,7 +29,7 @@ public class UnitFactory
 		UnitFactory factory = new UnitFactory();
 		factory.rootDir = rootDir;
 		
-		File[] files = rootDir.listFiles();
+		File[] files = AssetArchive.listFiles(rootDir);
 		
 		if (files == null)
 			throw new IOException("No directory listing " + rootDir.getCanonicalPath());
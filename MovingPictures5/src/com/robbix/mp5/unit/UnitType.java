@@ -25,9 +25,8 @@ public class UnitType
 		int rotationDegree,
 		Set<Command> commands)
 	{
-		UnitType type = new UnitType();
+		UnitType type = new UnitType(name);
 		
-		type.name = name;
 		type.displayName = displayName;
 		type.ack = ack;
 		type.civ = civ;
@@ -61,9 +60,8 @@ public class UnitType
 		boolean needsConnection,
 		Set<Command> commands)
 	{
-		UnitType type = new UnitType();
+		UnitType type = new UnitType(name);
 		
-		type.name = name;
 		type.displayName = displayName;
 		type.ack = ack;
 		type.civ = civ;
@@ -96,9 +94,8 @@ public class UnitType
 		double attackRange,
 		int weaponChargeCost)
 	{
-		UnitType type = new UnitType();
+		UnitType type = new UnitType(name);
 		
-		type.name = name;
 		type.displayName = displayName;
 		type.ack = ack;
 		type.civ = civ;
@@ -125,9 +122,8 @@ public class UnitType
 		String turretTypeName,
 		Cost cost)
 	{
-		UnitType type = new UnitType();
+		UnitType type = new UnitType(name);
 		
-		type.name = name;
 		type.displayName = displayName;
 		type.civ = civ;
 		type.chassisTypeName = chassisTypeName;
@@ -149,9 +145,8 @@ public class UnitType
 		int rotationSpeed,
 		int rotationDegree)
 	{
-		UnitType type = new UnitType();
+		UnitType type = new UnitType(name);
 		
-		type.name = name;
 		type.displayName = displayName;
 		type.ack = ack;
 		type.civ = civ;
@@ -176,9 +171,8 @@ public class UnitType
 		double attackRange,
 		int weaponChargeCost)
 	{
-		UnitType type = new UnitType();
+		UnitType type = new UnitType(name);
 		
-		type.name = name;
 		type.displayName = displayName;
 		type.civ = civ;
 		type.damage = damage;
@@ -244,15 +238,20 @@ public class UnitType
 	private boolean needsConnection;
 	private Object[] spriteArgs;
 	private Set<Command> commands;
+	private int capabilities;
+	private WeaponKind weaponKind;
 	
-	private UnitType()
+	private UnitType(String name)
 	{
-		serial = nextSerial.getAndIncrement();
+		this.serial = nextSerial.getAndIncrement();
+		this.name = name;
+		this.capabilities = Capability.getCapabilities(name);
+		this.weaponKind = WeaponKind.getWeaponKind(name);
 	}
 	
 	private void initSpriteArgs()
 	{
-		if (name.contains("Truck"))
+		if (has(Capability.TRUCK))
 		{
 			spriteArgs = new Object[3];
 		}
@@ -265,7 +264,7 @@ public class UnitType
 			spriteArgs = new Object[1];
 		}
 		
-		if (name.contains("Truck"))
+		if (has(Capability.TRUCK))
 		{
 			spriteArgs[0] = Cargo.Type.EMPTY;
 			spriteArgs[1] = Activity.MOVE;
@@ -423,12 +422,12 @@ public class UnitType
 	
 	public boolean isTurretType()
 	{
-		return name.contains("Turret");
+		return has(Capability.TURRET);
 	}
 	
 	public boolean isChassisType()
 	{
-		return name.contains("Chassis");
+		return has(Capability.CHASSIS);
 	}
 	
 	public boolean isVehicleType()
@@ -443,7 +442,25 @@ public class UnitType
 	
 	public boolean isGuardPostType()
 	{
-		return name.contains("GuardPost");
+		return has(Capability.GUARD_POST);
+	}
+	
+	/**
+	 * Returns true if this type has the given capability.
+	 */
+	public boolean has(Capability capability)
+	{
+		return (capabilities & capability.getMask()) != 0;
+	}
+	
+	public int getCapabilities()
+	{
+		return capabilities;
+	}
+	
+	public WeaponKind getWeaponKind()
+	{
+		return weaponKind;
 	}
 	
 	public boolean is(String phrase)
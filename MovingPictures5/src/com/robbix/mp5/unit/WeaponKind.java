@@ -0,0 +1,28 @@
+package com.robbix.mp5.unit;
+
+public enum WeaponKind
+{
+	NONE,
+	LASER,
+	MICROWAVE,
+	RAIL_GUN,
+	RPG,
+	ACID_CLOUD,
+	STARFLARE,
+	SUPERNOVA;
+	
+	/**
+	 * Works out the weapon a unit type carries from its type name.
+	 */
+	public static WeaponKind getWeaponKind(String name)
+	{
+		if      (name.contains("Laser"))     return LASER;
+		else if (name.contains("Microwave")) return MICROWAVE;
+		else if (name.contains("RailGun"))   return RAIL_GUN;
+		else if (name.contains("RPG"))       return RPG;
+		else if (name.contains("AcidCloud")) return ACID_CLOUD;
+		else if (name.contains("Starflare")) return STARFLARE;
+		else if (name.contains("Supernova")) return SUPERNOVA;
+		else                                 return NONE;
+	}
+}
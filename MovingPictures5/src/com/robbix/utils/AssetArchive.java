@@ -0,0 +1,724 @@
+package com.robbix.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * The whole resource directory packed into one file, with images and
+ * sounds already decoded. The archive is memory-mapped when opened, so
+ * loading an asset out of it is a copy out of the page cache rather than
+ * a file open, read and decode.
+ *
+ * Archives are written as a build step by running this class with the
+ * resource directory and archive file as arguments. At runtime one archive
+ * is mounted over its resource directory, and RImage, RNode and
+ * SampleBuffer read any file under that directory from it. Files that
+ * aren't in the archive are still read from disk.
+ *
+ * Each entry keeps a stamp of the file it was packed from, its
+ * modification time and length. An archive is only mounted if every file
+ * still on disk matches its stamp, so editing an asset without packing
+ * again falls back to reading from disk instead of loading stale data.
+ *
+ * Layout: a header of MAGIC and VERSION, the entries' data back to back,
+ * then the index - a count followed by each entry's path, kind, offset,
+ * length and stamp - and last the offset of the index.
+ */
+public class AssetArchive
+{
+	public static final int MAGIC = 0x4D503541; // "MP5A"
+	public static final int VERSION = 2;
+	
+	public static final String EXTENSION = ".pak";
+	
+	private static final byte RAW   = 0;
+	private static final byte IMAGE = 1;
+	private static final byte SOUND = 2;
+	
+	private static volatile AssetArchive mounted;
+	
+	/**
+	 * Packs the resource directory given by the first argument into the
+	 * archive given by the second, or next to it if there isn't one.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1)
+		{
+			System.err.println("Usage: AssetArchive resourceDir [archiveFile]");
+			System.exit(1);
+		}
+		
+		File rootDir = new File(args[0]);
+		File archiveFile = args.length > 1
+			? new File(args[1])
+			: getArchiveFile(rootDir);
+		
+		long start = System.currentTimeMillis();
+		int count = pack(rootDir, archiveFile);
+		long time = System.currentTimeMillis() - start;
+		
+		System.out.printf("Packed %d files into %s (%d KB) in %d ms%n",
+			count, archiveFile, archiveFile.length() >> 10, time);
+	}
+	
+	/**
+	 * Gets the default archive file for a resource directory, a sibling of
+	 * it with the same name and EXTENSION.
+	 */
+	public static File getArchiveFile(File rootDir)
+	{
+		return new File(rootDir.getAbsoluteFile().getParentFile(), rootDir.getName() + EXTENSION);
+	}
+	
+	/**
+	 * Writes every file under the resource directory to the archive.
+	 * Returns the number of files packed.
+	 */
+	public static int pack(File rootDir, File archiveFile) throws IOException
+	{
+		List<String> paths = new ArrayList<String>();
+		walk(rootDir, "", paths);
+		
+		byte[] kinds = new byte[paths.size()];
+		int[] offsets = new int[paths.size()];
+		int[] lengths = new int[paths.size()];
+		long[] stamps = new long[paths.size()];
+		
+		DataOutputStream out = new DataOutputStream(
+			new BufferedOutputStream(new FileOutputStream(archiveFile), 1 << 16));
+		
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			
+			for (int i = 0; i < paths.size(); ++i)
+			{
+				File file = new File(rootDir, paths.get(i));
+				kinds[i] = getKind(file);
+				offsets[i] = out.size();
+				stamps[i] = getStamp(file);
+				
+				switch (kinds[i])
+				{
+				case IMAGE: writeImage(file, out); break;
+				case SOUND: writeSound(file, out); break;
+				default:    writeRaw  (file, out); break;
+				}
+				
+				lengths[i] = out.size() - offsets[i];
+				
+				if (out.size() == Integer.MAX_VALUE)
+					throw new IOException(archiveFile + " would be over 2 GB");
+			}
+			
+			int indexOffset = out.size();
+			out.writeInt(paths.size());
+			
+			for (int i = 0; i < paths.size(); ++i)
+			{
+				out.writeUTF(paths.get(i));
+				out.writeByte(kinds[i]);
+				out.writeInt(offsets[i]);
+				out.writeInt(lengths[i]);
+				out.writeLong(stamps[i]);
+			}
+			
+			out.writeInt(indexOffset);
+		}
+		finally
+		{
+			out.close();
+		}
+		
+		return paths.size();
+	}
+	
+	private static void walk(File dir, String prefix, List<String> paths)
+	{
+		File[] files = dir.listFiles();
+		
+		if (files == null)
+			return;
+		
+		for (File file : files)
+		{
+			if (file.isDirectory())
+				walk(file, prefix + file.getName() + "/", paths);
+			else if (file.isFile())
+				paths.add(prefix + file.getName());
+		}
+	}
+	
+	private static byte getKind(File file)
+	{
+		String name = file.getName().toLowerCase();
+		
+		if (name.endsWith(".bmp") || name.endsWith(".png"))
+			return IMAGE;
+		
+		if (name.endsWith(".wav"))
+			return SOUND;
+		
+		return RAW;
+	}
+	
+	/**
+	 * Writes width, height, whether there's an alpha channel, then the
+	 * pixels as ARGB ints.
+	 */
+	private static void writeImage(File file, DataOutputStream out) throws IOException
+	{
+		BufferedImage img = ImageIO.read(file);
+		
+		if (img == null)
+			throw new FileFormatException(file, "Not a readable image");
+		
+		int w = img.getWidth();
+		int h = img.getHeight();
+		int[] pixels = img.getRGB(0, 0, w, h, null, 0, w);
+		
+		out.writeInt(w);
+		out.writeInt(h);
+		out.writeBoolean(img.getColorModel().hasAlpha());
+		
+		for (int pixel : pixels)
+			out.writeInt(pixel);
+	}
+	
+	/**
+	 * Writes the PCM format, then the samples as they're laid out in it.
+	 */
+	private static void writeSound(File file, DataOutputStream out) throws IOException
+	{
+		AudioInputStream stream;
+		
+		try
+		{
+			stream = AudioSystem.getAudioInputStream(file);
+		}
+		catch (UnsupportedAudioFileException uafe)
+		{
+			throw new FileFormatException(file, uafe.getMessage());
+		}
+		
+		try
+		{
+			AudioFormat format = stream.getFormat();
+			
+			out.writeFloat(format.getSampleRate());
+			out.writeInt(format.getSampleSizeInBits());
+			out.writeInt(format.getChannels());
+			out.writeBoolean(format.getEncoding().equals(AudioFormat.Encoding.PCM_SIGNED));
+			out.writeBoolean(format.isBigEndian());
+			
+			copy(stream, out);
+		}
+		finally
+		{
+			stream.close();
+		}
+	}
+	
+	private static void writeRaw(File file, DataOutputStream out) throws IOException
+	{
+		InputStream in = new FileInputStream(file);
+		
+		try
+		{
+			copy(in, out);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+	
+	private static void copy(InputStream in, DataOutputStream out) throws IOException
+	{
+		byte[] buffer = new byte[1 << 14];
+		int read;
+		
+		while ((read = in.read(buffer)) >= 0)
+			out.write(buffer, 0, read);
+	}
+	
+	/**
+	 * Gets the stamp of a file on disk, which changes whenever the file
+	 * is written to.
+	 */
+	static long getStamp(File file)
+	{
+		return file.lastModified() * 31 + file.length();
+	}
+	
+	/**
+	 * Opens and mounts the archive for the given resource directory, if
+	 * there is one. Returns true if an archive was mounted. An archive
+	 * that's out of date with the directory or from an older version isn't
+	 * mounted, and a warning is printed to pack it again.
+	 */
+	public static boolean mount(File rootDir) throws IOException
+	{
+		File archiveFile = getArchiveFile(rootDir);
+		
+		if (!archiveFile.isFile())
+			return false;
+		
+		AssetArchive archive;
+		
+		try
+		{
+			archive = open(archiveFile, rootDir);
+		}
+		catch (FileFormatException ffe)
+		{
+			System.err.println(archiveFile + " not mounted: " + ffe.getMessage());
+			return false;
+		}
+		
+		String stalePath = archive.getStalePath();
+		
+		if (stalePath != null)
+		{
+			System.err.println(archiveFile + " not mounted: " + stalePath + " changed since it was packed");
+			return false;
+		}
+		
+		mount(archive);
+		return true;
+	}
+	
+	public static void mount(AssetArchive archive)
+	{
+		mounted = archive;
+	}
+	
+	public static void unmount()
+	{
+		mounted = null;
+	}
+	
+	/**
+	 * Gets the archive that's mounted, or null if files are only read from
+	 * disk.
+	 */
+	public static AssetArchive getMounted()
+	{
+		return mounted;
+	}
+	
+	/**
+	 * Gets the mounted archive if it contains the given file, otherwise
+	 * null.
+	 */
+	public static AssetArchive getMounted(File file)
+	{
+		AssetArchive archive = mounted;
+		return archive != null && archive.contains(file) ? archive : null;
+	}
+	
+	/**
+	 * Returns true if the file is in the mounted archive or on disk.
+	 */
+	public static boolean exists(File file)
+	{
+		AssetArchive archive = mounted;
+		
+		if (archive != null && (archive.contains(file) || archive.containsDirectory(file)))
+			return true;
+		
+		return file.exists();
+	}
+	
+	public static boolean isDirectory(File file)
+	{
+		AssetArchive archive = mounted;
+		
+		if (archive != null && archive.containsDirectory(file))
+			return true;
+		
+		return file.isDirectory();
+	}
+	
+	/**
+	 * Lists a directory in the mounted archive and on disk. Returns null
+	 * if it's in neither, like File.listFiles().
+	 */
+	public static File[] listFiles(File dir)
+	{
+		AssetArchive archive = mounted;
+		File[] onDisk = dir.listFiles();
+		
+		if (archive == null || !archive.containsDirectory(dir))
+			return onDisk;
+		
+		Set<File> files = new LinkedHashSet<File>();
+		
+		for (String name : archive.dirs.get(archive.getPath(dir)))
+			files.add(new File(dir, name));
+		
+		if (onDisk != null)
+			files.addAll(Arrays.asList(onDisk));
+		
+		return files.toArray(new File[files.size()]);
+	}
+	
+	/**
+	 * Lists the files in a directory with the given extension.
+	 */
+	public static File[] listFiles(File dir, String extension)
+	{
+		File[] files = listFiles(dir);
+		
+		if (files == null)
+			return null;
+		
+		List<File> matches = new ArrayList<File>(files.length);
+		
+		for (File file : files)
+			if (file.getName().endsWith(extension) && !isDirectory(file))
+				matches.add(file);
+		
+		return matches.toArray(new File[matches.size()]);
+	}
+	
+	/**
+	 * Opens an archive and maps it into memory. Paths in it are relative
+	 * to the given resource directory.
+	 */
+	public static AssetArchive open(File archiveFile, File rootDir) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(archiveFile, "r");
+		MappedByteBuffer buffer;
+		
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new FileFormatException(archiveFile, "Over 2 GB");
+			
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			raf.close();
+		}
+		
+		return new AssetArchive(archiveFile, rootDir, buffer);
+	}
+	
+	private static class Entry
+	{
+		public final byte kind;
+		public final int offset;
+		public final int length;
+		public final long stamp;
+		
+		public Entry(byte kind, int offset, int length, long stamp)
+		{
+			this.kind = kind;
+			this.offset = offset;
+			this.length = length;
+			this.stamp = stamp;
+		}
+	}
+	
+	private File archiveFile;
+	private String rootPath;
+	private ByteBuffer buffer;
+	private Map<String, Entry> entries;
+	private Map<String, List<String>> dirs;
+	
+	private AssetArchive(File archiveFile, File rootDir, ByteBuffer buffer) throws IOException
+	{
+		this.archiveFile = archiveFile;
+		this.rootPath = normalize(rootDir);
+		this.buffer = buffer;
+		
+		if (buffer.capacity() < 12 || buffer.getInt(0) != MAGIC)
+			throw new FileFormatException(archiveFile, "Not an asset archive");
+		
+		if (buffer.getInt(4) != VERSION)
+			throw new FileFormatException(archiveFile, "Unsupported version " + buffer.getInt(4));
+		
+		ByteBuffer index = buffer.duplicate();
+		index.position(buffer.getInt(buffer.capacity() - 4));
+		int count = index.getInt();
+		
+		entries = new HashMap<String, Entry>(count * 2);
+		dirs = new HashMap<String, List<String>>();
+		dirs.put("", new ArrayList<String>());
+		
+		for (int i = 0; i < count; ++i)
+		{
+			String path = readUTF(index);
+			Entry entry = new Entry(index.get(), index.getInt(), index.getInt(), index.getLong());
+			entries.put(path, entry);
+			addToDirs(path);
+		}
+	}
+	
+	/**
+	 * Adds the path to the listing of its directory, and each directory
+	 * above it to the one above that.
+	 */
+	private void addToDirs(String path)
+	{
+		int slash = path.lastIndexOf('/');
+		String dir  = slash < 0 ? "" : path.substring(0, slash);
+		String name = path.substring(slash + 1);
+		
+		List<String> names = dirs.get(dir);
+		
+		if (names == null)
+		{
+			names = new ArrayList<String>();
+			dirs.put(dir, names);
+			addToDirs(dir);
+		}
+		
+		names.add(name);
+	}
+	
+	public File getFile()
+	{
+		return archiveFile;
+	}
+	
+	/**
+	 * Gets the path of a file that's on disk but differs from the copy
+	 * packed into this archive, or null if they all match. Files that
+	 * aren't on disk anymore are taken to be shipped only in the archive.
+	 */
+	public String getStalePath()
+	{
+		for (Map.Entry<String, Entry> entry : entries.entrySet())
+		{
+			File file = new File(rootPath, entry.getKey());
+			
+			if (file.isFile() && getStamp(file) != entry.getValue().stamp)
+				return entry.getKey();
+		}
+		
+		return null;
+	}
+	
+	public int getEntryCount()
+	{
+		return entries.size();
+	}
+	
+	public boolean contains(File file)
+	{
+		String path = getPath(file);
+		return path != null && entries.containsKey(path);
+	}
+	
+	public boolean containsDirectory(File file)
+	{
+		String path = getPath(file);
+		return path != null && dirs.containsKey(path);
+	}
+	
+	/**
+	 * Gets a view of the file's bytes as they're stored in the archive.
+	 */
+	public ByteBuffer getBuffer(File file) throws IOException
+	{
+		return slice(getEntry(file, RAW));
+	}
+	
+	/**
+	 * Opens a stream over the file's bytes in the archive.
+	 */
+	public InputStream openStream(File file) throws IOException
+	{
+		final ByteBuffer slice = getBuffer(file);
+		
+		return new InputStream()
+		{
+			public int read()
+			{
+				return slice.hasRemaining() ? slice.get() & 0xff : -1;
+			}
+			
+			public int read(byte[] b, int off, int len)
+			{
+				if (!slice.hasRemaining())
+					return -1;
+				
+				len = Math.min(len, slice.remaining());
+				slice.get(b, off, len);
+				return len;
+			}
+			
+			public int available()
+			{
+				return slice.remaining();
+			}
+		};
+	}
+	
+	/**
+	 * Makes an image out of the file's decoded pixels. It has an alpha
+	 * channel if the file did or ensureAlpha is true.
+	 */
+	public RImage readImage(File file, boolean ensureAlpha) throws IOException
+	{
+		ByteBuffer slice = slice(getEntry(file, IMAGE));
+		int w = slice.getInt();
+		int h = slice.getInt();
+		boolean hasAlpha = slice.get() != 0;
+		
+		int[] pixels = new int[w * h];
+		IntBuffer ints = slice.asIntBuffer();
+		ints.get(pixels);
+		
+		RImage img = new RImage(w, h, hasAlpha || ensureAlpha);
+		img.getRaster().setDataElements(0, 0, w, h, pixels);
+		return img;
+	}
+	
+	/**
+	 * Makes a buffer out of the file's decoded samples.
+	 */
+	public SampleBuffer readSound(File file) throws IOException
+	{
+		ByteBuffer slice = slice(getEntry(file, SOUND));
+		float rate = slice.getFloat();
+		int bits = slice.getInt();
+		int channels = slice.getInt();
+		boolean signed = slice.get() != 0;
+		boolean bigEndian = slice.get() != 0;
+		
+		byte[] data = new byte[slice.remaining()];
+		slice.get(data);
+		
+		return new SampleBuffer(data, new AudioFormat(rate, bits, channels, signed, bigEndian));
+	}
+	
+	public String toString()
+	{
+		return String.format("AssetArchive[%s, %d entries, %d KB]",
+			archiveFile, entries.size(), buffer.capacity() >> 10);
+	}
+	
+	private Entry getEntry(File file, byte kind) throws IOException
+	{
+		String path = getPath(file);
+		Entry entry = path == null ? null : entries.get(path);
+		
+		if (entry == null)
+			throw new IOException(file + " not in " + archiveFile);
+		
+		if (entry.kind != kind)
+			throw new FileFormatException(file, "Not stored as " + getKindName(kind) + " in " + archiveFile);
+		
+		return entry;
+	}
+	
+	private ByteBuffer slice(Entry entry)
+	{
+		ByteBuffer slice = buffer.duplicate();
+		slice.position(entry.offset);
+		slice.limit(entry.offset + entry.length);
+		return slice.slice();
+	}
+	
+	private static String getKindName(byte kind)
+	{
+		switch (kind)
+		{
+		case IMAGE: return "image";
+		case SOUND: return "sound";
+		default:    return "raw";
+		}
+	}
+	
+	/**
+	 * Gets the file's path in the archive, or null if it's not under the
+	 * resource directory.
+	 */
+	private String getPath(File file)
+	{
+		String path = normalize(file);
+		
+		if (path.equals(rootPath))
+			return "";
+		
+		if (!path.startsWith(rootPath) || path.charAt(rootPath.length()) != '/')
+			return null;
+		
+		return path.substring(rootPath.length() + 1);
+	}
+	
+	/**
+	 * Gets the absolute path of the file with '/' separators and the "."
+	 * and ".." parts resolved, without going to disk.
+	 */
+	static String normalize(File file)
+	{
+		String[] parts = file.getAbsolutePath().replace(File.separatorChar, '/').split("/");
+		List<String> resolved = new ArrayList<String>(parts.length);
+		
+		for (String part : parts)
+		{
+			if (part.isEmpty() || part.equals("."))
+				continue;
+			
+			if (part.equals(".."))
+			{
+				if (!resolved.isEmpty())
+					resolved.remove(resolved.size() - 1);
+			}
+			else
+			{
+				resolved.add(part);
+			}
+		}
+		
+		StringBuilder path = new StringBuilder();
+		
+		for (String part : resolved)
+			path.append('/').append(part);
+		
+		return path.toString();
+	}
+	
+	private static String readUTF(ByteBuffer buffer) throws IOException
+	{
+		int length = buffer.getShort() & 0xffff;
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		
+		// Paths are plain file names, so modified UTF-8 reads as UTF-8
+		return new String(bytes, "UTF-8");
+	}
+}
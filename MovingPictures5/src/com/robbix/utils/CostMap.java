@@ -24,6 +24,12 @@ import javax.imageio.ImageIO;
  */
 public class CostMap extends Grid<Double>
 {
+	/**
+	 * Incremented every time a cost is set, so cached paths can tell
+	 * whether they need to be checked again.
+	 */
+	private int modCount = 0;
+	
 	/**
 	 * Loads a CostMap from a bitmap image. The CostMap will be the
 	 * same size as the bitmap is in pixels. The value at each position
@@ -83,6 +89,11 @@ public class CostMap extends Grid<Double>
 			throw new IllegalArgumentException(NEGATIVE_COST);
 	}
 	
+	public int getModCount()
+	{
+		return modCount;
+	}
+	
 	public boolean isFree(Position pos)
 	{
 		return super.get(pos) == 0;
@@ -93,6 +104,11 @@ public class CostMap extends Grid<Double>
 		return Double.isInfinite(super.get(pos));
 	}
 	
+	public boolean isInfinite(int x, int y)
+	{
+		return Double.isInfinite(super.get(x, y));
+	}
+	
 	public double getScaleFactor(int x, int y)
 	{
 		return 1 / (1 + super.get(x, y));
@@ -125,6 +141,7 @@ public class CostMap extends Grid<Double>
 			throw new IllegalArgumentException(NEGATIVE_COST);
 		
 		super.set(x, y, value);
+		modCount++;
 	}
 	
 	public void set(Position pos, double value)
@@ -133,6 +150,35 @@ public class CostMap extends Grid<Double>
 			throw new IllegalArgumentException(NEGATIVE_COST);
 		
 		super.set(pos, value);
+		modCount++;
+	}
+	
+	public void set(int x, int y, Double value)
+	{
+		set(x, y, value.doubleValue());
+	}
+	
+	public void set(Position pos, Double value)
+	{
+		set(pos, value.doubleValue());
+	}
+	
+	public void fill(Region reg, Double value)
+	{
+		if (value < 0.0)
+			throw new IllegalArgumentException(NEGATIVE_COST);
+		
+		super.fill(reg, value);
+		modCount++;
+	}
+	
+	public void fill(Double value)
+	{
+		if (value < 0.0)
+			throw new IllegalArgumentException(NEGATIVE_COST);
+		
+		super.fill(value);
+		modCount++;
 	}
 	
 	public void setInfinite(Position pos)
@@ -143,6 +189,7 @@ public class CostMap extends Grid<Double>
 	public void setInfinite(int x, int y)
 	{
 		super.set(x, y, Double.POSITIVE_INFINITY);
+		modCount++;
 	}
 	
 	public void setZero(Position pos)
@@ -153,6 +200,7 @@ public class CostMap extends Grid<Double>
 	public void setZero(int x, int y)
 	{
 		super.set(x, y, new Double(0));
+		modCount++;
 	}
 	
 	public void scale(double weight)
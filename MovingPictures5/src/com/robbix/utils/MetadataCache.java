@@ -0,0 +1,449 @@
+package com.robbix.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compiled copies of the XML documents under the resource directory -
+ * unit types, sprite set info files and the like - so they're read from
+ * a compact binary form instead of being parsed every time the game
+ * starts.
+ *
+ * Each document is stored with a stamp of its source: the modification
+ * time and length for a file on disk, or a checksum of its bytes for one
+ * in the mounted AssetArchive. A copy whose stamp no longer matches is
+ * stale, and RNode parses the source again and replaces it.
+ *
+ * The cache can be compiled ahead of time by running this class with the
+ * resource directory as an argument. Otherwise it's filled in as
+ * documents are loaded and written out by save(), and once more when the
+ * program exits for documents loaded after that.
+ *
+ * Layout: MAGIC and VERSION, a count, then for each document its path,
+ * stamp, length and the node tree as written by RNode.
+ */
+public class MetadataCache
+{
+	public static final int MAGIC = 0x4D50354D; // "MP5M"
+	public static final int VERSION = 1;
+	
+	public static final String EXTENSION = ".meta";
+	
+	private static volatile MetadataCache opened;
+	private static boolean savedOnExit;
+	
+	/**
+	 * Compiles every XML file under the resource directory given by the
+	 * first argument into the cache file given by the second, or next to
+	 * it if there isn't one.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 1)
+		{
+			System.err.println("Usage: MetadataCache resourceDir [cacheFile]");
+			System.exit(1);
+		}
+		
+		File rootDir = new File(args[0]);
+		File cacheFile = args.length > 1
+			? new File(args[1])
+			: getCacheFile(rootDir);
+		
+		long start = System.currentTimeMillis();
+		int count = compile(rootDir, cacheFile);
+		long time = System.currentTimeMillis() - start;
+		
+		System.out.printf("Compiled %d documents into %s (%d KB) in %d ms%n",
+			count, cacheFile, cacheFile.length() >> 10, time);
+	}
+	
+	/**
+	 * Gets the default cache file for a resource directory, a sibling of
+	 * it with the same name and EXTENSION.
+	 */
+	public static File getCacheFile(File rootDir)
+	{
+		return new File(rootDir.getAbsoluteFile().getParentFile(), rootDir.getName() + EXTENSION);
+	}
+	
+	/**
+	 * Parses every XML file under the resource directory and writes them
+	 * all to a new cache. Returns the number of documents compiled.
+	 */
+	public static int compile(File rootDir, File cacheFile) throws IOException
+	{
+		MetadataCache cache = new MetadataCache(cacheFile, rootDir);
+		List<File> xmlFiles = new ArrayList<File>();
+		walk(rootDir, xmlFiles);
+		
+		for (File xmlFile : xmlFiles)
+			cache.put(xmlFile, RNode.parse(xmlFile, false));
+		
+		cache.save();
+		return xmlFiles.size();
+	}
+	
+	private static void walk(File dir, List<File> xmlFiles)
+	{
+		File[] files = AssetArchive.listFiles(dir);
+		
+		if (files == null)
+			return;
+		
+		for (File file : files)
+		{
+			if (AssetArchive.isDirectory(file))
+				walk(file, xmlFiles);
+			else if (file.getName().endsWith(".xml"))
+				xmlFiles.add(file);
+		}
+	}
+	
+	/**
+	 * Opens the cache for the given resource directory, reading whatever
+	 * was saved in it before. A cache file that can't be read is started
+	 * over.
+	 */
+	public static MetadataCache open(File rootDir) throws IOException
+	{
+		MetadataCache cache = new MetadataCache(getCacheFile(rootDir), rootDir);
+		
+		try
+		{
+			cache.read();
+		}
+		catch (FileFormatException ffe)
+		{
+			cache.entries.clear();
+		}
+		catch (RuntimeException re)
+		{
+			// Truncated or corrupt
+			cache.entries.clear();
+		}
+		
+		opened = cache;
+		saveOnExit();
+		return cache;
+	}
+	
+	/**
+	 * Saves whichever cache is open when the program exits.
+	 */
+	private static synchronized void saveOnExit()
+	{
+		if (savedOnExit)
+			return;
+		
+		Runtime.getRuntime().addShutdownHook(new Thread("MP5-MetadataCache-Save")
+		{
+			public void run()
+			{
+				MetadataCache cache = opened;
+				
+				if (cache == null)
+					return;
+				
+				try
+				{
+					cache.save();
+				}
+				catch (IOException ioe)
+				{
+					System.err.println("metadata cache not saved: " + ioe.getMessage());
+				}
+			}
+		});
+		
+		savedOnExit = true;
+	}
+	
+	public static void close()
+	{
+		opened = null;
+	}
+	
+	/**
+	 * Gets the cache that's open, or null if documents are always parsed.
+	 */
+	public static MetadataCache getOpened()
+	{
+		return opened;
+	}
+	
+	/**
+	 * Gets the opened cache if the given file is under its resource
+	 * directory, otherwise null.
+	 */
+	public static MetadataCache getOpened(File file)
+	{
+		MetadataCache cache = opened;
+		return cache != null && cache.getPath(file) != null ? cache : null;
+	}
+	
+	private static class Entry
+	{
+		public final long stamp;
+		public final ByteBuffer data;
+		
+		public Entry(long stamp, ByteBuffer data)
+		{
+			this.stamp = stamp;
+			this.data = data;
+		}
+	}
+	
+	private File cacheFile;
+	private String rootPath;
+	private Map<String, Entry> entries;
+	private boolean modified;
+	
+	private int hits;
+	private int misses;
+	
+	private MetadataCache(File cacheFile, File rootDir)
+	{
+		this.cacheFile = cacheFile;
+		this.rootPath = AssetArchive.normalize(rootDir);
+		this.entries = new HashMap<String, Entry>();
+	}
+	
+	private void read() throws IOException
+	{
+		if (!cacheFile.isFile())
+			return;
+		
+		byte[] bytes = new byte[(int) cacheFile.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(cacheFile));
+		
+		try
+		{
+			in.readFully(bytes);
+		}
+		finally
+		{
+			in.close();
+		}
+		
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		
+		if (buffer.capacity() < 12 || buffer.getInt() != MAGIC)
+			throw new FileFormatException(cacheFile, "Not a metadata cache");
+		
+		if (buffer.getInt() != VERSION)
+			throw new FileFormatException(cacheFile, "Unsupported version");
+		
+		int count = buffer.getInt();
+		
+		for (int i = 0; i < count; ++i)
+		{
+			// Paths are plain file names, so modified UTF-8 reads as UTF-8
+			byte[] pathBytes = new byte[buffer.getShort() & 0xffff];
+			buffer.get(pathBytes);
+			
+			long stamp = buffer.getLong();
+			int length = buffer.getInt();
+			
+			ByteBuffer data = buffer.slice();
+			data.limit(length);
+			buffer.position(buffer.position() + length);
+			
+			entries.put(new String(pathBytes, "UTF-8"), new Entry(stamp, data));
+		}
+	}
+	
+	public File getFile()
+	{
+		return cacheFile;
+	}
+	
+	/**
+	 * Gets the cached copy of the document, or null if there isn't one,
+	 * it's stale or it can't be read.
+	 */
+	public RNode get(File xmlFile) throws IOException
+	{
+		String path = getPath(xmlFile);
+		long stamp = getStamp(xmlFile);
+		Entry entry;
+		
+		synchronized (this)
+		{
+			entry = path == null ? null : entries.get(path);
+			
+			if (entry == null || entry.stamp != stamp)
+			{
+				misses++;
+				return null;
+			}
+			
+			hits++;
+		}
+		
+		RNode node = null;
+		
+		// A corrupt copy is a miss, so the source is parsed again
+		try
+		{
+			node = RNode.read(entry.data.duplicate());
+		}
+		catch (IOException ioe)
+		{
+		}
+		catch (RuntimeException re)
+		{
+		}
+		
+		if (node == null)
+		{
+			synchronized (this)
+			{
+				hits--;
+				misses++;
+			}
+		}
+		
+		return node;
+	}
+	
+	/**
+	 * Stores a copy of the document just parsed from the given file.
+	 */
+	public void put(File xmlFile, RNode node) throws IOException
+	{
+		String path = getPath(xmlFile);
+		
+		if (path == null)
+			throw new IllegalArgumentException(xmlFile + " not under " + rootPath);
+		
+		long stamp = getStamp(xmlFile);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		DataOutputStream out = new DataOutputStream(bytes);
+		node.write(out);
+		out.flush();
+		
+		synchronized (this)
+		{
+			entries.put(path, new Entry(stamp, ByteBuffer.wrap(bytes.toByteArray())));
+			modified = true;
+		}
+	}
+	
+	/**
+	 * Writes the cache out if anything was added since it was opened.
+	 * The file is replaced all at once, so a failed save leaves the old
+	 * one as it was.
+	 */
+	public synchronized void save() throws IOException
+	{
+		if (!modified)
+			return;
+		
+		File tempFile = new File(cacheFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(
+			new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+		
+		try
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(entries.size());
+			
+			for (Map.Entry<String, Entry> entry : entries.entrySet())
+			{
+				ByteBuffer data = entry.getValue().data.duplicate();
+				data.rewind();
+				
+				out.writeUTF(entry.getKey());
+				out.writeLong(entry.getValue().stamp);
+				out.writeInt(data.remaining());
+				
+				byte[] bytes = new byte[data.remaining()];
+				data.get(bytes);
+				out.write(bytes);
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+		
+		if (!tempFile.renameTo(cacheFile))
+		{
+			cacheFile.delete();
+			
+			if (!tempFile.renameTo(cacheFile))
+				throw new IOException("Could not replace " + cacheFile);
+		}
+		
+		modified = false;
+	}
+	
+	public synchronized int getEntryCount()
+	{
+		return entries.size();
+	}
+	
+	public synchronized int getHits()
+	{
+		return hits;
+	}
+	
+	public synchronized int getMisses()
+	{
+		return misses;
+	}
+	
+	public synchronized String toString()
+	{
+		return String.format("MetadataCache[%s, %d entries, %d hits, %d misses]",
+			cacheFile, entries.size(), hits, misses);
+	}
+	
+	/**
+	 * Gets the stamp of the document's source as it is now.
+	 */
+	private static long getStamp(File xmlFile) throws IOException
+	{
+		AssetArchive archive = AssetArchive.getMounted(xmlFile);
+		
+		if (archive == null)
+			return AssetArchive.getStamp(xmlFile);
+		
+		ByteBuffer data = archive.getBuffer(xmlFile);
+		byte[] bytes = new byte[data.remaining()];
+		data.get(bytes);
+		
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+	
+	/**
+	 * Gets the file's path relative to the resource directory, or null
+	 * if it's not under it.
+	 */
+	private String getPath(File file)
+	{
+		String path = AssetArchive.normalize(file);
+		
+		if (!path.startsWith(rootPath) || path.length() <= rootPath.length()
+		 || path.charAt(rootPath.length()) != '/')
+			return null;
+		
+		return path.substring(rootPath.length() + 1);
+	}
+}
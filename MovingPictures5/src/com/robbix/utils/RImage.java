@@ -6,7 +6,11 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.IndexColorModel;
 import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
@@ -18,8 +22,17 @@ public class RImage extends BufferedImage
 	public static final int ALPHA = BufferedImage.TYPE_INT_ARGB;
 	public static final int SOLID = BufferedImage.TYPE_INT_RGB;
 	
+	/**
+	 * Reads an image from the mounted AssetArchive if it's in there,
+	 * otherwise from disk.
+	 */
 	public static RImage read(File file) throws IOException
 	{
+		AssetArchive archive = AssetArchive.getMounted(file);
+		
+		if (archive != null)
+			return archive.readImage(file, false);
+		
 		BufferedImage img = ImageIO.read(file);
 		int w = img.getWidth();
 		int h = img.getHeight();
@@ -30,6 +43,11 @@ public class RImage extends BufferedImage
 	
 	public static RImage readEnsureAlpha(File file) throws IOException
 	{
+		AssetArchive archive = AssetArchive.getMounted(file);
+		
+		if (archive != null)
+			return archive.readImage(file, true);
+		
 		BufferedImage img = ImageIO.read(file);
 		int w = img.getWidth();
 		int h = img.getHeight();
@@ -47,6 +65,14 @@ public class RImage extends BufferedImage
 		return rimg;
 	}
 	
+	/**
+	 * Creates an image of 8-bit indices into the given palette.
+	 */
+	public static RImage newIndexed(int w, int h, IndexColorModel palette)
+	{
+		return new RImage(palette, palette.createCompatibleWritableRaster(w, h), false);
+	}
+	
 	public RImage(int w, int h, boolean hasAlpha)
 	{
 		super(w, h, hasAlpha ? ALPHA : SOLID);
@@ -60,6 +86,24 @@ public class RImage extends BufferedImage
 		g.drawRect(0, 0, w, h);
 	}
 	
+	private RImage(ColorModel model, WritableRaster raster, boolean premultiplied)
+	{
+		super(model, raster, premultiplied, null);
+	}
+	
+	/**
+	 * Creates an image over the given region of this one. The two share
+	 * pixels, so modifying either shows in the other.
+	 */
+	public RImage getView(Rectangle rect)
+	{
+		return new RImage(
+			getColorModel(),
+			getRaster().createWritableChild(rect.x, rect.y, rect.width, rect.height, 0, 0, null),
+			isAlphaPremultiplied()
+		);
+	}
+	
 	/**
 	 * Creates new image, does not modify this one.
 	 */
@@ -85,6 +129,32 @@ public class RImage extends BufferedImage
 		return getColorModel().hasAlpha();
 	}
 	
+	public boolean isIndexed()
+	{
+		return getColorModel() instanceof IndexColorModel;
+	}
+	
+	/**
+	 * Gets the palette of an indexed image, or null if it's not indexed.
+	 */
+	public IndexColorModel getPalette()
+	{
+		return isIndexed() ? (IndexColorModel) getColorModel() : null;
+	}
+	
+	/**
+	 * Creates an image over the same pixels as this indexed one, drawn
+	 * with the given palette. The two share pixels, so modifying either
+	 * shows in the other.
+	 */
+	public RImage getPaletteView(IndexColorModel palette)
+	{
+		if (!isIndexed())
+			throw new IllegalStateException("Image must be indexed");
+		
+		return new RImage(palette, getRaster(), false);
+	}
+	
 	/**
 	 * Modifies this image.
 	 */
@@ -190,7 +260,50 @@ public class RImage extends BufferedImage
 		}
 	}
 	
-	private boolean hsbMatch(float[] a, float[] b)
+	/**
+	 * Creates a copy of the palette with its colors changed the way
+	 * recolor() changes an image's pixels.
+	 */
+	public static IndexColorModel getRecoloredPalette(
+		IndexColorModel palette,
+		Color startColor,
+		Color endColor)
+	{
+		int size = palette.getMapSize();
+		int[] rgbs = new int[size];
+		int[] pixel = new int[4];
+		float[] hsb = new float[4];
+		float[] startHSB = new RColor(startColor).getHSB();
+		float[] endHSB = new RColor(endColor).getHSB();
+		
+		palette.getRGBs(rgbs);
+		
+		for (int i = 0; i < size; ++i)
+		{
+			int alpha = rgbs[i] >>> 24;
+			
+			if (alpha == 0)
+				continue;
+			
+			pixel[0] = (rgbs[i] >> 16) & 0xff;
+			pixel[1] = (rgbs[i] >>  8) & 0xff;
+			pixel[2] =  rgbs[i]        & 0xff;
+			RColor.RGBtoHSB(pixel, hsb);
+			
+			if (hsbMatch(hsb, startHSB))
+			{
+				hsb[0] = endHSB[0];
+				hsb[1] *= endHSB[1];
+				hsb[2] *= endHSB[2];
+				rgbs[i] = (RColor.HSBtoRGBInt(hsb) & 0xffffff) | (alpha << 24);
+			}
+		}
+		
+		return new IndexColorModel(
+			palette.getPixelSize(), size, rgbs, 0, true, -1, DataBuffer.TYPE_BYTE);
+	}
+	
+	private static boolean hsbMatch(float[] a, float[] b)
 	{
 		return abs(a[0] - b[0]) <= 0.015
 			&& abs(a[1] - b[1]) <= 0.5
@@ -265,6 +378,19 @@ public class RImage extends BufferedImage
 		return copy;
 	}
 	
+	/**
+	 * Gets this image recolored. Indexed images are recolored by swapping
+	 * the palette, so the result shares this one's pixels. Others are
+	 * copied.
+	 */
+	public RImage getRecoloredView(Color startColor, Color endColor)
+	{
+		if (isIndexed())
+			return getPaletteView(getRecoloredPalette(getPalette(), startColor, endColor));
+		
+		return getRecoloredCopy(startColor, endColor);
+	}
+	
 	/**
 	 * Creates new image, does not modify this one.
 	 */
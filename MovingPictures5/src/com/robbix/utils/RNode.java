@@ -1,11 +1,15 @@
 package com.robbix.utils;
 
 import java.awt.Color;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -23,27 +27,68 @@ import org.xml.sax.SAXParseException;
  * for values and attributes with XPath style methods or have other
  * sub-nodes extracted from it.
  * 
- * This class is essentially a wrapper for org.w3c.dom.Node, with
- * conveinence methods addded.
+ * Documents are parsed with the W3C DOM api, then copied into a compact
+ * tree of element names, attributes, child elements and text. The tree
+ * can be written to and read back from a binary form, so that documents
+ * kept in the MetadataCache don't need to be parsed again.
  */
 public class RNode
 {
-	private Node root;
+	private String name;
+	private String[] attrNames;
+	private String[] attrValues;
+	private RNode[] children;
 	
 	/**
-	 * Loads a org.w3c.dom.Document from the specified XML file, validating
-	 * it against referenced schema if {@code validate} is true.
-	 * 
-	 * The returned XNode represents the root tag/element of the document and
-	 * not the document itself, as in the org.w3c.dom api.
+	 * Text content of an element without child elements, otherwise null.
+	 */
+	private String text;
+	
+	/**
+	 * Loads the root element of the specified XML file, validating it
+	 * against referenced schema if {@code validate} is true. Unvalidated
+	 * documents are taken from the opened MetadataCache if it has an up
+	 * to date copy, and are added to it if not. The file is read from the
+	 * mounted AssetArchive if it's in there.
 	 */
 	public static RNode load(File xmlFile, boolean validate) throws IOException
+	{
+		MetadataCache cache = validate ? null : MetadataCache.getOpened(xmlFile);
+		
+		if (cache != null)
+		{
+			RNode node = cache.get(xmlFile);
+			
+			if (node != null)
+				return node;
+		}
+		
+		RNode node = parse(xmlFile, validate);
+		
+		if (cache != null)
+			cache.put(xmlFile, node);
+		
+		return node;
+	}
+	
+	/**
+	 * Does not validate against DTD or Schema by default.
+	 */
+	public static RNode load(File xmlFile) throws IOException
+	{
+		return load(xmlFile, false);
+	}
+	
+	/**
+	 * Parses the XML file, skipping any cached copy.
+	 */
+	public static RNode parse(File xmlFile, boolean validate) throws IOException
 	{
 		DocumentBuilderFactory parserFactory = DocumentBuilderFactory.newInstance();
 		parserFactory.setIgnoringComments(true);
 		parserFactory.setIgnoringElementContentWhitespace(true);
 		parserFactory.setValidating(validate);
-
+		
 		try
 		{
 			DocumentBuilder parser = parserFactory.newDocumentBuilder();
@@ -68,7 +113,11 @@ public class RNode
 				}
 			});
 			
-			Node doc = parser.parse(xmlFile);
+			AssetArchive archive = AssetArchive.getMounted(xmlFile);
+			
+			Node doc = archive != null
+				? parser.parse(archive.openStream(xmlFile), xmlFile.toURI().toString())
+				: parser.parse(xmlFile);
 			NodeList rootChildren = doc.getChildNodes();
 			
 			if (rootChildren.getLength() == 0)
@@ -89,36 +138,158 @@ public class RNode
 		}
 	}
 	
-	/**
-	 * Does not validate against DTD or Schema by default.
+	/*
+	 * Private constructor to copy a org.w3c.dom.Node and its child
+	 * elements.
 	 */
-	public static RNode load(File xmlFile) throws IOException
+	private RNode(Node node)
 	{
-		return load(xmlFile, false);
+		this.name = node.getNodeName();
+		
+		NamedNodeMap attrs = node.getAttributes();
+		int attrCount = attrs == null ? 0 : attrs.getLength();
+		attrNames  = new String[attrCount];
+		attrValues = new String[attrCount];
+		
+		for (int a = 0; a < attrCount; ++a)
+		{
+			attrNames[a]  = attrs.item(a).getNodeName();
+			attrValues[a] = attrs.item(a).getTextContent();
+		}
+		
+		List<RNode> elements = new ArrayList<RNode>();
+		NodeList childNodes = node.getChildNodes();
+		
+		for (int c = 0; c < childNodes.getLength(); ++c)
+			if (childNodes.item(c).getNodeType() == Node.ELEMENT_NODE)
+				elements.add(new RNode(childNodes.item(c)));
+		
+		children = elements.toArray(new RNode[elements.size()]);
+		text = children.length == 0 ? node.getTextContent() : null;
 	}
 	
-	/*
-	 * Private constructor to base a XNode on a org.w3c.dom.Node.
+	private RNode(String name, String[] attrNames, String[] attrValues, RNode[] children, String text)
+	{
+		this.name = name;
+		this.attrNames = attrNames;
+		this.attrValues = attrValues;
+		this.children = children;
+		this.text = text;
+	}
+	
+	/**
+	 * Writes this node and everything under it. Each distinct string is
+	 * written once as UTF-8, in a table before the nodes, and referred to
+	 * by its index.
 	 */
-	private RNode(Node node)
+	void write(DataOutputStream out) throws IOException
+	{
+		Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+		collectStrings(strings);
+		
+		out.writeInt(strings.size());
+		
+		for (String str : strings.keySet())
+		{
+			byte[] bytes = str.getBytes("UTF-8");
+			out.writeInt(bytes.length);
+			out.write(bytes);
+		}
+		
+		write(out, strings);
+	}
+	
+	private void collectStrings(Map<String, Integer> strings)
+	{
+		addString(strings, name);
+		
+		for (int a = 0; a < attrNames.length; ++a)
+		{
+			addString(strings, attrNames[a]);
+			addString(strings, attrValues[a]);
+		}
+		
+		if (text != null)
+			addString(strings, text);
+		
+		for (RNode child : children)
+			child.collectStrings(strings);
+	}
+	
+	private static void addString(Map<String, Integer> strings, String str)
+	{
+		if (!strings.containsKey(str))
+			strings.put(str, strings.size());
+	}
+	
+	private void write(DataOutputStream out, Map<String, Integer> strings) throws IOException
 	{
-		this.root = node;
+		out.writeInt(strings.get(name));
+		out.writeInt(text == null ? -1 : strings.get(text));
+		out.writeShort(attrNames.length);
+		
+		for (int a = 0; a < attrNames.length; ++a)
+		{
+			out.writeInt(strings.get(attrNames[a]));
+			out.writeInt(strings.get(attrValues[a]));
+		}
+		
+		out.writeInt(children.length);
+		
+		for (RNode child : children)
+			child.write(out, strings);
 	}
 	
 	/**
-	 * Returns this node's name as it appears in xml.
+	 * Reads a node written by write().
 	 */
-	public String getName()
+	static RNode read(ByteBuffer buffer) throws IOException
+	{
+		String[] strings = new String[buffer.getInt()];
+		
+		for (int i = 0; i < strings.length; ++i)
+			strings[i] = readUTF(buffer);
+		
+		return read(buffer, strings);
+	}
+	
+	private static RNode read(ByteBuffer buffer, String[] strings)
+	{
+		String name = strings[buffer.getInt()];
+		int textIndex = buffer.getInt();
+		String text = textIndex < 0 ? null : strings[textIndex];
+		
+		int attrCount = buffer.getShort() & 0xffff;
+		String[] attrNames  = new String[attrCount];
+		String[] attrValues = new String[attrCount];
+		
+		for (int a = 0; a < attrCount; ++a)
+		{
+			attrNames[a]  = strings[buffer.getInt()];
+			attrValues[a] = strings[buffer.getInt()];
+		}
+		
+		RNode[] children = new RNode[buffer.getInt()];
+		
+		for (int c = 0; c < children.length; ++c)
+			children[c] = read(buffer, strings);
+		
+		return new RNode(name, attrNames, attrValues, children, text);
+	}
+	
+	private static String readUTF(ByteBuffer buffer) throws IOException
 	{
-		return root.getNodeName();
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, "UTF-8");
 	}
 	
 	/**
-	 * Returns the underlying W3C node.
+	 * Returns this node's name as it appears in xml.
 	 */
-	public Node getW3CNode()
+	public String getName()
 	{
-		return root;
+		return name;
 	}
 	
 	/**
@@ -131,30 +302,32 @@ public class RNode
 	 */
 	public RNode getNode(String... path) throws FileFormatException
 	{
-		Node currentNode = root;
+		RNode currentNode = this;
 		
 		for (int p = 0; p < path.length; ++p)
 		{
-			NodeList children = currentNode.getChildNodes();
-			boolean found = false;
-			
-			for (int c = 0; !found && c < children.getLength(); ++c)
-			{
-				Node child = children.item(c);
-				
-				if (child.getNodeName().matches(path[p]))
-				{
-					currentNode = child;
-					found = true;
-				}
-			}
+			RNode nextNode = currentNode.getChild(path[p]);
 			
-			if (!found)
+			if (nextNode == null)
 				throw new IllegalArgumentException(
-					"Node not found " + Arrays.toString(path) + " on " + root.getNodeName());
+					"Node not found " + Arrays.toString(path) + " on " + name);
+			
+			currentNode = nextNode;
 		}
 		
-		return new RNode(currentNode);
+		return currentNode;
+	}
+	
+	/**
+	 * Gets the first child element whose name matches the pattern.
+	 */
+	private RNode getChild(String pattern)
+	{
+		for (RNode child : children)
+			if (child.name.matches(pattern))
+				return child;
+		
+		return null;
 	}
 	
 	/**
@@ -172,10 +345,10 @@ public class RNode
 		if (xnode == null)
 			return null;
 		
-		if (!isTextNode(xnode.root))
+		if (!xnode.isTextNode())
 			throw new FileFormatException("Node has child element");
 		
-		return xnode.root.getTextContent().trim();
+		return xnode.text.trim();
 	}
 	
 	/**
@@ -189,45 +362,27 @@ public class RNode
 	public List<RNode> getNodes(String... path)
 	{
 		ArrayList<RNode> results = new ArrayList<RNode>();
-		Node currentNode = root;
+		RNode currentNode = this;
 		
 		for (int p = 0; p < path.length - 1; ++p)
 		{
-			NodeList children = currentNode.getChildNodes();
-			Node nextNode = null;
-			
-			for (int c = 0; c < children.getLength(); ++c)
-			{
-				Node child = children.item(c);
-				
-				if (child.getNodeName().matches(path[p]))
-				{
-					nextNode = child;
-					break;
-				}
-			}
+			currentNode = currentNode.getChild(path[p]);
 			
-			if (nextNode == null)
+			if (currentNode == null)
 				return results;
-			
-			currentNode = nextNode;
 		}
 		
-		NodeList children = currentNode.getChildNodes();
-		
-		for (int c = 0; c < children.getLength(); ++c)
+		for (RNode child : currentNode.children)
 		{
-			Node child = children.item(c);
-			
-			if (child.getNodeName().matches(path[path.length - 1]))
+			if (child.name.matches(path[path.length - 1]))
 			{
-				results.add(new RNode(child));
+				results.add(child);
 			}
 		}
 		
 		return results;
 	}
-
+	
 	/**
 	 * Returns a list of values of the nodes that match the given path from
 	 * the given root node. Returns empty list if none do.
@@ -235,43 +390,13 @@ public class RNode
 	public List<String> getValues(String... path) throws FileFormatException
 	{
 		ArrayList<String> results = new ArrayList<String>();
-		Node currentNode = root;
-	
-		for (int p = 0; p < path.length - 1; ++p)
-		{
-			NodeList children = currentNode.getChildNodes();
-			Node nextNode = null;
-			
-			for (int c = 0; c < children.getLength(); ++c)
-			{
-				Node child = children.item(c);
-				
-				if (child.getNodeName().matches(path[p]))
-				{
-					nextNode = child;
-					break;
-				}
-			}
-			
-			if (nextNode == null)
-				return results;
-
-			currentNode = nextNode;
-		}
 		
-		NodeList children = currentNode.getChildNodes();
-		
-		for (int c = 0; c < children.getLength(); ++c)
+		for (RNode node : getNodes(path))
 		{
-			Node child = children.item(c);
+			if (!node.isTextNode())
+				throw new FileFormatException("Node has child element");
 			
-			if (child.getNodeName().matches(path[path.length - 1]))
-			{
-				if (!isTextNode(child))
-					throw new FileFormatException("Node has child element");
-				
-				results.add(child.getTextContent().trim());
-			}
+			results.add(node.text.trim());
 		}
 		
 		return results;
@@ -279,7 +404,23 @@ public class RNode
 	
 	public String getValue()
 	{
-		return root.getTextContent().trim();
+		return getText().trim();
+	}
+	
+	/**
+	 * Gets the text of this element and every element under it, in order.
+	 */
+	private String getText()
+	{
+		if (text != null)
+			return text;
+		
+		StringBuilder builder = new StringBuilder();
+		
+		for (RNode child : children)
+			builder.append(child.getText());
+		
+		return builder.toString();
 	}
 	
 	public <E extends Enum<E>> E getEnumValue(Class<E> enumType) throws FileFormatException
@@ -316,23 +457,18 @@ public class RNode
 	 */
 	public String getAttribute(String name) throws FileFormatException
 	{
-		NamedNodeMap attrs = root.getAttributes();
-		
-		if (attrs == null)
-			throw new IllegalArgumentException("node not an element");
-		
-		Node attr = attrs.getNamedItem(name);
+		String attr = findAttribute(name);
 		
 		if (attr == null)
 			throw new FileFormatException(String.format(
 				"Attribute \"%1$s\" expected on <%2$s>",
 				name,
-				root.getNodeName()
+				this.name
 			));
 		
-		return attr.getTextContent();
+		return attr;
 	}
-
+	
 	/**
 	 * Gets the value of the attribute by the given name for the specified
 	 * node.
@@ -342,24 +478,27 @@ public class RNode
 	 */
 	public String getAttribute(String name, String defaultValue)
 	{
-		NamedNodeMap attrs = root.getAttributes();
-		
-		if (attrs == null)
-			throw new IllegalArgumentException("node not an element");
-		
-		Node attr = attrs.getNamedItem(name);
-		
-		if (attr == null)
-			return defaultValue;
-		
-		String attrString = attr.getTextContent();
+		String attrString = findAttribute(name);
 		
 		if (attrString == null || attrString.isEmpty())
 			return defaultValue;
 		
 		return attrString;
 	}
-
+	
+	/**
+	 * Gets the attribute's value, or null if it's not present. Elements
+	 * only have a few attributes, so they're searched in order.
+	 */
+	private String findAttribute(String name)
+	{
+		for (int a = 0; a < attrNames.length; ++a)
+			if (attrNames[a].equals(name))
+				return attrValues[a];
+		
+		return null;
+	}
+	
 	/**
 	 * Gets the value of the attribute by the given name for the specified
 	 * node.
@@ -371,7 +510,7 @@ public class RNode
 	{
 		return Integer.parseInt(getAttribute(name));
 	}
-
+	
 	/**
 	 * Gets the value of the attribute by the given name for the specified
 	 * node.
@@ -421,7 +560,7 @@ public class RNode
 		
 		return Double.parseDouble(attrString);
 	}
-
+	
 	/**
 	 * Gets the value of the attribute by the given name for the specified
 	 * node.
@@ -596,14 +735,8 @@ public class RNode
 	/**
 	 * Returns true if this node has no child elements.
 	 */
-	private static boolean isTextNode(Node root)
+	private boolean isTextNode()
 	{
-		NodeList children = root.getChildNodes();
-		
-		for (int c = 0; c < children.getLength(); ++c)
-			if (children.item(c).getNodeType() == Node.ELEMENT_NODE)
-				return false;
-		
-		return true;
+		return children.length == 0;
 	}
 }
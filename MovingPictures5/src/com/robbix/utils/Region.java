@@ -260,6 +260,9 @@ public class Region implements RIterable<Position>
 		final int x2 = Math.min(this.x + this.w, that.x + that.w);
 		final int y2 = Math.min(this.y + this.h, that.y + that.h);
 		
+		if ((x2 <= x1) || (y2 <= y1))
+			return new Region(x1, y1, 0, 0);
+		
 		return new Region(x1, y1, x2 - x1, y2 - y1);
 	}
 	
@@ -41,6 +41,11 @@ public class SampleBuffer implements Cloneable
 	
 	public static SampleBuffer load(File file) throws IOException
 	{
+		AssetArchive archive = AssetArchive.getMounted(file);
+		
+		if (archive != null)
+			return archive.readSound(file);
+		
 		AudioInputStream stream = null;
 		
 		try
@@ -0,0 +1,252 @@
+package com.robbix.utils;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+
+/**
+ * A coarse grid over the map that knows which objects' bounds touch each
+ * cell, so finding what overlaps a small area doesn't mean testing every
+ * object. Bounds are in tiles, as in Unit.getAbsPoint().
+ *
+ * Objects are given integer ids when added. Ids of removed objects are
+ * reused, and queries return ids in ascending order.
+ */
+public class SpatialIndex<T>
+{
+	public static final int DEFAULT_CELL_SIZE = 8;
+	
+	private final int cellSize;
+	private final int cols;
+	private final int rows;
+	
+	private int[][] cells;
+	private int[] cellCounts;
+	
+	private Object[] items = new Object[16];
+	private int[] ranges = new int[16 * 4];
+	private int[] marks = new int[16];
+	private int stamp;
+	
+	private int[] freeIds = new int[16];
+	private int freeCount;
+	private int nextId;
+	private int count;
+	
+	private int[] found = new int[64];
+	
+	public SpatialIndex(int width, int height)
+	{
+		this(width, height, DEFAULT_CELL_SIZE);
+	}
+	
+	public SpatialIndex(int width, int height, int cellSize)
+	{
+		if (width <= 0 || height <= 0 || cellSize <= 0)
+			throw new IllegalArgumentException("dimensions must be positive");
+		
+		this.cellSize = cellSize;
+		this.cols = (width  + cellSize - 1) / cellSize;
+		this.rows = (height + cellSize - 1) / cellSize;
+		this.cells = new int[cols * rows][];
+		this.cellCounts = new int[cols * rows];
+	}
+	
+	public int getCellSize()
+	{
+		return cellSize;
+	}
+	
+	public int size()
+	{
+		return count;
+	}
+	
+	/**
+	 * Adds an object with the given bounds and returns its id.
+	 */
+	public int add(T obj, Rectangle2D bounds)
+	{
+		if (obj == null)
+			throw new NullPointerException();
+		
+		int id;
+		
+		if (freeCount > 0)
+		{
+			id = freeIds[--freeCount];
+		}
+		else
+		{
+			id = nextId++;
+			
+			if (id == items.length)
+			{
+				items  = Arrays.copyOf(items,  id * 2);
+				ranges = Arrays.copyOf(ranges, id * 2 * 4);
+				marks  = Arrays.copyOf(marks,  id * 2);
+			}
+		}
+		
+		items[id] = obj;
+		count++;
+		setRange(id, bounds);
+		insert(id);
+		return id;
+	}
+	
+	@SuppressWarnings("unchecked")
+	public T get(int id)
+	{
+		return (T) items[id];
+	}
+	
+	/**
+	 * Updates the bounds of the object with the given id. Returns true
+	 * if it moved to a different set of cells.
+	 */
+	public boolean move(int id, Rectangle2D bounds)
+	{
+		int i = id * 4;
+		
+		if (ranges[i]     == getCol(bounds.getX())
+		 && ranges[i + 1] == getRow(bounds.getY())
+		 && ranges[i + 2] == getCol(bounds.getMaxX())
+		 && ranges[i + 3] == getRow(bounds.getMaxY()))
+			return false;
+		
+		delete(id);
+		setRange(id, bounds);
+		insert(id);
+		return true;
+	}
+	
+	public void remove(int id)
+	{
+		if (items[id] == null)
+			throw new IllegalArgumentException("no object with id " + id);
+		
+		delete(id);
+		items[id] = null;
+		count--;
+		
+		if (freeCount == freeIds.length)
+			freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+		
+		freeIds[freeCount++] = id;
+	}
+	
+	public void clear()
+	{
+		Arrays.fill(items, null);
+		Arrays.fill(cellCounts, 0);
+		freeCount = 0;
+		nextId = 0;
+		count = 0;
+	}
+	
+	/**
+	 * Gets the ids, in ascending order, of the objects in the cells the
+	 * given rectangle touches. Some may not overlap the rectangle itself.
+	 */
+	public int[] query(Rectangle2D rect)
+	{
+		if (++stamp == 0)
+		{
+			Arrays.fill(marks, 0);
+			stamp = 1;
+		}
+		
+		int x0 = getCol(rect.getX()),    y0 = getRow(rect.getY());
+		int x1 = getCol(rect.getMaxX()), y1 = getRow(rect.getMaxY());
+		int n = 0;
+		
+		for (int cy = y0; cy <= y1; ++cy)
+		for (int cx = x0; cx <= x1; ++cx)
+		{
+			int c = cy * cols + cx;
+			int[] cell = cells[c];
+			
+			for (int k = 0; k < cellCounts[c]; ++k)
+			{
+				int id = cell[k];
+				
+				if (marks[id] == stamp)
+					continue;
+				
+				marks[id] = stamp;
+				
+				if (n == found.length)
+					found = Arrays.copyOf(found, n * 2);
+				
+				found[n++] = id;
+			}
+		}
+		
+		Arrays.sort(found, 0, n);
+		return Arrays.copyOf(found, n);
+	}
+	
+	private void setRange(int id, Rectangle2D bounds)
+	{
+		int i = id * 4;
+		ranges[i]     = getCol(bounds.getX());
+		ranges[i + 1] = getRow(bounds.getY());
+		ranges[i + 2] = getCol(bounds.getMaxX());
+		ranges[i + 3] = getRow(bounds.getMaxY());
+	}
+	
+	private void insert(int id)
+	{
+		int i = id * 4;
+		
+		for (int cy = ranges[i + 1]; cy <= ranges[i + 3]; ++cy)
+		for (int cx = ranges[i];     cx <= ranges[i + 2]; ++cx)
+		{
+			int c = cy * cols + cx;
+			int[] cell = cells[c];
+			
+			if (cell == null)
+				cell = cells[c] = new int[4];
+			else if (cellCounts[c] == cell.length)
+				cell = cells[c] = Arrays.copyOf(cell, cell.length * 2);
+			
+			cell[cellCounts[c]++] = id;
+		}
+	}
+	
+	private void delete(int id)
+	{
+		int i = id * 4;
+		
+		for (int cy = ranges[i + 1]; cy <= ranges[i + 3]; ++cy)
+		for (int cx = ranges[i];     cx <= ranges[i + 2]; ++cx)
+		{
+			int c = cy * cols + cx;
+			int[] cell = cells[c];
+			
+			for (int k = 0; k < cellCounts[c]; ++k)
+			{
+				if (cell[k] == id)
+				{
+					cell[k] = cell[--cellCounts[c]];
+					break;
+				}
+			}
+		}
+	}
+	
+	private int getCol(double x)
+	{
+		return clamp((int) Math.floor(x / cellSize), cols);
+	}
+	
+	private int getRow(double y)
+	{
+		return clamp((int) Math.floor(y / cellSize), rows);
+	}
+	
+	private static int clamp(int i, int length)
+	{
+		return i < 0 ? 0 : i >= length ? length - 1 : i;
+	}
+}
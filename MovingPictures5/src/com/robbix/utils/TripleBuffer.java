@@ -0,0 +1,69 @@
+package com.robbix.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Three reusable buffers passed between one writer and one reader without
+ * locking. The writer fills the back buffer and publishes it. The reader
+ * takes whichever buffer was published most recently, and holds it until
+ * it asks again, while the writer carries on with the other two.
+ */
+public class TripleBuffer<T>
+{
+	private static final int FRESH = 4;
+	private static final int INDEX = 3;
+	
+	private final Object[] buffers;
+	
+	private int back = 0;
+	private int front = 1;
+	private final AtomicInteger middle = new AtomicInteger(2);
+	
+	public TripleBuffer(T a, T b, T c)
+	{
+		if (a == null || b == null || c == null)
+			throw new NullPointerException();
+		
+		buffers = new Object[]{a, b, c};
+	}
+	
+	/**
+	 * Gets the buffer the writer should fill next.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getBack()
+	{
+		return (T) buffers[back];
+	}
+	
+	/**
+	 * Hands the back buffer over to be read. Everything written to it
+	 * beforehand is visible to the reader once it takes the buffer.
+	 */
+	public void publish()
+	{
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+	
+	/**
+	 * Returns true if a buffer was published since the reader last
+	 * called getFront().
+	 */
+	public boolean isFresh()
+	{
+		return (middle.get() & FRESH) != 0;
+	}
+	
+	/**
+	 * Gets the most recently published buffer. The reader may use it
+	 * until the next call.
+	 */
+	@SuppressWarnings("unchecked")
+	public T getFront()
+	{
+		if (isFresh())
+			front = middle.getAndSet(front) & INDEX;
+		
+		return (T) buffers[front];
+	}
+}